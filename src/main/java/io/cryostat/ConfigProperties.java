@@ -27,11 +27,43 @@ public class ConfigProperties {
     public static final String CONTAINERS_POLL_PERIOD = "cryostat.discovery.containers.poll-period";
     public static final String CONTAINERS_REQUEST_TIMEOUT =
             "cryostat.discovery.containers.request-timeout";
+    public static final String CONTAINERS_RECONCILE_PERIOD =
+            "cryostat.discovery.containers.reconcile-period";
+    public static final String CONTAINERS_INSPECT_CONCURRENCY =
+            "cryostat.discovery.containers.inspect-concurrency";
+
+    public static final String DISCOVERY_PLUGINS_PING_CONCURRENCY =
+            "cryostat.discovery.plugins.ping-concurrency";
+    public static final String DISCOVERY_PLUGINS_PING_TIMEOUT =
+            "cryostat.discovery.plugins.ping-timeout";
+
+    public static final String DISCOVERY_WRITES_MAX_BATCH_SIZE =
+            "cryostat.discovery.writes.max-batch-size";
+    public static final String DISCOVERY_WRITES_LINGER = "cryostat.discovery.writes.linger";
 
     public static final String CONNECTIONS_MAX_OPEN = "cryostat.connections.max-open";
     public static final String CONNECTIONS_TTL = "cryostat.connections.ttl";
     public static final String CONNECTIONS_FAILED_BACKOFF = "cryostat.connections.failed-backoff";
     public static final String CONNECTIONS_FAILED_TIMEOUT = "cryostat.connections.failed-timeout";
+    public static final String CONNECTIONS_EXECUTOR_MAX_THREADS =
+            "cryostat.connections.executor.max-threads";
+
+    public static final String RULES_ACTIVATION_CONCURRENCY =
+            "cryostat.rules.activation.concurrency";
+    public static final String RULES_ARCHIVE_MAX_CONCURRENCY =
+            "cryostat.rules.archive.max-concurrency";
+
+    public static final String CREDENTIALS_CACHE_TTL = "cryostat.credentials.cache.ttl";
+    public static final String CREDENTIALS_CACHE_ZERO_ON_EVICT =
+            "cryostat.credentials.cache.zero-on-evict";
+
+    public static final String BLOCKING_EXECUTOR_MAX_THREADS =
+            "cryostat.blocking-executor.max-threads";
+
+    public static final String GRAPHQL_RESOLVER_CONCURRENCY =
+            "cryostat.graphql.resolver-concurrency";
+    public static final String GRAPHQL_QUERY_TIMEOUT = "cryostat.graphql.query-timeout";
+    public static final String GRAPHQL_MAX_PAGE_SIZE = "cryostat.graphql.max-page-size";
 
     public static final String REPORTS_SIDECAR_URL = "quarkus.rest-client.reports.url";
     public static final String REPORTS_MEMORY_CACHE_ENABLED =
@@ -53,6 +85,9 @@ public class ConfigProperties {
     public static final String STORAGE_TRANSIENT_ARCHIVES_ENABLED =
             "storage.transient-archives.enabled";
     public static final String STORAGE_TRANSIENT_ARCHIVES_TTL = "storage.transient-archives.ttl";
+    public static final String STORAGE_MAX_CONCURRENCY = "storage.max-concurrency";
+    public static final String STORAGE_REQUEST_TIMEOUT = "storage.request-timeout";
+    public static final String STORAGE_TRANSFER_TIMEOUT = "storage.transfer-timeout";
 
     public static final String TEMPLATES_DIR = "templates-dir";
     public static final String SSL_TRUSTSTORE_DIR = "ssl.truststore.dir";
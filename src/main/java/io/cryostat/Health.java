@@ -23,6 +23,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
+import io.cryostat.rules.RuleActivationEngine;
 import io.cryostat.util.HttpStatusCodeIdentifier;
 
 import io.smallrye.common.annotation.Blocking;
@@ -66,6 +67,7 @@ class Health {
 
     @Inject Logger logger;
     @Inject WebClient webClient;
+    @Inject RuleActivationEngine ruleActivationEngine;
 
     @GET
     @Blocking
@@ -124,6 +126,18 @@ class Health {
     @PermitAll
     public void liveness() {}
 
+    @GET
+    @Path("/health/readiness")
+    @PermitAll
+    public Response readiness() {
+        // until the rules due at startup have been activated, the API would be slow to respond
+        // and targets may not yet have their expected recordings
+        if (!ruleActivationEngine.isReady()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+        return Response.noContent().build();
+    }
+
     @GET
     @Path("/api/v1/grafana_dashboard_url")
     @PermitAll
@@ -0,0 +1,286 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectTaggingRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.Tag;
+import software.amazon.awssdk.services.s3.model.Tagging;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * Non-blocking access to S3-compatible object storage. Every operation is backed by the {@link
+ * S3AsyncClient} and is deferred until the returned {@link Uni} or {@link Multi} is subscribed to,
+ * so storage latency does not hold a worker thread and independent requests may be in flight
+ * concurrently. Callers which must produce a result synchronously should wait with {@link
+ * #await(Uni)} or {@link #awaitTransfer(Uni)} rather than waiting indefinitely, so that an
+ * unresponsive storage service cannot hold their thread forever.
+ */
+@ApplicationScoped
+public class ObjectStorage {
+
+    // S3 DeleteObjects accepts at most this many keys per request
+    static final int MAX_DELETE_BATCH = 1000;
+
+    @Inject S3AsyncClient storage;
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_MAX_CONCURRENCY)
+    int maxConcurrency;
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_REQUEST_TIMEOUT)
+    Duration requestTimeout;
+
+    @ConfigProperty(name = ConfigProperties.STORAGE_TRANSFER_TIMEOUT)
+    Duration transferTimeout;
+
+    /**
+     * Wait for the result of a metadata operation or small object transfer, failing with a {@link
+     * io.smallrye.mutiny.TimeoutException} if storage does not respond in time.
+     */
+    public <T> T await(Uni<T> uni) {
+        return uni.await().atMost(requestTimeout);
+    }
+
+    /** As {@link #await(Uni)}, but allowing as long as a large object transfer may take. */
+    public <T> T awaitTransfer(Uni<T> uni) {
+        return uni.await().atMost(transferTimeout);
+    }
+
+    /**
+     * List all objects in the bucket, following continuation tokens so that buckets with more
+     * objects than fit in a single listing page are fully enumerated.
+     */
+    public Multi<S3Object> listObjects(String bucket) {
+        return listObjects(bucket, Optional.empty());
+    }
+
+    public Multi<S3Object> listObjects(String bucket, Optional<String> prefix) {
+        return Multi.createBy()
+                .repeating()
+                .uni(
+                        AtomicReference<String>::new,
+                        token -> {
+                            var builder = ListObjectsV2Request.builder().bucket(bucket);
+                            prefix.ifPresent(builder::prefix);
+                            if (token.get() != null) {
+                                builder.continuationToken(token.get());
+                            }
+                            var req = builder.build();
+                            return Uni.createFrom()
+                                    .completionStage(() -> storage.listObjectsV2(req))
+                                    .invoke(res -> token.set(res.nextContinuationToken()));
+                        })
+                .whilst(ListObjectsV2Response::isTruncated)
+                .onItem()
+                .transformToIterable(ListObjectsV2Response::contents);
+    }
+
+    /**
+     * Apply an asynchronous operation to each element, keeping at most {@link #maxConcurrency}
+     * operations in flight at once. Results are emitted in the same order as the input.
+     */
+    public <T, R> Uni<List<R>> mapConcurrently(List<T> items, Function<T, Uni<R>> fn) {
+        if (items.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        List<Uni<R>> unis = new ArrayList<>(items.size());
+        for (T item : items) {
+            unis.add(fn.apply(item));
+        }
+        return Uni.join().all(unis).usingConcurrencyOf(maxConcurrency).andFailFast();
+    }
+
+    /** Retrieve the tag set of the object, or an empty Optional if there is no such object. */
+    public Uni<Optional<List<Tag>>> getTags(String bucket, String key) {
+        var req = GetObjectTaggingRequest.builder().bucket(bucket).key(key).build();
+        return Uni.createFrom()
+                .completionStage(() -> storage.getObjectTagging(req))
+                .map(res -> Optional.of(res.tagSet()))
+                .onFailure(NoSuchKeyException.class)
+                .recoverWithItem(Optional.empty());
+    }
+
+    public Uni<Void> putTags(String bucket, String key, Tagging tagging) {
+        var req =
+                PutObjectTaggingRequest.builder().bucket(bucket).key(key).tagging(tagging).build();
+        return Uni.createFrom()
+                .completionStage(() -> storage.putObjectTagging(req))
+                .replaceWithVoid();
+    }
+
+    /** Retrieve the object's metadata, or an empty Optional if there is no such object. */
+    public Uni<Optional<HeadObjectResponse>> head(String bucket, String key) {
+        var req = HeadObjectRequest.builder().bucket(bucket).key(key).build();
+        return Uni.createFrom()
+                .completionStage(() -> storage.headObject(req))
+                .map(Optional::of)
+                .onFailure(NoSuchKeyException.class)
+                .recoverWithItem(Optional.empty());
+    }
+
+    /**
+     * Retrieve the full object content into memory. Only suitable for small objects such as
+     * templates and cached reports - large objects should be streamed to a file with {@link
+     * #getObject(String, String, Path)}.
+     */
+    public Uni<ResponseBytes<GetObjectResponse>> getObject(String bucket, String key) {
+        var req = GetObjectRequest.builder().bucket(bucket).key(key).build();
+        return Uni.createFrom()
+                .completionStage(
+                        () -> storage.getObject(req, AsyncResponseTransformer.toBytes()));
+    }
+
+    /** Retrieve the object content into a new file at the given path, which must not yet exist. */
+    public Uni<GetObjectResponse> getObject(String bucket, String key, Path destination) {
+        var req = GetObjectRequest.builder().bucket(bucket).key(key).build();
+        return Uni.createFrom()
+                .completionStage(
+                        () -> storage.getObject(req, AsyncResponseTransformer.toFile(destination)));
+    }
+
+    /**
+     * Open a stream over the object content. The Uni completes once the response has begun, and
+     * the remaining content is read from storage as the stream is consumed.
+     */
+    public Uni<ResponseInputStream<GetObjectResponse>> getObjectStream(String bucket, String key) {
+        var req = GetObjectRequest.builder().bucket(bucket).key(key).build();
+        return Uni.createFrom()
+                .completionStage(
+                        () ->
+                                storage.getObject(
+                                        req, AsyncResponseTransformer.toBlockingInputStream()));
+    }
+
+    public Uni<PutObjectResponse> putObject(PutObjectRequest req, AsyncRequestBody body) {
+        return Uni.createFrom().completionStage(() -> storage.putObject(req, body));
+    }
+
+    public Uni<DeleteObjectResponse> deleteObject(String bucket, String key) {
+        var req = DeleteObjectRequest.builder().bucket(bucket).key(key).build();
+        return Uni.createFrom().completionStage(() -> storage.deleteObject(req));
+    }
+
+    public Uni<String> createMultipartUpload(CreateMultipartUploadRequest req) {
+        return Uni.createFrom()
+                .completionStage(() -> storage.createMultipartUpload(req))
+                .map(res -> res.uploadId());
+    }
+
+    /** Upload one part of a multipart upload, returning the part's ETag. */
+    public Uni<String> uploadPart(UploadPartRequest req, AsyncRequestBody body) {
+        return Uni.createFrom()
+                .completionStage(() -> storage.uploadPart(req, body))
+                .map(res -> res.eTag());
+    }
+
+    public Uni<Void> completeMultipartUpload(CompleteMultipartUploadRequest req) {
+        return Uni.createFrom()
+                .completionStage(() -> storage.completeMultipartUpload(req))
+                .replaceWithVoid();
+    }
+
+    public Uni<Void> abortMultipartUpload(AbortMultipartUploadRequest req) {
+        return Uni.createFrom()
+                .completionStage(() -> storage.abortMultipartUpload(req))
+                .replaceWithVoid();
+    }
+
+    /** Check whether the bucket exists and is accessible. */
+    public Uni<Boolean> bucketExists(String bucket) {
+        var req = HeadBucketRequest.builder().bucket(bucket).build();
+        return Uni.createFrom()
+                .completionStage(() -> storage.headBucket(req))
+                .map(res -> res.sdkHttpResponse().isSuccessful());
+    }
+
+    public Uni<Void> createBucket(String bucket) {
+        var req = CreateBucketRequest.builder().bucket(bucket).build();
+        return Uni.createFrom().completionStage(() -> storage.createBucket(req)).replaceWithVoid();
+    }
+
+    /**
+     * Delete all of the given keys, split into as few DeleteObjects requests as the S3 API allows.
+     *
+     * @return the errors reported for any keys which could not be deleted
+     */
+    public Uni<List<S3Error>> deleteObjects(String bucket, Collection<String> keys) {
+        List<List<ObjectIdentifier>> batches = new ArrayList<>();
+        List<ObjectIdentifier> batch = new ArrayList<>();
+        for (String key : keys) {
+            batch.add(ObjectIdentifier.builder().key(key).build());
+            if (batch.size() == MAX_DELETE_BATCH) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return mapConcurrently(
+                        batches,
+                        ids -> {
+                            var req =
+                                    DeleteObjectsRequest.builder()
+                                            .bucket(bucket)
+                                            .delete(Delete.builder().objects(ids).build())
+                                            .build();
+                            return Uni.createFrom()
+                                    .completionStage(() -> storage.deleteObjects(req))
+                                    .map(res -> res.errors());
+                        })
+                .map(results -> results.stream().flatMap(List::stream).toList());
+    }
+}
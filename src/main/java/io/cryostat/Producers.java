@@ -16,8 +16,13 @@
 package io.cryostat;
 
 import java.net.URI;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.cryostat.core.reports.InterruptibleReportGenerator;
 import io.cryostat.libcryostat.sys.Clock;
@@ -28,6 +33,7 @@ import io.vertx.mutiny.core.Vertx;
 import io.vertx.mutiny.ext.web.client.WebClient;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Named;
 import org.apache.commons.codec.binary.Base64;
@@ -42,6 +48,8 @@ import software.amazon.awssdk.utils.StringUtils;
 public class Producers {
 
     public static final String BASE64_URL = "BASE64_URL";
+    public static final String BLOCKING_EXECUTOR = "BLOCKING_EXECUTOR";
+    public static final String CONNECTION_EXECUTOR = "CONNECTION_EXECUTOR";
 
     @Produces
     @ApplicationScoped
@@ -76,6 +84,61 @@ public class Producers {
                 singleThread ? Executors.newSingleThreadExecutor() : ForkJoinPool.commonPool());
     }
 
+    // Executor for tasks which spend most of their time waiting on remote JMX operations or storage
+    // requests. This is kept separate from the shared worker pool so that slow or hung targets
+    // cannot starve request handling. These are bounded platform thread pools: virtual threads
+    // would need Java 21, and this runs on Java 17.
+    @Produces
+    @ApplicationScoped
+    @DefaultBean
+    @Named(BLOCKING_EXECUTOR)
+    public static ExecutorService produceBlockingExecutor(
+            @ConfigProperty(name = ConfigProperties.BLOCKING_EXECUTOR_MAX_THREADS) int maxThreads) {
+        return newDaemonPool("cryostat-blocking-", maxThreads);
+    }
+
+    public static void disposeBlockingExecutor(
+            @Disposes @Named(BLOCKING_EXECUTOR) ExecutorService executor) {
+        executor.shutdown();
+    }
+
+    // Executor for opening and closing target connections. Tasks on the blocking executor wait on
+    // connections being opened, so if both shared one pool then enough such tasks could occupy
+    // every thread and leave none to open the connections they are waiting for.
+    @Produces
+    @ApplicationScoped
+    @DefaultBean
+    @Named(CONNECTION_EXECUTOR)
+    public static ExecutorService produceConnectionExecutor(
+            @ConfigProperty(name = ConfigProperties.CONNECTIONS_EXECUTOR_MAX_THREADS)
+                    int maxThreads) {
+        return newDaemonPool("cryostat-connection-", maxThreads);
+    }
+
+    public static void disposeConnectionExecutor(
+            @Disposes @Named(CONNECTION_EXECUTOR) ExecutorService executor) {
+        executor.shutdown();
+    }
+
+    private static ExecutorService newDaemonPool(String namePrefix, int maxThreads) {
+        AtomicInteger count = new AtomicInteger();
+        int size = Math.max(1, maxThreads);
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(
+                        size,
+                        size,
+                        60,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        r -> {
+                            Thread t = new Thread(r, namePrefix + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Produces
     @DefaultBean
     public WebClient produceWebClient(Vertx vertx) {
@@ -15,30 +15,21 @@
  */
 package io.cryostat;
 
-import io.cryostat.util.HttpStatusCodeIdentifier;
-
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
-import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 
 @ApplicationScoped
 public class StorageBuckets {
 
-    @Inject S3Client storage;
+    @Inject ObjectStorage storage;
     @Inject Logger logger;
 
     public void createIfNecessary(String bucket) {
         boolean exists = false;
         logger.debugv("Checking if storage bucket \"{0}\" exists ...", bucket);
         try {
-            exists =
-                    HttpStatusCodeIdentifier.isSuccessCode(
-                            storage.headBucket(HeadBucketRequest.builder().bucket(bucket).build())
-                                    .sdkHttpResponse()
-                                    .statusCode());
+            exists = storage.await(storage.bucketExists(bucket));
             logger.debugv("Storage bucket \"{0}\" exists? {1}", bucket, exists);
         } catch (Exception e) {
             logger.warn(e);
@@ -46,7 +37,7 @@ public class StorageBuckets {
         if (!exists) {
             logger.debugv("Attempting to create storage bucket \"{0}\" ...", bucket);
             try {
-                storage.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+                storage.await(storage.createBucket(bucket));
                 logger.debugv("Storage bucket \"{0}\" created", bucket);
             } catch (Exception e) {
                 logger.error(e);
@@ -26,6 +26,9 @@ import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import io.vertx.mutiny.core.eventbus.EventBus;
 import jakarta.annotation.Nullable;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
@@ -85,32 +88,34 @@ public class Credential extends PanacheEntity {
     static class Listener {
         @Inject EventBus bus;
         @Inject MatchExpression.TargetMatcher targetMatcher;
+        @Inject Event<CredentialEvent> events;
 
         @PostPersist
-        public void postPersist(Credential credential) throws ScriptException {
-            bus.publish(
-                    MessagingServer.class.getName(),
-                    new Notification(
-                            CREDENTIALS_STORED, Credentials.notificationResult(credential)));
-            bus.publish(CREDENTIALS_STORED, credential);
+        public void postPersist(Credential credential) {
+            events.fire(new CredentialEvent(CREDENTIALS_STORED, credential));
         }
 
         @PostUpdate
-        public void postUpdate(Credential credential) throws ScriptException {
-            bus.publish(
-                    MessagingServer.class.getName(),
-                    new Notification(
-                            CREDENTIALS_UPDATED, Credentials.notificationResult(credential)));
-            bus.publish(CREDENTIALS_UPDATED, credential);
+        public void postUpdate(Credential credential) {
+            events.fire(new CredentialEvent(CREDENTIALS_UPDATED, credential));
         }
 
         @PostRemove
-        public void postRemove(Credential credential) throws ScriptException {
+        public void postRemove(Credential credential) {
+            events.fire(new CredentialEvent(CREDENTIALS_DELETED, credential));
+        }
+
+        // consumers drop cached connections and material or look the credential up again, so
+        // only tell them once the write is visible, and never about a write which was rolled back
+        void publish(@Observes(during = TransactionPhase.AFTER_SUCCESS) CredentialEvent event)
+                throws ScriptException {
             bus.publish(
                     MessagingServer.class.getName(),
                     new Notification(
-                            CREDENTIALS_DELETED, Credentials.notificationResult(credential)));
-            bus.publish(CREDENTIALS_DELETED, credential);
+                            event.category(), Credentials.notificationResult(event.credential())));
+            bus.publish(event.category(), event.credential());
         }
     }
+
+    record CredentialEvent(String category, Credential credential) {}
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.credentials;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.cryostat.ConfigProperties;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.vertx.ConsumeEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Short-lived cache of decrypted credential material. Credential usernames and passwords are
+ * stored encrypted and are decrypted by the database each time a Credential is loaded, so opening
+ * a connection would otherwise cost a database round trip through pgcrypto. Material is cached by
+ * credential ID and version, where the version is bumped once each update to the credential has
+ * been committed, and is dropped when the credential is updated or deleted or after {@link
+ * ConfigProperties#CREDENTIALS_CACHE_TTL}. Callers are given their own copies of the material,
+ * never the cached characters themselves. If {@link
+ * ConfigProperties#CREDENTIALS_CACHE_ZERO_ON_EVICT} is set then the cached characters are
+ * overwritten as they are evicted, which cannot affect any material already handed out.
+ */
+@ApplicationScoped
+public class CredentialMaterialCache {
+
+    private final Logger logger;
+    private final boolean zeroOnEvict;
+    private final Cache<Key, Entry> cache;
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    @Inject
+    CredentialMaterialCache(
+            @ConfigProperty(name = ConfigProperties.CREDENTIALS_CACHE_TTL) Duration ttl,
+            @ConfigProperty(name = ConfigProperties.CREDENTIALS_CACHE_ZERO_ON_EVICT)
+                    boolean zeroOnEvict,
+            Logger logger) {
+        this.logger = logger;
+        this.zeroOnEvict = zeroOnEvict;
+        this.cache =
+                Caffeine.newBuilder()
+                        .expireAfterWrite(ttl)
+                        // overwrite evicted material promptly, rather than whenever a pool thread
+                        // gets around to it
+                        .executor(Runnable::run)
+                        .removalListener(this::onRemoval)
+                        .build();
+    }
+
+    @ConsumeEvent(value = Credential.CREDENTIALS_UPDATED, blocking = true)
+    void onCredentialsUpdated(Credential credential) {
+        versions.merge(credential.id, 1L, Long::sum);
+        invalidate(credential.id);
+    }
+
+    @ConsumeEvent(value = Credential.CREDENTIALS_DELETED, blocking = true)
+    void onCredentialsDeleted(Credential credential) {
+        versions.remove(credential.id);
+        invalidate(credential.id);
+    }
+
+    /**
+     * Get the decrypted material for the credential. The material is taken from the Credential
+     * itself if it has been loaded there, and otherwise is decrypted by the database.
+     */
+    public Optional<Material> get(Credential credential) {
+        if (credential.id == null) {
+            return Optional.ofNullable(Material.of(credential.username, credential.password));
+        }
+        while (true) {
+            Key key = new Key(credential.id, versions.getOrDefault(credential.id, 0L));
+            Entry entry = cache.get(key, k -> load(credential));
+            if (entry == null) {
+                return Optional.empty();
+            }
+            Material material = entry.copy();
+            // otherwise the entry was evicted and overwritten after it was looked up
+            if (material != null) {
+                return Optional.of(material);
+            }
+        }
+    }
+
+    private Entry load(Credential credential) {
+        if (credential.username != null && credential.password != null) {
+            return Entry.of(credential.username, credential.password);
+        }
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                Credential.getEntityManager()
+                                        .createQuery(
+                                                "select c.username, c.password from Credential c"
+                                                        + " where c.id = ?1",
+                                                Object[].class)
+                                        .setParameter(1, credential.id)
+                                        .getResultStream()
+                                        .findFirst()
+                                        .map(r -> Entry.of((String) r[0], (String) r[1]))
+                                        .orElse(null));
+    }
+
+    private void invalidate(long credentialId) {
+        cache.asMap().keySet().removeIf(k -> k.credentialId() == credentialId);
+    }
+
+    private void onRemoval(Key key, Entry entry, RemovalCause cause) {
+        logger.tracev("Credential {0} material evicted: {1}", key.credentialId(), cause);
+        if (zeroOnEvict && entry != null) {
+            entry.clear();
+        }
+    }
+
+    private record Key(long credentialId, long version) {}
+
+    // the cached characters, which are only ever copied out so that nothing outside of the cache
+    // can observe them being overwritten
+    private static final class Entry {
+        private final char[] username;
+        private final char[] password;
+        private boolean cleared;
+
+        private Entry(char[] username, char[] password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        static Entry of(String username, String password) {
+            if (username == null || password == null) {
+                return null;
+            }
+            return new Entry(username.toCharArray(), password.toCharArray());
+        }
+
+        synchronized Material copy() {
+            if (cleared) {
+                return null;
+            }
+            return new Material(username.clone(), password.clone());
+        }
+
+        synchronized void clear() {
+            Arrays.fill(username, '\0');
+            Arrays.fill(password, '\0');
+            cleared = true;
+        }
+    }
+
+    /**
+     * Decrypted credential material. Each instance belongs to the caller it was given to, who
+     * should {@link #clear()} it once it is no longer needed.
+     */
+    @SuppressFBWarnings(value = {"EI_EXPOSE_REP", "EI_EXPOSE_REP2"})
+    public record Material(char[] username, char[] password) {
+        static Material of(String username, String password) {
+            if (username == null || password == null) {
+                return null;
+            }
+            return new Material(username.toCharArray(), password.toCharArray());
+        }
+
+        public void clear() {
+            Arrays.fill(username, '\0');
+            Arrays.fill(password, '\0');
+        }
+    }
+}
@@ -16,67 +16,276 @@
 package io.cryostat.credentials;
 
 import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
+import io.cryostat.expressions.MatchExpression;
 import io.cryostat.expressions.MatchExpressionEvaluator;
 import io.cryostat.targets.Target;
 import io.cryostat.targets.Target.EventKind;
 import io.cryostat.targets.Target.TargetDiscovery;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.vertx.ConsumeEvent;
 import io.smallrye.common.annotation.Blocking;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import org.apache.commons.collections4.BidiMap;
-import org.apache.commons.collections4.bidimap.DualHashBidiMap;
 import org.jboss.logging.Logger;
 import org.projectnessie.cel.tools.ScriptException;
 
+/**
+ * Resolves the Credential to use for each Target. When several credentials match a target, the
+ * one stored first (with the lowest ID) is used.
+ *
+ * <p>Assignments are precomputed and held in concurrent maps, so resolving a target's credential
+ * is usually a lock-free read. When a credential is stored or updated, the targets it matches are
+ * found in one bulk pass through the {@link MatchExpressionEvaluator} and only their assignments
+ * are changed. When a credential is deleted, or a target is modified, only the affected
+ * assignments are dropped, and these are recomputed for each target the next time it is resolved.
+ * Credential changes are serialized, but no lock is held while a target is being resolved, and a
+ * resolution is only recorded if nothing which could affect it changed in the meantime.
+ *
+ * <p>Only credential IDs and match expressions are held here. The credentials returned are
+ * references carrying no username or password, and their material is left to the {@link
+ * CredentialMaterialCache}.
+ */
 @ApplicationScoped
 public class CredentialsFinder {
 
     @Inject MatchExpressionEvaluator expressionEvaluator;
     @Inject Logger logger;
 
-    private final BidiMap<Target, Credential> cache = new DualHashBidiMap<>();
+    // the match expression of every credential, by credential ID, loaded on first use
+    private final Map<Long, MatchExpression> credentials = new ConcurrentSkipListMap<>();
+    private volatile boolean loaded;
+    // the IDs of the targets matched by each credential, by credential ID
+    private final Map<Long, Set<Long>> matches = new ConcurrentHashMap<>();
+    // the ID of the credential assigned to each target, by target ID
+    private final Map<Long, Optional<Long>> assignments = new ConcurrentHashMap<>();
+    // target IDs by connection URL, so that resolving a known URL needs no database query
+    private final Map<URI, Long> targetIds = new ConcurrentHashMap<>();
+    // serializes credential changes, which evaluate expressions and so must not hold this
+    private final Object changes = new Object();
+    // bumped by every change which could invalidate a resolution in progress. Guarded by this
+    private long generation;
+
+    @ConsumeEvent(value = Credential.CREDENTIALS_STORED, blocking = true)
+    void onCredentialsStored(Credential credential) {
+        onCredentialChanged(credential);
+    }
+
+    @ConsumeEvent(value = Credential.CREDENTIALS_UPDATED, blocking = true)
+    void onCredentialsUpdated(Credential credential) {
+        onCredentialChanged(credential);
+    }
 
-    @ConsumeEvent(Credential.CREDENTIALS_DELETED)
+    @ConsumeEvent(value = Credential.CREDENTIALS_DELETED, blocking = true)
     void onCredentialsDeleted(Credential credential) {
-        cache.removeValue(credential);
+        synchronized (changes) {
+            synchronized (this) {
+                generation++;
+                credentials.remove(credential.id);
+                Set<Long> matched = matches.remove(credential.id);
+                if (matched != null) {
+                    matched.forEach(id -> unassign(id, credential.id));
+                }
+            }
+        }
     }
 
-    @ConsumeEvent(Target.TARGET_JVM_DISCOVERY)
-    void onMessage(TargetDiscovery event) {
+    @ConsumeEvent(value = Target.TARGET_JVM_DISCOVERY, blocking = true)
+    synchronized void onMessage(TargetDiscovery event) {
+        Long id = event.serviceRef().id;
+        if (id == null) {
+            return;
+        }
+        generation++;
         if (EventKind.LOST.equals(event.kind())) {
-            cache.remove(event.serviceRef());
+            matches.values().forEach(s -> s.remove(id));
+            targetIds.remove(event.serviceRef().connectUrl, id);
+        } else {
+            targetIds.put(event.serviceRef().connectUrl, id);
         }
+        // a modified target may match different credentials now, so resolve it again when next
+        // asked for. Stale entries in the match sets only cause extra work on later invalidations
+        assignments.remove(id);
     }
 
     @Blocking
     public Optional<Credential> getCredentialsForTarget(Target target) {
-        return Optional.ofNullable(
-                cache.computeIfAbsent(
-                        target,
-                        t ->
-                                Credential.<Credential>listAll().stream()
-                                        .filter(
-                                                c -> {
-                                                    try {
-                                                        return expressionEvaluator.applies(
-                                                                c.matchExpression, t);
-                                                    } catch (ScriptException e) {
-                                                        logger.warn(e);
-                                                        return false;
-                                                    }
-                                                })
-                                        .findFirst()
-                                        .orElse(null)));
+        if (target.id == null) {
+            return resolve(target).map(this::reference);
+        }
+        Optional<Long> assigned = assignments.get(target.id);
+        if (assigned != null) {
+            return assigned.map(this::reference);
+        }
+        ensureLoaded();
+        long observed;
+        synchronized (this) {
+            observed = generation;
+        }
+        Optional<Long> resolved = resolve(target);
+        synchronized (this) {
+            if (generation == observed) {
+                assigned = assignments.putIfAbsent(target.id, resolved);
+                if (assigned == null) {
+                    assigned = resolved;
+                    // only the assigned credential's match set needs to record the target, since
+                    // only a change to that credential can cause the assignment to be dropped
+                    // rather than replaced
+                    resolved.ifPresent(
+                            c ->
+                                    matches.computeIfAbsent(c, k -> ConcurrentHashMap.newKeySet())
+                                            .add(target.id));
+                }
+            } else {
+                // something changed while resolving, so this result may already be stale. It is
+                // still the best answer for this caller, but is not recorded for later ones
+                assigned = resolved;
+            }
+        }
+        return assigned.map(this::reference);
     }
 
     @Blocking
     public Optional<Credential> getCredentialsForConnectUrl(URI connectUrl) {
-        return Target.find("connectUrl", connectUrl)
-                .<Target>singleResultOptional()
-                .flatMap(this::getCredentialsForTarget);
+        Long id = targetIds.get(connectUrl);
+        if (id != null) {
+            Optional<Long> assigned = assignments.get(id);
+            if (assigned != null) {
+                return assigned.map(this::reference);
+            }
+        }
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                Target.find("connectUrl", connectUrl)
+                                        .<Target>singleResultOptional()
+                                        .flatMap(
+                                                t -> {
+                                                    targetIds.put(connectUrl, t.id);
+                                                    return getCredentialsForTarget(t);
+                                                }));
+    }
+
+    private void onCredentialChanged(Credential credential) {
+        MatchExpression expression = copyOf(credential.matchExpression);
+        synchronized (changes) {
+            ensureLoaded();
+            Set<Long> current = ConcurrentHashMap.newKeySet();
+            forEachMatchingTarget(expression, current::add);
+            synchronized (this) {
+                generation++;
+                credentials.put(credential.id, expression);
+                Set<Long> previous = matches.getOrDefault(credential.id, Set.of());
+                matches.put(credential.id, current);
+                for (Long id : previous) {
+                    if (!current.contains(id)) {
+                        unassign(id, credential.id);
+                    }
+                }
+                for (Long id : current) {
+                    assignments.compute(
+                            id,
+                            (k, prev) -> {
+                                if (prev == null) {
+                                    // not yet resolved, so resolve it lazily against all
+                                    // credentials
+                                    return null;
+                                }
+                                if (prev.isEmpty() || prev.get() >= credential.id) {
+                                    return Optional.of(credential.id);
+                                }
+                                return prev;
+                            });
+                }
+            }
+        }
+    }
+
+    void forEachMatchingTarget(MatchExpression expression, Consumer<Long> action) {
+        QuarkusTransaction.joiningExisting()
+                .run(
+                        () ->
+                                expressionEvaluator
+                                        .getCandidateTargets(expression)
+                                        .forEach(
+                                                t -> {
+                                                    if (applies(expression, t)) {
+                                                        action.accept(t.id);
+                                                    }
+                                                }));
+    }
+
+    // must hold the lock
+    private void unassign(Long targetId, Long credentialId) {
+        assignments.computeIfPresent(
+                targetId,
+                (k, prev) -> prev.isPresent() && prev.get().equals(credentialId) ? null : prev);
+    }
+
+    // credentials are iterated in ID order, so the first match is the one stored first
+    private Optional<Long> resolve(Target target) {
+        ensureLoaded();
+        for (Map.Entry<Long, MatchExpression> credential : credentials.entrySet()) {
+            if (applies(credential.getValue(), target)) {
+                return Optional.of(credential.getKey());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean applies(MatchExpression expression, Target target) {
+        try {
+            return expressionEvaluator.applies(expression, target);
+        } catch (ScriptException e) {
+            logger.warn(e);
+            return false;
+        }
+    }
+
+    // a reference to the credential which does not carry its material
+    private Credential reference(Long id) {
+        Credential credential = new Credential();
+        credential.id = id;
+        credential.matchExpression = credentials.get(id);
+        return credential;
+    }
+
+    // a copy independent of the credential entity and the persistence context it was loaded in
+    private static MatchExpression copyOf(MatchExpression expression) {
+        MatchExpression copy = new MatchExpression(expression.script);
+        copy.id = expression.id;
+        return copy;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (changes) {
+            if (loaded) {
+                return;
+            }
+            loadAll().forEach((id, expression) -> credentials.putIfAbsent(id, expression));
+            loaded = true;
+        }
+    }
+
+    Map<Long, MatchExpression> loadAll() {
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () -> {
+                            Map<Long, MatchExpression> loaded = new HashMap<>();
+                            Credential.<Credential>listAll()
+                                    .forEach(c -> loaded.put(c.id, copyOf(c.matchExpression)));
+                            return loaded;
+                        });
     }
 }
@@ -18,25 +18,27 @@ package io.cryostat.discovery;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.management.remote.JMXServiceURL;
 
 import io.cryostat.ConfigProperties;
+import io.cryostat.Producers;
 import io.cryostat.core.net.JFRConnectionToolkit;
 import io.cryostat.libcryostat.sys.FileSystem;
 import io.cryostat.targets.Target;
@@ -52,20 +54,27 @@ import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
 import io.quarkus.vertx.ConsumeEvent;
-import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
 import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
 import io.vertx.mutiny.core.eventbus.EventBus;
+import io.vertx.mutiny.core.http.HttpClient;
+import io.vertx.mutiny.core.http.HttpClientRequest;
+import io.vertx.mutiny.core.http.HttpClientResponse;
 import io.vertx.mutiny.core.net.SocketAddress;
+import io.vertx.mutiny.core.parsetools.RecordParser;
 import io.vertx.mutiny.ext.web.client.WebClient;
 import io.vertx.mutiny.ext.web.codec.BodyCodec;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.persistence.NoResultException;
 import jakarta.resource.spi.IllegalStateException;
 import jakarta.transaction.Transactional;
-import jakarta.transaction.Transactional.TxType;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
@@ -97,19 +106,26 @@ class PodmanDiscovery extends ContainerDiscovery {
         return String.format("http://d/v3.0.0/libpod/containers/%s/json", spec.Id());
     }
 
+    @Override
+    protected String getEventsQueryURL() {
+        return "http://d/v3.0.0/libpod/events";
+    }
+
     @Override
     protected boolean enabled() {
         return enabled;
     }
 
-    @ConsumeEvent(blocking = true, ordered = true)
-    @Transactional(TxType.REQUIRES_NEW)
+    @ConsumeEvent
     public void handleContainerEvent(ContainerDiscoveryEvent evt) {
-        try {
-            updateDiscoveryTree(evt);
-        } catch (IllegalStateException e) {
-            logger.warn(e);
-        }
+        writes.submit(
+                () -> {
+                    try {
+                        updateDiscoveryTree(evt);
+                    } catch (IllegalStateException e) {
+                        logger.warn(e);
+                    }
+                });
     }
 
     @Override
@@ -143,19 +159,26 @@ class DockerDiscovery extends ContainerDiscovery {
         return String.format("http://d/v1.42/containers/%s/json", spec.Id());
     }
 
+    @Override
+    protected String getEventsQueryURL() {
+        return "http://d/v1.42/events";
+    }
+
     @Override
     protected boolean enabled() {
         return enabled;
     }
 
-    @ConsumeEvent(blocking = true, ordered = true)
-    @Transactional(TxType.REQUIRES_NEW)
+    @ConsumeEvent
     public void handleContainerEvent(ContainerDiscoveryEvent evt) {
-        try {
-            updateDiscoveryTree(evt);
-        } catch (IllegalStateException e) {
-            logger.warn(e);
-        }
+        writes.submit(
+                () -> {
+                    try {
+                        updateDiscoveryTree(evt);
+                    } catch (IllegalStateException e) {
+                        logger.warn(e);
+                    }
+                });
     }
 
     @Override
@@ -170,23 +193,43 @@ public abstract class ContainerDiscovery {
     public static final String JMX_HOST_LABEL = "io.cryostat.jmxHost";
     public static final String JMX_PORT_LABEL = "io.cryostat.jmxPort";
 
+    private static final List<String> CONTAINER_EVENTS = List.of("start", "stop", "die");
+    private static final Duration EVENT_COALESCE_PERIOD = Duration.ofMillis(250);
+
     @Inject Logger logger;
     @Inject FileSystem fs;
     @Inject Vertx vertx;
     @Inject WebClient webClient;
     @Inject JFRConnectionToolkit connectionToolkit;
     @Inject ObjectMapper mapper;
+    @Inject DiscoveryWriteQueue writes;
     @Inject EventBus bus;
     @Inject URIUtil uriUtil;
 
+    @Inject
+    @Named(Producers.BLOCKING_EXECUTOR)
+    ExecutorService executor;
+
     @ConfigProperty(name = ConfigProperties.CONTAINERS_POLL_PERIOD)
     Duration pollPeriod;
 
     @ConfigProperty(name = ConfigProperties.CONTAINERS_REQUEST_TIMEOUT)
     Duration requestTimeout;
 
+    @ConfigProperty(name = ConfigProperties.CONTAINERS_RECONCILE_PERIOD)
+    Duration reconcilePeriod;
+
+    @ConfigProperty(name = ConfigProperties.CONTAINERS_INSPECT_CONCURRENCY)
+    int inspectConcurrency;
+
     protected long timerId;
 
+    private HttpClient eventsClient;
+    volatile boolean eventsConnected;
+    volatile boolean stopped;
+    volatile Instant lastQuery = Instant.EPOCH;
+    private final AtomicBoolean queryScheduled = new AtomicBoolean();
+
     @Transactional
     void onStart(@Observes StartupEvent evt) {
         if (!enabled()) {
@@ -215,7 +258,9 @@ public abstract class ContainerDiscovery {
         logger.debugv("Starting {0} client", getRealm());
 
         queryContainers();
-        this.timerId = vertx.setPeriodic(pollPeriod.toMillis(), unused -> queryContainers());
+        this.timerId = vertx.setPeriodic(pollPeriod.toMillis(), unused -> onPollTimer());
+        this.eventsClient = vertx.createHttpClient();
+        watchEvents();
     }
 
     void onStop(@Observes ShutdownEvent evt) {
@@ -223,7 +268,11 @@ public abstract class ContainerDiscovery {
             return;
         }
         logger.debugv("Shutting down {0} client", getRealm());
+        stopped = true;
         vertx.cancelTimer(timerId);
+        if (eventsClient != null) {
+            eventsClient.closeAndForget();
+        }
     }
 
     boolean available() {
@@ -231,8 +280,29 @@ public abstract class ContainerDiscovery {
         return fs.exists(socketPath) && fs.isReadable(socketPath);
     }
 
+    // Resolve the target representation of the container spec, inspecting the container if its
+    // labels do not say which hostname to use
+    private Uni<Optional<Target>> resolveTarget(ContainerSpec desc) {
+        Uni<String> hostname;
+        if (desc.Labels.containsKey(JMX_URL_LABEL) || desc.Labels.containsKey(JMX_HOST_LABEL)) {
+            hostname = Uni.createFrom().nullItem();
+        } else {
+            hostname =
+                    Uni.createFrom()
+                            .completionStage(() -> doContainerInspectRequest(desc))
+                            .map(details -> details.Config.Hostname);
+        }
+        return hostname.map(h -> Optional.ofNullable(toTarget(desc, h)))
+                .onFailure()
+                .recoverWithItem(
+                        e -> {
+                            logger.warnv(e, "Invalid {0} target observed", getRealm());
+                            return Optional.empty();
+                        });
+    }
+
     // Construct a target representation (non-persistent) of the container spec
-    private Target toTarget(ContainerSpec desc) {
+    private Target toTarget(ContainerSpec desc, String inspectedHostname) {
         URI connectUrl;
         String hostname;
         int jmxPort;
@@ -254,16 +324,11 @@ public abstract class ContainerDiscovery {
                 jmxPort = Integer.parseInt(desc.Labels.get(JMX_PORT_LABEL));
                 hostname = desc.Labels.get(JMX_HOST_LABEL);
                 if (hostname == null) {
-                    try {
-                        hostname =
-                                doContainerInspectRequest(desc)
-                                        .get(2, TimeUnit.SECONDS)
-                                        .Config
-                                        .Hostname;
-                    } catch (InterruptedException | TimeoutException | ExecutionException e) {
-                        logger.warnv(e, "Invalid {0} target observed", getRealm());
-                        return null;
-                    }
+                    hostname = inspectedHostname;
+                }
+                if (hostname == null) {
+                    logger.warnv("Invalid {0} target observed", getRealm());
+                    return null;
                 }
             }
             serviceUrl = connectionToolkit.createServiceURL(hostname, jmxPort);
@@ -311,15 +376,144 @@ public abstract class ContainerDiscovery {
         return false;
     }
 
-    private void queryContainers() {
+    // while the event stream is connected, changes are picked up from it as they happen and
+    // the periodic listing is only a slow reconciliation in case any events were missed
+    void onPollTimer() {
+        if (!eventsConnected
+                || Duration.between(lastQuery, Instant.now()).compareTo(reconcilePeriod) >= 0) {
+            queryContainers();
+        }
+    }
+
+    void queryContainers() {
+        lastQuery = Instant.now();
         doContainerListRequest(
-                current -> {
-                    Infrastructure.getDefaultWorkerPool()
-                            .execute(
-                                    () ->
-                                            QuarkusTransaction.requiringNew()
-                                                    .run(() -> handleObservedContainers(current)));
-                });
+                current ->
+                        resolveTargets(current)
+                                .subscribe()
+                                .with(
+                                        observed -> executor.execute(() -> reconcile(observed)),
+                                        failure ->
+                                                logger.errorv(
+                                                        failure,
+                                                        "{0} target resolution failed",
+                                                        getRealm())));
+    }
+
+    private void reconcile(Map<Target, ContainerSpec> observed) {
+        QuarkusTransaction.requiringNew().run(() -> handleObservedContainers(observed));
+    }
+
+    // containers which need to be inspected are inspected concurrently, but with at most
+    // inspectConcurrency requests in flight against the container engine at a time
+    private Uni<Map<Target, ContainerSpec>> resolveTargets(List<ContainerSpec> current) {
+        return Multi.createFrom()
+                .iterable(current)
+                .onItem()
+                .transformToUni(
+                        desc ->
+                                resolveTarget(desc)
+                                        .map(t -> t.map(target -> Map.entry(target, desc))))
+                .merge(inspectConcurrency)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect()
+                .asMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    void watchEvents() {
+        if (stopped) {
+            return;
+        }
+        String filters;
+        try {
+            filters =
+                    mapper.writeValueAsString(
+                            Map.of(
+                                    "type", List.of("container"),
+                                    "event", CONTAINER_EVENTS,
+                                    "label", List.of(DISCOVERY_LABEL)));
+        } catch (JsonProcessingException e) {
+            logger.error("Json processing error", e);
+            return;
+        }
+        RequestOptions options =
+                new RequestOptions()
+                        .setMethod(HttpMethod.GET)
+                        .setServer(getSocket().getDelegate())
+                        .setHost("localhost")
+                        .setPort(80)
+                        .setURI(
+                                String.format(
+                                        "%s?stream=true&filters=%s",
+                                        URI.create(getEventsQueryURL()).getPath(),
+                                        URLEncoder.encode(filters, StandardCharsets.UTF_8)));
+        eventsClient
+                .request(options)
+                .flatMap(HttpClientRequest::send)
+                .subscribe()
+                .with(this::onEventStreamResponse, this::onEventStreamClosed);
+    }
+
+    void onEventStreamResponse(HttpClientResponse response) {
+        if (response.statusCode() != 200) {
+            onEventStreamClosed(
+                    new IllegalStateException(String.format("HTTP %d", response.statusCode())));
+            return;
+        }
+        logger.debugv("Connected to {0} event stream", getRealm());
+        eventsConnected = true;
+        // catch up on anything which happened while not connected
+        scheduleQuery();
+        // events are newline-delimited JSON documents, but chunk boundaries need not fall on them
+        RecordParser parser = RecordParser.newDelimited("\n", this::onContainerEvent);
+        response.handler(parser::handle);
+        response.exceptionHandler(this::onEventStreamClosed);
+        response.endHandler(() -> onEventStreamClosed(null));
+    }
+
+    void onContainerEvent(Buffer line) {
+        if (line.length() == 0) {
+            return;
+        }
+        try {
+            ContainerEvent evt = mapper.readValue(line.toString(), ContainerEvent.class);
+            String action = evt.Action() != null ? evt.Action() : evt.status();
+            if ("container".equals(evt.Type()) && CONTAINER_EVENTS.contains(action)) {
+                scheduleQuery();
+            }
+        } catch (JsonProcessingException e) {
+            logger.warn("Json processing error", e);
+        }
+    }
+
+    // container events usually arrive in bursts, for example a stop followed by a die, or many
+    // containers started at once by a compose file, so these are coalesced into a single listing
+    private void scheduleQuery() {
+        if (queryScheduled.compareAndSet(false, true)) {
+            vertx.setTimer(
+                    EVENT_COALESCE_PERIOD.toMillis(),
+                    id -> {
+                        queryScheduled.set(false);
+                        queryContainers();
+                    });
+        }
+    }
+
+    void onEventStreamClosed(Throwable failure) {
+        eventsConnected = false;
+        if (stopped) {
+            return;
+        }
+        if (failure != null) {
+            logger.warnv(
+                    failure,
+                    "{0} event stream failed, falling back to polling until reconnected",
+                    getRealm());
+        } else {
+            logger.debugv("{0} event stream closed", getRealm());
+        }
+        vertx.setTimer(pollPeriod.toMillis(), id -> watchEvents());
     }
 
     private void doContainerListRequest(Consumer<List<ContainerSpec>> successHandler) {
@@ -379,23 +573,13 @@ public abstract class ContainerDiscovery {
         return result;
     }
 
-    private void handleObservedContainers(List<ContainerSpec> current) {
+    private void handleObservedContainers(Map<Target, ContainerSpec> observed) {
         Map<URI, ContainerSpec> containerRefMap = new HashMap<>();
+        observed.forEach((t, desc) -> containerRefMap.put(t.connectUrl, desc));
 
         Set<Target> persistedTargets =
                 Target.findByRealm(getRealm()).stream().collect(Collectors.toSet());
-        Set<Target> observedTargets =
-                current.stream()
-                        .map(
-                                (desc) -> {
-                                    Target t = toTarget(desc);
-                                    if (Objects.nonNull(t)) {
-                                        containerRefMap.put(t.connectUrl, desc);
-                                    }
-                                    return t;
-                                })
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toSet());
+        Set<Target> observedTargets = observed.keySet();
 
         Target.compare(persistedTargets)
                 .to(observedTargets)
@@ -428,6 +612,7 @@ public abstract class ContainerDiscovery {
                         target.connectUrl);
                 return;
             }
+            target = target.copy();
             DiscoveryNode node = DiscoveryNode.target(target, BaseNodeType.JVM);
             target.discoveryNode = node;
 
@@ -512,6 +697,8 @@ public abstract class ContainerDiscovery {
 
     protected abstract String getContainerQueryURL(ContainerSpec spec);
 
+    protected abstract String getEventsQueryURL();
+
     protected abstract boolean enabled();
 
     protected abstract String notificationAddress();
@@ -535,6 +722,8 @@ public abstract class ContainerDiscovery {
 
     static record ContainerDetails(Config Config) {}
 
+    static record ContainerEvent(String Type, String Action, String status) {}
+
     static record Config(String Hostname) {}
 
     static record ContainerDiscoveryEvent(ContainerSpec desc, Target target, EventKind eventKind) {
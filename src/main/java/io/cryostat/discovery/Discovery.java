@@ -22,15 +22,11 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.text.ParseException;
-import java.time.Duration;
-import java.time.Instant;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.UUID;
 
 import io.cryostat.discovery.DiscoveryPlugin.PluginCallback;
@@ -42,7 +38,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jwt.proc.BadJWTException;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
@@ -57,45 +52,28 @@ import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.ForbiddenException;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriBuilder;
 import org.apache.commons.lang3.StringUtils;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestPath;
 import org.jboss.resteasy.reactive.RestQuery;
 import org.jboss.resteasy.reactive.RestResponse;
 import org.jboss.resteasy.reactive.RestResponse.ResponseBuilder;
-import org.quartz.Job;
-import org.quartz.JobBuilder;
-import org.quartz.JobDataMap;
-import org.quartz.JobDetail;
-import org.quartz.JobExecutionContext;
-import org.quartz.JobExecutionException;
-import org.quartz.JobKey;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.SimpleScheduleBuilder;
-import org.quartz.TriggerBuilder;
-import org.quartz.impl.matchers.GroupMatcher;
 
 @Path("")
 public class Discovery {
 
     static final String X_FORWARDED_FOR = "X-Forwarded-For";
 
-    private static final String JOB_PERIODIC = "periodic";
-    private static final String JOB_STARTUP = "startup";
-    private static final String PLUGIN_ID_MAP_KEY = "pluginId";
-    private static final String REFRESH_MAP_KEY = "refresh";
-
-    @ConfigProperty(name = "cryostat.discovery.plugins.ping-period")
-    Duration discoveryPingPeriod;
 
     @Inject Logger logger;
     @Inject ObjectMapper mapper;
@@ -103,44 +81,15 @@ public class Discovery {
     @Inject TargetConnectionManager connectionManager;
     @Inject DiscoveryJwtFactory jwtFactory;
     @Inject DiscoveryJwtValidator jwtValidator;
-    @Inject Scheduler scheduler;
+    @Inject PluginPinger pluginPinger;
     @Inject URIUtil uriUtil;
+    @Inject DiscoveryTreeSnapshot treeSnapshot;
+    @Inject DiscoveryWriteQueue writeQueue;
 
     @Transactional
     void onStart(@Observes StartupEvent evt) {
         // ensure lazily initialized entries are created
         DiscoveryNode.getUniverse();
-
-        DiscoveryPlugin.<DiscoveryPlugin>findAll().list().stream()
-                .filter(p -> !p.builtin)
-                .forEach(
-                        plugin -> {
-                            var dataMap = new JobDataMap();
-                            dataMap.put(PLUGIN_ID_MAP_KEY, plugin.id);
-                            dataMap.put(REFRESH_MAP_KEY, true);
-                            JobDetail jobDetail =
-                                    JobBuilder.newJob(RefreshPluginJob.class)
-                                            .withIdentity(plugin.id.toString(), JOB_STARTUP)
-                                            .usingJobData(dataMap)
-                                            .build();
-                            var trigger =
-                                    TriggerBuilder.newTrigger()
-                                            .usingJobData(jobDetail.getJobDataMap())
-                                            .startNow()
-                                            .withSchedule(
-                                                    SimpleScheduleBuilder.simpleSchedule()
-                                                            .withRepeatCount(0))
-                                            .build();
-                            try {
-                                scheduler.scheduleJob(jobDetail, trigger);
-                            } catch (SchedulerException e) {
-                                logger.warn("Failed to schedule plugin prune job", e);
-                            }
-                        });
-    }
-
-    void onStop(@Observes ShutdownEvent evt) throws SchedulerException {
-        scheduler.shutdown();
     }
 
     @GET
@@ -155,8 +104,22 @@ public class Discovery {
     @GET
     @Path("/api/v3/discovery")
     @RolesAllowed("read")
-    public DiscoveryNode get() {
-        return DiscoveryNode.getUniverse();
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response get(@Context Request request) {
+        var snapshot = treeSnapshot.get();
+        var etag = new EntityTag(snapshot.etag());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(snapshot.json()).tag(etag).build();
+    }
+
+    @GET
+    @Path("/api/v3/discovery/writes")
+    @RolesAllowed("read")
+    public DiscoveryWriteQueue.Stats getWriteStats() {
+        return writeQueue.stats();
     }
 
     @GET
@@ -189,8 +152,7 @@ public class Discovery {
                     UnknownHostException,
                     SocketException,
                     ParseException,
-                    BadJWTException,
-                    SchedulerException {
+                    BadJWTException {
         String pluginId = body.getString("id");
         String priorToken = body.getString("token");
         String realmName = body.getString("realm");
@@ -263,26 +225,6 @@ public class Discovery {
             universe.persist();
 
             location = jwtFactory.getPluginLocation(plugin);
-
-            var dataMap = new JobDataMap();
-            dataMap.put(PLUGIN_ID_MAP_KEY, plugin.id);
-            dataMap.put(REFRESH_MAP_KEY, true);
-            JobDetail jobDetail =
-                    JobBuilder.newJob(RefreshPluginJob.class)
-                            .withIdentity(plugin.id.toString(), JOB_PERIODIC)
-                            .usingJobData(dataMap)
-                            .build();
-            var trigger =
-                    TriggerBuilder.newTrigger()
-                            .usingJobData(jobDetail.getJobDataMap())
-                            .startAt(Date.from(Instant.now().plus(discoveryPingPeriod)))
-                            .withSchedule(
-                                    SimpleScheduleBuilder.simpleSchedule()
-                                            .repeatForever()
-                                            .withIntervalInSeconds(
-                                                    (int) discoveryPingPeriod.toSeconds()))
-                            .build();
-            scheduler.scheduleJob(jobDetail, trigger);
         }
 
         String token = jwtFactory.createDiscoveryPluginJwt(plugin, remoteAddress, location);
@@ -333,17 +275,62 @@ public class Discovery {
                     URISyntaxException {
         DiscoveryPlugin plugin = DiscoveryPlugin.find("id", id).singleResult();
         jwtValidator.validateJwt(ctx, plugin, token, true);
-        plugin.realm.children.clear();
-        plugin.realm.children.addAll(body);
-        for (var b : body) {
-            if (b.target != null) {
-                b.target.discoveryNode = b;
-                b.target.discoveryNode.parent = plugin.realm;
-                b.parent = plugin.realm;
+        var result = RealmReconciler.publish(plugin.realm, body);
+        logger.debugv("Published discovery plugin {0}: {1}", plugin.realm.name, result);
+
+        return Map.of(
+                "meta",
+                Map.of(
+                        "mimeType", "JSON",
+                        "status", "OK"),
+                "data",
+                Map.of("result", plugin.id.toString()));
+    }
+
+    @Transactional
+    @PATCH
+    @Path("/api/v2.2/discovery/{id}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @PermitAll
+    public Map<String, Map<String, String>> publishIncremental(
+            @Context RoutingContext ctx,
+            @RestPath UUID id,
+            @RestQuery String token,
+            List<PublishOperation> body)
+            throws SocketException,
+                    UnknownHostException,
+                    MalformedURLException,
+                    ParseException,
+                    JOSEException,
+                    URISyntaxException {
+        DiscoveryPlugin plugin = DiscoveryPlugin.find("id", id).singleResult();
+        jwtValidator.validateJwt(ctx, plugin, token, true);
+        List<URI> removed = new ArrayList<>();
+        List<DiscoveryNode> added = new ArrayList<>();
+        List<DiscoveryNode> replaced = new ArrayList<>();
+        for (var op : body) {
+            switch (String.valueOf(op.op())) {
+                case "add":
+                    added.add(requireNode(op));
+                    break;
+                case "replace":
+                    replaced.add(requireNode(op));
+                    break;
+                case "remove":
+                    if (op.connectUrl() == null) {
+                        throw new BadRequestException("\"connectUrl\" is required");
+                    }
+                    removed.add(op.connectUrl());
+                    break;
+                default:
+                    throw new BadRequestException(
+                            String.format("Unknown operation \"%s\"", op.op()));
             }
-            b.persist();
         }
-        plugin.persist();
+        requireDisjoint(removed, added);
+        requireDisjoint(removed, replaced);
+        var result = RealmReconciler.patch(plugin.realm, removed, added, replaced);
+        logger.debugv("Patched discovery plugin {0}: {1}", plugin.realm.name, result);
 
         return Map.of(
                 "meta",
@@ -365,21 +352,13 @@ public class Discovery {
                     MalformedURLException,
                     ParseException,
                     JOSEException,
-                    URISyntaxException,
-                    SchedulerException {
+                    URISyntaxException {
         DiscoveryPlugin plugin = DiscoveryPlugin.find("id", id).singleResult();
         jwtValidator.validateJwt(ctx, plugin, token, false);
         if (plugin.builtin) {
             throw new ForbiddenException();
         }
 
-        Set<JobKey> jobKeys = new HashSet<>();
-        jobKeys.addAll(scheduler.getJobKeys(GroupMatcher.jobGroupEquals(JOB_PERIODIC)));
-        jobKeys.addAll(scheduler.getJobKeys(GroupMatcher.jobGroupEquals(JOB_STARTUP)));
-        for (var key : jobKeys) {
-            scheduler.deleteJob(key);
-        }
-
         plugin.delete();
         return Map.of(
                 "meta",
@@ -414,40 +393,43 @@ public class Discovery {
         return DiscoveryPlugin.find("id", id).singleResult();
     }
 
-    @SuppressFBWarnings("RCN_REDUNDANT_NULLCHECK_OF_NULL_VALUE")
-    static class RefreshPluginJob implements Job {
-        @Inject Logger logger;
-
-        @Override
-        @Transactional
-        public void execute(JobExecutionContext context) throws JobExecutionException {
-            DiscoveryPlugin plugin = null;
-            try {
-                boolean refresh = context.getMergedJobDataMap().getBoolean(REFRESH_MAP_KEY);
-                plugin =
-                        DiscoveryPlugin.find(
-                                        "id", context.getMergedJobDataMap().get(PLUGIN_ID_MAP_KEY))
-                                .singleResult();
-                var cb = PluginCallback.create(plugin);
-                if (refresh) {
-                    cb.refresh();
-                    logger.debugv(
-                            "Refreshed discovery plugin: {0} @ {1}", plugin.realm, plugin.callback);
-                } else {
-                    cb.ping();
-                    logger.debugv(
-                            "Retained discovery plugin: {0} @ {1}", plugin.realm, plugin.callback);
-                }
-            } catch (Exception e) {
-                if (plugin != null) {
-                    logger.debugv(
-                            e, "Pruned discovery plugin: {0} @ {1}", plugin.realm, plugin.callback);
-                    plugin.delete();
-                } else {
-                    var ex = new JobExecutionException(e);
-                    ex.setUnscheduleFiringTrigger(true);
-                    throw ex;
-                }
+    @GET
+    @Path("/api/v3/discovery_plugins/{id}/ping")
+    @RolesAllowed("read")
+    public PluginPinger.PingStats getPluginPingStats(@RestPath UUID id) {
+        return pluginPinger.stats(id).orElseThrow();
+    }
+
+    /**
+     * A single change to a plugin's published targets, in the style of a JSON Patch operation.
+     * {@code add} inserts the given node at the top level of the plugin's realm, or merges it into
+     * the existing node with the same identity. {@code replace} does the same, but also deletes any
+     * descendants of the existing node which the given node no longer lists. {@code remove} deletes
+     * the target with the given connection URL from anywhere in the realm. Removals are applied
+     * before additions and replacements. See {@link RealmReconciler#patch}.
+     */
+    record PublishOperation(String op, DiscoveryNode node, URI connectUrl) {}
+
+    private static DiscoveryNode requireNode(PublishOperation op) {
+        if (op.node() == null) {
+            throw new BadRequestException("\"node\" is required");
+        }
+        return op.node();
+    }
+
+    // removals are applied before everything else, so a patch which both removes and publishes
+    // the same target would not mean what its operation order suggests
+    private static void requireDisjoint(List<URI> removed, List<DiscoveryNode> published) {
+        List<DiscoveryNode> pending = new ArrayList<>(published);
+        while (!pending.isEmpty()) {
+            DiscoveryNode node = pending.remove(pending.size() - 1);
+            if (node.target != null && removed.contains(node.target.connectUrl)) {
+                throw new BadRequestException(
+                        String.format(
+                                "\"%s\" is both removed and published", node.target.connectUrl));
+            }
+            if (node.children != null) {
+                pending.addAll(node.children);
             }
         }
     }
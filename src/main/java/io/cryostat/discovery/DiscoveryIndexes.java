@@ -0,0 +1,77 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.util.List;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.jboss.logging.Logger;
+
+/**
+ * Creates the indexes backing discovery tree queries which cannot be expressed with JPA {@link
+ * jakarta.persistence.Index} annotations, such as GIN indexes for JSONB containment tests on
+ * labels and annotations, and brings the materialized {@link DiscoveryNode#path} of every node up
+ * to date. The rest of the schema, including the {@code path} column itself, is generated from the
+ * entity mappings as usual. Every statement is idempotent and runs before any other startup
+ * observer touches the database. If any of them fails then startup fails, rather than running on
+ * with queries that could silently degrade to full scans or miss nodes whose paths are stale.
+ */
+@ApplicationScoped
+class DiscoveryIndexes {
+
+    static final List<String> STATEMENTS =
+            List.of(
+                    "CREATE INDEX IF NOT EXISTS discoverynode_labels_gin"
+                            + " ON DiscoveryNode USING GIN (labels jsonb_path_ops)",
+                    // target labels are only ever filtered through their discovery node's copy
+                    "DROP INDEX IF EXISTS target_labels_gin",
+                    "CREATE INDEX IF NOT EXISTS target_annotations_gin"
+                            + " ON Target USING GIN (annotations jsonb_path_ops)",
+                    // pattern ops so that subtree prefix matches can use the index regardless of
+                    // the database collation
+                    "CREATE INDEX IF NOT EXISTS discoverynode_path_prefix"
+                            + " ON DiscoveryNode (path text_pattern_ops)",
+                    // reconcile materialized paths with the parent links, for rows written before
+                    // paths were maintained or whose ancestors moved without the rows themselves
+                    // being updated
+                    "WITH RECURSIVE tree(id, path) AS (SELECT id, cast('/' as varchar)"
+                            + " FROM DiscoveryNode WHERE parentNode IS NULL"
+                            + " UNION ALL SELECT c.id, cast(t.path || t.id || '/' as varchar)"
+                            + " FROM DiscoveryNode c JOIN tree t ON c.parentNode = t.id)"
+                            + " UPDATE DiscoveryNode n SET path = tree.path FROM tree"
+                            + " WHERE n.id = tree.id AND n.path IS DISTINCT FROM tree.path");
+
+    @Inject EntityManager entityManager;
+    @Inject Logger logger;
+
+    void onStart(@Observes @Priority(0) StartupEvent evt) {
+        for (String statement : STATEMENTS) {
+            try {
+                QuarkusTransaction.requiringNew()
+                        .run(() -> entityManager.createNativeQuery(statement).executeUpdate());
+            } catch (Exception e) {
+                logger.errorv(e, "Failed to prepare discovery schema: {0}", statement);
+                throw new IllegalStateException("Failed to prepare discovery schema", e);
+            }
+        }
+    }
+}
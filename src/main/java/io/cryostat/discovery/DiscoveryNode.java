@@ -15,7 +15,11 @@
  */
 package io.cryostat.discovery;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,31 +38,45 @@ import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.vertx.mutiny.core.eventbus.EventBus;
 import jakarta.annotation.Nullable;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.PostLoad;
 import jakarta.persistence.PostPersist;
 import jakarta.persistence.PostRemove;
 import jakarta.persistence.PostUpdate;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.Session;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import org.jboss.logging.Logger;
 
 @Entity
 @EntityListeners(DiscoveryNode.Listener.class)
+@Table(
+        indexes = {
+            @Index(columnList = "nodeType"),
+            @Index(columnList = "name"),
+            @Index(columnList = "parentNode")
+        })
 public class DiscoveryNode extends PanacheEntity {
 
     public static final String NODE_TYPE = "nodeType";
+    static final String ROOT_PATH = "/";
 
     @Column(unique = false, nullable = false, updatable = false)
     @JsonView(Views.Flat.class)
@@ -86,6 +104,19 @@ public class DiscoveryNode extends PanacheEntity {
     @JsonIgnore
     public DiscoveryNode parent;
 
+    /**
+     * The IDs of this node's ancestors, from the Universe down to this node's parent, in the form
+     * {@code /1/2/3/}. This is derived from the parent links whenever the node is written, and
+     * rewritten for every descendant when the node moves, so that subtree and realm lookups are
+     * an indexed prefix match rather than a walk of the tree.
+     */
+    @Column(length = 1024)
+    @JsonIgnore
+    public String path = ROOT_PATH;
+
+    // the path as it was last read from or written to the database
+    @Transient @JsonIgnore @Nullable String storedPath;
+
     @OneToOne(
             mappedBy = "discoveryNode",
             cascade = {CascadeType.ALL},
@@ -98,7 +129,10 @@ public class DiscoveryNode extends PanacheEntity {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, nodeType, labels, children, target);
+        // children are deliberately left out. Hashing them would recurse through the whole
+        // subtree, making set operations over deep trees quadratic, and equal nodes still hash
+        // equally since equals() compares their target and labels too
+        return Objects.hash(labels, target);
     }
 
     public boolean hasChildren() {
@@ -113,7 +147,71 @@ public class DiscoveryNode extends PanacheEntity {
     }
 
     public static Optional<DiscoveryNode> getRealm(String name) {
-        return getUniverse().children.stream().filter(n -> name.equals(n.name)).findFirst();
+        return DiscoveryNode.find(
+                        "nodeType = ?1 and name = ?2 and parent.nodeType = ?3",
+                        BaseNodeType.REALM.getKind(),
+                        name,
+                        BaseNodeType.UNIVERSE.getKind())
+                .singleResultOptional();
+    }
+
+    /**
+     * Load the entire discovery tree with a single query and return its root. Every node's
+     * children and target are fetched up front, so the tree can be traversed or serialized
+     * without lazily loading each level one SELECT at a time.
+     */
+    public static DiscoveryNode getUniverseTree() {
+        DiscoveryNode.find(
+                        "from DiscoveryNode n left join fetch n.children left join fetch n.target")
+                .list();
+        return getUniverse();
+    }
+
+    /**
+     * Find the target nodes in the subtrees rooted at any of the given nodes, including the given
+     * nodes themselves if they are targets.
+     */
+    public static List<DiscoveryNode> findTargetsUnder(Collection<DiscoveryNode> roots) {
+        if (roots.isEmpty()) {
+            return List.of();
+        }
+        List<Object> params = new ArrayList<>();
+        List<String> clauses = new ArrayList<>();
+        params.add(roots.stream().map(n -> n.id).toList());
+        clauses.add("n.id in ?1");
+        for (DiscoveryNode root : roots) {
+            params.add(root.descendantPathPrefix() + "%");
+            clauses.add(String.format("n.path like ?%d", params.size()));
+        }
+        return DiscoveryNode.find(
+                        String.format(
+                                "from DiscoveryNode n join fetch n.target where %s order by n.id",
+                                String.join(" or ", clauses)),
+                        params.toArray())
+                .list();
+    }
+
+    /** The path shared by, and only by, every node below this one. */
+    public String descendantPathPrefix() {
+        return path + id + "/";
+    }
+
+    /**
+     * The path of a node with the given parent, or null if some ancestor has not been persisted
+     * yet and so has no ID to name it by.
+     */
+    @Nullable
+    static String pathOf(@Nullable DiscoveryNode parent) {
+        Deque<Long> ancestors = new ArrayDeque<>();
+        for (DiscoveryNode n = parent; n != null; n = n.parent) {
+            if (n.id == null) {
+                return null;
+            }
+            ancestors.push(n.id);
+        }
+        StringBuilder sb = new StringBuilder(ROOT_PATH);
+        ancestors.forEach(id -> sb.append(id).append('/'));
+        return sb.toString();
     }
 
     public static Optional<DiscoveryNode> getChild(
@@ -194,20 +292,88 @@ public class DiscoveryNode extends PanacheEntity {
     @ApplicationScoped
     static class Listener {
 
+        private static final String MOVE_PATHS_SQL =
+                "UPDATE DiscoveryNode SET path = ? || substring(path, ?) WHERE path LIKE ?";
+        private static final String SET_PATH_SQL = "UPDATE DiscoveryNode SET path = ? WHERE id = ?";
+
         @Inject Logger logger;
         @Inject EventBus bus;
+        @Inject Event<DiscoveryTreeSnapshot.Changed> treeChanged;
 
+        @PostLoad
+        void loaded(DiscoveryNode node) {
+            node.storedPath = node.path;
+        }
+
+        // the path is recomputed from the in-memory parent links rather than copied from the
+        // parent's path, since subtrees are often assembled bottom-up within a transaction and
+        // the parent's own path may not have been updated yet. A node may also be persisted
+        // before its parent, in which case its path is left unset until it is inserted
         @PrePersist
-        void prePersist(DiscoveryNode node) {}
+        @PreUpdate
+        void updatePath(DiscoveryNode node) {
+            node.path = pathOf(node.parent);
+        }
 
+        // when a node moves, the paths already written for its descendants still name its old
+        // ancestors, and those rows are not necessarily dirty in this session, so rewrite their
+        // prefix in place
         @PostPersist
-        void postPersist(DiscoveryNode node) {}
-
         @PostUpdate
-        void postUpdate(DiscoveryNode node) {}
+        void postWrite(DiscoveryNode node) {
+            if (node.path == null) {
+                // the node is only inserted once its ancestors have been persisted, so they all
+                // have IDs by now
+                node.path = pathOf(node.parent);
+                if (node.path == null) {
+                    throw new IllegalStateException(
+                            "Discovery node " + node.id + " has an unpersisted ancestor");
+                }
+                setPath(node.id, node.path);
+            }
+            if (node.storedPath != null && !node.storedPath.equals(node.path)) {
+                movePaths(node.storedPath + node.id + "/", node.descendantPathPrefix());
+            }
+            node.storedPath = node.path;
+            treeChanged.fire(DiscoveryTreeSnapshot.Changed.INSTANCE);
+        }
 
         @PostRemove
-        void postRemove(DiscoveryNode node) {}
+        void postRemove(DiscoveryNode node) {
+            treeChanged.fire(DiscoveryTreeSnapshot.Changed.INSTANCE);
+        }
+
+        // these run in the middle of a flush, so go straight to the connection rather than
+        // through a query which could trigger another flush
+        private static void setPath(long id, String path) {
+            DiscoveryNode.getEntityManager()
+                    .unwrap(Session.class)
+                    .doWork(
+                            connection -> {
+                                try (PreparedStatement stmt =
+                                        connection.prepareStatement(SET_PATH_SQL)) {
+                                    stmt.setString(1, path);
+                                    stmt.setLong(2, id);
+                                    stmt.executeUpdate();
+                                }
+                            });
+        }
+
+        private static void movePaths(String from, String to) {
+            DiscoveryNode.getEntityManager()
+                    .unwrap(Session.class)
+                    .doWork(
+                            connection -> {
+                                try (PreparedStatement stmt =
+                                        connection.prepareStatement(MOVE_PATHS_SQL)) {
+                                    stmt.setString(1, to);
+                                    stmt.setInt(2, from.length() + 1);
+                                    // paths only contain digits and '/', so need no escaping
+                                    stmt.setString(3, from + "%");
+                                    stmt.executeUpdate();
+                                }
+                            });
+        }
     }
 
     public static class Views {
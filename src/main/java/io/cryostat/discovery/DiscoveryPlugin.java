@@ -28,6 +28,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import io.quarkus.rest.client.reactive.QuarkusRestClientBuilder;
+import io.smallrye.mutiny.Uni;
 import jakarta.annotation.Nullable;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -165,6 +166,9 @@ public class DiscoveryPlugin extends PanacheEntityBase {
         @POST
         public void refresh();
 
+        @POST
+        public Uni<Void> refreshAsync();
+
         public static PluginCallback create(DiscoveryPlugin plugin) throws URISyntaxException {
             PluginCallback client =
                     QuarkusRestClientBuilder.newBuilder()
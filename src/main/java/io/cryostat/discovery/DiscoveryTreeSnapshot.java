@@ -0,0 +1,119 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.cryostat.Producers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.jboss.logging.Logger;
+
+/**
+ * Serves the discovery tree to readers from an immutable, pre-serialized snapshot, so that
+ * repeated reads of an unchanged tree cost neither database queries nor serialization. Entity
+ * listeners fire {@link Changed} whenever a DiscoveryNode or Target is written, and once the
+ * writing transaction commits the snapshot is rebuilt in the background. Bursts of commits, such as
+ * a platform discovery mechanism publishing many targets at once, are coalesced into as few
+ * rebuilds as possible.
+ */
+@ApplicationScoped
+public class DiscoveryTreeSnapshot {
+
+    @Inject ObjectMapper mapper;
+    @Inject Logger logger;
+
+    @Inject
+    @Named(Producers.BLOCKING_EXECUTOR)
+    ExecutorService executor;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    /** Get the current snapshot, building it first if there is none yet. */
+    public Snapshot get() {
+        Snapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        return rebuild();
+    }
+
+    void onChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) Changed evt) {
+        if (!rebuildPending.compareAndSet(false, true)) {
+            // a rebuild is already queued and has not yet started reading the tree, so it will
+            // observe this change too
+            return;
+        }
+        executor.execute(
+                () -> {
+                    rebuildPending.set(false);
+                    try {
+                        rebuild();
+                    } catch (Exception e) {
+                        // rather than continue serving a tree known to be stale, fall back to
+                        // building the snapshot on the next read
+                        current.set(null);
+                        logger.warn("Failed to rebuild discovery tree snapshot", e);
+                    }
+                });
+    }
+
+    // rebuilds are serialized so that a slow rebuild can never overwrite the result of a later one
+    private synchronized Snapshot rebuild() {
+        byte[] json =
+                QuarkusTransaction.requiringNew()
+                        .call(() -> mapper.writeValueAsBytes(DiscoveryNode.getUniverseTree()));
+        Snapshot snapshot = new Snapshot(json, etag(json));
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The serialized discovery tree and its entity tag. The tag is derived from the content, so
+     * it remains valid across restarts for as long as the tree is unchanged.
+     */
+    @SuppressFBWarnings(value = {"EI_EXPOSE_REP", "EI_EXPOSE_REP2"})
+    public record Snapshot(byte[] json, String etag) {}
+
+    /** Fired when a write may have changed the serialized form of the discovery tree. */
+    public static final class Changed {
+        public static final Changed INSTANCE = new Changed();
+
+        private Changed() {}
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.cryostat.ConfigProperties;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Applies discovery tree writes in micro-batches. Discovery mechanisms submit each change to the
+ * tree as a unit of work rather than opening their own transaction for it. A single writer thread
+ * drains the queue, in submission order, and applies everything it finds there, up to {@link
+ * ConfigProperties#DISCOVERY_WRITES_MAX_BATCH_SIZE} writes, within one transaction. Bursts of
+ * discovery events, such as a rolling deployment replacing many Pods at once, therefore commit in
+ * a handful of transactions with their inserts and updates sent in JDBC batches, and the tree
+ * snapshot is rebuilt once per batch rather than once per event. The writer only lingers to let
+ * a batch fill when a burst is already queued, so a lone write is applied at once.
+ *
+ * <p>If a write throws or marks the transaction for rollback, the batch is rolled back and the
+ * writes on either side of it are retried in their own transactions, so that one bad write cannot
+ * discard the rest. If a batch fails to commit for any other reason, its writes are retried
+ * individually. Entity listeners only publish notifications once a transaction commits, so a
+ * retried write is only ever announced once. On shutdown the writer applies whatever is still
+ * queued before stopping.
+ */
+@ApplicationScoped
+public class DiscoveryWriteQueue {
+
+    private static final Duration RATE_WINDOW = Duration.ofSeconds(10);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+    // wakes the writer so that it notices it is stopping
+    private static final Runnable NOOP = () -> {};
+
+    @Inject Logger logger;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_WRITES_MAX_BATCH_SIZE)
+    int maxBatchSize;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_WRITES_LINGER)
+    Duration linger;
+
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService writer =
+            Executors.newSingleThreadExecutor(
+                    r -> {
+                        Thread t = new Thread(r, "discovery-writer");
+                        t.setDaemon(true);
+                        return t;
+                    });
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile int largestBatchSize;
+    private volatile double writesPerSecond;
+    private long windowStart = System.nanoTime();
+    private long windowWrites;
+    private volatile boolean stopping;
+
+    void onStart(@Observes StartupEvent evt) {
+        writer.execute(this::drain);
+    }
+
+    void onStop(@Observes ShutdownEvent evt) {
+        stopping = true;
+        queue.add(NOOP);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warnv(
+                        "Discovery writer did not finish within {0}, discarding {1} writes",
+                        SHUTDOWN_TIMEOUT, queue.size());
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue a write to the discovery tree. The write will be run within a transaction shared with
+     * other queued writes, so it must not manage transactions itself, and it should handle any
+     * expected failures itself rather than throwing. If another write spoils the batch then this
+     * one is run again, so it must create any new entities it persists each time it runs rather
+     * than capture them, since an entity persisted by a rolled back attempt keeps its generated ID.
+     */
+    void submit(Runnable write) {
+        queue.add(write);
+    }
+
+    Stats stats() {
+        long batchCount = batches.get();
+        long writeCount = written.get();
+        return new Stats(
+                queue.size(),
+                writeCount,
+                failed.get(),
+                batchCount,
+                lastBatchSize,
+                largestBatchSize,
+                batchCount == 0 ? 0 : (double) writeCount / batchCount,
+                writesPerSecond);
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            if (stopping && queue.isEmpty()) {
+                return;
+            }
+            try {
+                List<Runnable> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    write(batch);
+                    recordBatch(batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Discovery writer failure", e);
+            }
+        }
+    }
+
+    /**
+     * Wait for the next write and take it along with whatever else is queued behind it, up to the
+     * batch size limit.
+     */
+    List<Runnable> nextBatch() throws InterruptedException {
+        List<Runnable> batch = new ArrayList<>(maxBatchSize);
+        batch.add(queue.take());
+        // a burst which is already arriving gets the chance to fill this batch, but a lone write
+        // has nothing to wait for
+        if (!queue.isEmpty()
+                && queue.size() < maxBatchSize - 1
+                && !linger.isZero()
+                && !stopping) {
+            Thread.sleep(linger.toMillis());
+        }
+        queue.drainTo(batch, maxBatchSize - 1);
+        batch.removeIf(w -> w == NOOP);
+        return batch;
+    }
+
+    private void write(List<Runnable> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // the position of the write which spoiled the transaction, if it was a write at all
+        int[] spoiled = {-1};
+        try {
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () -> {
+                                for (int i = 0; i < batch.size(); i++) {
+                                    spoiled[0] = i;
+                                    batch.get(i).run();
+                                    if (QuarkusTransaction.isRollbackOnly()) {
+                                        throw new IllegalStateException(
+                                                "Discovery tree write marked the transaction for"
+                                                        + " rollback");
+                                    }
+                                }
+                                spoiled[0] = -1;
+                            });
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                failed.incrementAndGet();
+                logger.warn("Discovery tree write failed", e);
+                return;
+            }
+            int i = spoiled[0];
+            if (i >= 0) {
+                logger.warnv(
+                        e,
+                        "Discovery tree write {0} of a batch of {1} failed, retrying the others",
+                        i + 1,
+                        batch.size());
+                write(batch.subList(0, i));
+                write(List.of(batch.get(i)));
+                write(batch.subList(i + 1, batch.size()));
+                return;
+            }
+            logger.warnv(
+                    e, "Batch of {0} discovery tree writes failed, retrying singly", batch.size());
+            batch.forEach(w -> write(List.of(w)));
+        }
+    }
+
+    // only called from the writer thread
+    private void recordBatch(int size) {
+        batches.incrementAndGet();
+        lastBatchSize = size;
+        largestBatchSize = Math.max(largestBatchSize, size);
+        windowWrites += size;
+        long now = System.nanoTime();
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW.toNanos()) {
+            writesPerSecond = windowWrites / (elapsed / 1e9);
+            windowStart = now;
+            windowWrites = 0;
+        }
+    }
+
+    /**
+     * Throughput of the discovery tree writer. {@code writesPerSecond} is measured over the most
+     * recent complete window of at least ten seconds in which any batch was written.
+     */
+    public record Stats(
+            int queued,
+            long written,
+            long failed,
+            long batches,
+            int lastBatchSize,
+            int largestBatchSize,
+            double meanBatchSize,
+            double writesPerSecond) {}
+}
@@ -41,7 +41,6 @@ import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
-import jakarta.transaction.Transactional.TxType;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
@@ -61,6 +60,7 @@ public class JDPDiscovery implements Consumer<JvmDiscoveryEvent> {
     @Inject Vertx vertx;
     @Inject EventBus eventBus;
     @Inject URIUtil uriUtil;
+    @Inject DiscoveryWriteQueue writes;
 
     @ConfigProperty(name = "cryostat.discovery.jdp.enabled")
     boolean enabled;
@@ -106,9 +106,12 @@ public class JDPDiscovery implements Consumer<JvmDiscoveryEvent> {
         eventBus.publish(JDPDiscovery.class.getName(), evt);
     }
 
-    @ConsumeEvent(blocking = true, ordered = true)
-    @Transactional(TxType.REQUIRES_NEW)
+    @ConsumeEvent
     void handleJdpEvent(JvmDiscoveryEvent evt) {
+        writes.submit(() -> updateDiscoveryTree(evt));
+    }
+
+    private void updateDiscoveryTree(JvmDiscoveryEvent evt) {
         logger.tracev(
                 "JDP Discovery Event {0} {1}",
                 evt.getEventKind(), evt.getJvmDescriptor().getMainClass());
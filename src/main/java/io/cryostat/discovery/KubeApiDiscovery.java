@@ -15,18 +15,20 @@
  */
 package io.cryostat.discovery;
 
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,26 +43,36 @@ import io.fabric8.kubernetes.api.model.EndpointAddress;
 import io.fabric8.kubernetes.api.model.EndpointPort;
 import io.fabric8.kubernetes.api.model.EndpointSubset;
 import io.fabric8.kubernetes.api.model.Endpoints;
+import io.fabric8.kubernetes.api.model.EndpointsList;
 import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.ObjectReference;
 import io.fabric8.kubernetes.api.model.OwnerReference;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.apps.DaemonSet;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.ReplicaSet;
+import io.fabric8.kubernetes.api.model.apps.StatefulSet;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.dsl.Resource;
 import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
 import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
 import io.quarkus.vertx.ConsumeEvent;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.mutiny.core.eventbus.EventBus;
+import jakarta.annotation.Nullable;
 import jakarta.annotation.Priority;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.persistence.NoResultException;
 import jakarta.transaction.Transactional;
-import jakarta.transaction.Transactional.TxType;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.ConcurrentException;
 import org.apache.commons.lang3.concurrent.LazyInitializer;
@@ -68,6 +80,18 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+/**
+ * Discovers targets from Kubernetes Endpoints, and places each under the chain of objects which
+ * own its Pod. Endpoints, and the kinds of object which may appear in owner chains, are cached by
+ * informers. When watching every namespace, each kind is watched by a single cluster-scoped
+ * informer, and otherwise by one informer per kind per watched namespace. A namespace's owner
+ * informers are closed once it no longer has any watched Endpoints.
+ *
+ * <p>The service account therefore needs {@code list} and {@code watch}, as well as {@code get},
+ * on Endpoints, Pods, ReplicaSets, Deployments, StatefulSets, DaemonSets and
+ * ReplicationControllers, either in each watched namespace or cluster-wide when watching every
+ * namespace.
+ */
 @ApplicationScoped
 public class KubeApiDiscovery {
     public static final String REALM = "KubernetesApi";
@@ -84,6 +108,8 @@ public class KubeApiDiscovery {
 
     @Inject EventBus bus;
 
+    @Inject DiscoveryWriteQueue writes;
+
     @ConfigProperty(name = "cryostat.discovery.kubernetes.enabled")
     boolean enabled;
 
@@ -96,23 +122,49 @@ public class KubeApiDiscovery {
     @ConfigProperty(name = "cryostat.discovery.kubernetes.resync-period")
     Duration informerResyncPeriod;
 
+    @ConfigProperty(name = "cryostat.discovery.kubernetes.label-selector")
+    Optional<String> labelSelector;
+
+    final Map<String, Instant> lastFullSync = new ConcurrentHashMap<>();
+
+    // informers caching the objects which may appear in target owner chains, keyed by kind and
+    // namespace, or by kind and ALL_NAMESPACES when watching the whole cluster, started as each is
+    // first needed
+    private final Map<String, SharedIndexInformer<? extends HasMetadata>> ownerInformers =
+            new ConcurrentHashMap<>();
+
+    // Endpoints informers keyed by the namespace they watch, or a single informer keyed by
+    // ALL_NAMESPACES when watching the whole cluster
     private final LazyInitializer<HashMap<String, SharedIndexInformer<Endpoints>>> nsInformers =
             new LazyInitializer<HashMap<String, SharedIndexInformer<Endpoints>>>() {
                 @Override
                 protected HashMap<String, SharedIndexInformer<Endpoints>> initialize()
                         throws ConcurrentException {
-                    // TODO: add support for some wildcard indicating a single Informer for any
-                    // namespace that Cryostat has permissions to. This will need some restructuring
-                    // of how the namespaces within the discovery tree are mapped.
                     var result = new HashMap<String, SharedIndexInformer<Endpoints>>();
+                    if (kubeConfig.watchAllNamespaces()) {
+                        // a single watch and a single store for every namespace Cryostat has
+                        // permissions to, partitioned by the store's built-in namespace index
+                        result.put(
+                                KubeConfig.ALL_NAMESPACES,
+                                withLabelSelector(client().endpoints().inAnyNamespace())
+                                        .inform(
+                                                new EndpointsHandler(),
+                                                informerResyncPeriod.toMillis()));
+                        logger.debugv(
+                                "Started cluster-scoped Endpoints SharedInformer with label"
+                                        + " selector \"{0}\"",
+                                labelSelector.orElse(""));
+                        return result;
+                    }
                     kubeConfig
                             .getWatchNamespaces()
                             .forEach(
                                     ns -> {
                                         result.put(
                                                 ns,
-                                                client().endpoints()
-                                                        .inNamespace(ns)
+                                                withLabelSelector(
+                                                                client().endpoints()
+                                                                        .inNamespace(ns))
                                                         .inform(
                                                                 new EndpointsHandler(),
                                                                 informerResyncPeriod.toMillis()));
@@ -174,6 +226,7 @@ public class KubeApiDiscovery {
                             logger.debugv(
                                     "Closed Endpoints SharedInformer for namespace \"{0}\"", ns);
                         });
+        ownerInformers.values().forEach(SharedIndexInformer::close);
     }
 
     boolean enabled() {
@@ -254,9 +307,12 @@ public class KubeApiDiscovery {
         return false;
     }
 
-    @ConsumeEvent(blocking = true, ordered = true)
-    @Transactional(TxType.REQUIRES_NEW)
+    @ConsumeEvent
     public void handleEndpointEvent(EndpointDiscoveryEvent evt) {
+        writes.submit(() -> updateDiscoveryTree(evt));
+    }
+
+    private void updateDiscoveryTree(EndpointDiscoveryEvent evt) {
         String namespace = evt.namespace;
         DiscoveryNode realm = DiscoveryNode.getRealm(REALM).orElseThrow();
         DiscoveryNode nsNode =
@@ -267,7 +323,7 @@ public class KubeApiDiscovery {
 
         try {
             if (evt.eventKind == EventKind.FOUND) {
-                buildOwnerChain(nsNode, evt.target, evt.objRef);
+                buildOwnerChain(nsNode, evt.target.copy(), evt.objRef);
             } else {
                 pruneOwnerChain(nsNode, evt.target);
             }
@@ -285,60 +341,139 @@ public class KubeApiDiscovery {
         }
     }
 
+    /**
+     * Reconcile the targets of a single Endpoints object from its previous and current states.
+     * Only the addresses which actually changed between the two are published, so the cost of an
+     * event is proportional to the size of that one Endpoints object rather than to the size of its
+     * namespace.
+     */
+    void reconcileEndpoints(
+            String namespace, @Nullable Endpoints previous, @Nullable Endpoints current) {
+        Map<URI, TargetTuple> before = indexByConnectUrl(previous);
+        Map<URI, TargetTuple> after = indexByConnectUrl(current);
+
+        after.forEach(
+                (url, tuple) -> {
+                    if (!before.containsKey(url)) {
+                        Target t = tuple.toTarget();
+                        if (t != null) {
+                            notify(
+                                    EndpointDiscoveryEvent.from(
+                                            namespace, t, tuple.objRef, EventKind.FOUND));
+                        }
+                    }
+                });
+        before.keySet().stream()
+                .filter(url -> !after.containsKey(url))
+                .forEach(url -> notifyLost(namespace, url));
+    }
+
+    /**
+     * Compare every target persisted for the namespace against the Endpoints currently in the
+     * informer's store. This catches up on any events which were missed, for example while
+     * Cryostat was not running, and so is only performed when a namespace is first observed and
+     * then once per resync period.
+     */
     private void handleObservedEndpoints(String namespace) {
-        List<DiscoveryNode> targetNodes =
-                DiscoveryNode.findAllByNodeType(KubeDiscoveryNodeType.ENDPOINT).stream()
-                        .filter(
-                                (n) ->
-                                        namespace.equals(
-                                                n.labels.get(DISCOVERY_NAMESPACE_LABEL_KEY)))
-                        .collect(Collectors.toList());
-
-        Map<URI, ObjectReference> targetRefMap = new HashMap<>();
-
-        Set<Target> persistedTargets = new HashSet<>();
-        for (DiscoveryNode node : targetNodes) {
-            persistedTargets.add(node.target);
-        }
-
-        Set<Target> observedTargets =
-                safeGetInformers().get(namespace).getStore().list().stream()
-                        .map((endpoint) -> getTargetTuplesFrom(endpoint))
-                        .flatMap(List::stream)
-                        .filter((tuple) -> Objects.nonNull(tuple.objRef))
-                        .map(
-                                (tuple) -> {
-                                    Target t = tuple.toTarget();
-                                    if (t != null) {
-                                        targetRefMap.put(t.connectUrl, tuple.objRef);
-                                    }
-                                    return t;
-                                })
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toSet());
-
-        // Add new targets
-        Target.compare(persistedTargets)
-                .to(observedTargets)
-                .added()
-                .forEach(
-                        (t) ->
-                                notify(
-                                        EndpointDiscoveryEvent.from(
-                                                namespace,
-                                                t,
-                                                targetRefMap.get(t.connectUrl),
-                                                EventKind.FOUND)));
-
-        // Prune deleted targets
-        Target.compare(persistedTargets)
-                .to(observedTargets)
-                .removed()
-                .forEach(
-                        (t) ->
-                                notify(
-                                        EndpointDiscoveryEvent.from(
-                                                namespace, t, null, EventKind.LOST)));
+        Set<URI> persisted = persistedConnectUrls(namespace);
+
+        Map<URI, TargetTuple> observed = new HashMap<>();
+        observedEndpoints(namespace)
+                .forEach(endpoints -> observed.putAll(indexByConnectUrl(endpoints)));
+
+        observed.forEach(
+                (url, tuple) -> {
+                    if (!persisted.contains(url)) {
+                        Target t = tuple.toTarget();
+                        if (t != null) {
+                            notify(
+                                    EndpointDiscoveryEvent.from(
+                                            namespace, t, tuple.objRef, EventKind.FOUND));
+                        }
+                    }
+                });
+        persisted.stream()
+                .filter(url -> !observed.containsKey(url))
+                .forEach(url -> notifyLost(namespace, url));
+
+        lastFullSync.put(namespace, Instant.now());
+    }
+
+    List<Endpoints> observedEndpoints(String namespace) {
+        Map<String, SharedIndexInformer<Endpoints>> informers = safeGetInformers();
+        SharedIndexInformer<Endpoints> informer = informers.get(namespace);
+        if (informer != null) {
+            return informer.getStore().list();
+        }
+        informer = informers.get(KubeConfig.ALL_NAMESPACES);
+        if (informer != null) {
+            return informer.getIndexer().byIndex(Cache.NAMESPACE_INDEX, namespace);
+        }
+        return List.of();
+    }
+
+    // with a label selector configured, the API server only sends the Endpoints which are
+    // candidates for discovery rather than every Endpoints object in the watched namespaces
+    private FilterWatchListDeletable<Endpoints, EndpointsList, Resource<Endpoints>>
+            withLabelSelector(
+                    FilterWatchListDeletable<Endpoints, EndpointsList, Resource<Endpoints>> op) {
+        return labelSelector.filter(StringUtils::isNotBlank).map(op::withLabelSelector).orElse(op);
+    }
+
+    boolean fullSyncDue(String namespace) {
+        Instant last = lastFullSync.get(namespace);
+        if (last == null) {
+            return true;
+        }
+        if (informerResyncPeriod.isZero() || informerResyncPeriod.isNegative()) {
+            return false;
+        }
+        // resync notifications for every object in the namespace arrive in a burst, and only the
+        // first of each burst should trigger a full sync
+        Duration elapsed = Duration.between(last, Instant.now());
+        return elapsed.compareTo(informerResyncPeriod.dividedBy(2)) >= 0;
+    }
+
+    private Map<URI, TargetTuple> indexByConnectUrl(@Nullable Endpoints endpoints) {
+        Map<URI, TargetTuple> result = new HashMap<>();
+        if (endpoints == null) {
+            return result;
+        }
+        for (TargetTuple tuple : getTargetTuplesFrom(endpoints)) {
+            if (tuple.objRef == null) {
+                continue;
+            }
+            try {
+                result.put(tuple.connectUrl(), tuple);
+            } catch (Exception e) {
+                logger.warn("Target conversion exception", e);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<URI> persistedConnectUrls(String namespace) {
+        List<Object> urls =
+                DiscoveryNode.getEntityManager()
+                        .createNativeQuery(
+                                "SELECT t.connectUrl FROM Target t JOIN DiscoveryNode n ON"
+                                        + " t.discoveryNode = n.id WHERE n.nodeType = :nodeType"
+                                        + " AND t.annotations @> jsonb_build_object('cryostat',"
+                                        + " jsonb_build_object('REALM', cast(:realm as text),"
+                                        + " 'NAMESPACE', cast(:namespace as text)))")
+                        .setParameter("nodeType", KubeDiscoveryNodeType.ENDPOINT.getKind())
+                        .setParameter("realm", REALM)
+                        .setParameter("namespace", namespace)
+                        .getResultList();
+        return urls.stream().map(u -> URI.create(u.toString())).collect(Collectors.toSet());
+    }
+
+    private void notifyLost(String namespace, URI connectUrl) {
+        // pruning only needs to identify the target, which it then looks up again itself
+        Target t = new Target();
+        t.connectUrl = connectUrl;
+        notify(EndpointDiscoveryEvent.from(namespace, t, null, EventKind.LOST));
     }
 
     private void notify(EndpointDiscoveryEvent evt) {
@@ -462,7 +597,7 @@ public class KubeApiDiscovery {
         return queryForNode(namespace, owner.getName(), owner.getKind());
     }
 
-    private Pair<HasMetadata, DiscoveryNode> queryForNode(
+    Pair<HasMetadata, DiscoveryNode> queryForNode(
             String namespace, String name, String kind) {
 
         KubeDiscoveryNodeType nodeType = KubeDiscoveryNodeType.fromKubernetesKind(kind);
@@ -470,17 +605,17 @@ public class KubeApiDiscovery {
             return null;
         }
 
-        HasMetadata kubeObj =
-                nodeType.getQueryFunction().apply(client()).apply(namespace).apply(name);
+        HasMetadata kubeObj = lookupObject(nodeType, namespace, name);
 
         DiscoveryNode node =
-                DiscoveryNode.getNode(
-                                n -> {
-                                    return nodeType.getKind().equals(n.nodeType)
-                                            && name.equals(n.name)
-                                            && namespace.equals(
-                                                    n.labels.get(DISCOVERY_NAMESPACE_LABEL_KEY));
-                                })
+                DiscoveryNode.<DiscoveryNode>find(
+                                "nodeType = ?1 and name = ?2", nodeType.getKind(), name)
+                        .stream()
+                        .filter(
+                                n ->
+                                        namespace.equals(
+                                                n.labels.get(DISCOVERY_NAMESPACE_LABEL_KEY)))
+                        .findFirst()
                         .orElseGet(
                                 () -> {
                                     DiscoveryNode newNode = new DiscoveryNode();
@@ -488,9 +623,12 @@ public class KubeApiDiscovery {
                                     newNode.nodeType = nodeType.getKind();
                                     newNode.children = new ArrayList<>();
                                     newNode.target = null;
+                                    // copied, since the object may be shared with
+                                    // an informer's cache
                                     newNode.labels =
                                             kubeObj != null
-                                                    ? kubeObj.getMetadata().getLabels()
+                                                    ? new HashMap<>(
+                                                            kubeObj.getMetadata().getLabels())
                                                     : new HashMap<>();
                                     // Add namespace to label to retrieve node later
                                     newNode.labels.put(DISCOVERY_NAMESPACE_LABEL_KEY, namespace);
@@ -499,9 +637,82 @@ public class KubeApiDiscovery {
         return Pair.of(kubeObj, node);
     }
 
+    /**
+     * Get a Kubernetes object, preferably from the local cache of an informer watching objects of
+     * that kind in that namespace. Resolving an owner chain therefore usually makes no API server
+     * requests at all. Direct requests are only made for kinds which are not cached, while an
+     * informer is still performing its initial listing, or when the object is not (yet) in the
+     * informer's store.
+     */
+    HasMetadata lookupObject(
+            KubeDiscoveryNodeType nodeType, String namespace, String name) {
+        SharedIndexInformer<? extends HasMetadata> informer = ownerInformer(nodeType, namespace);
+        if (informer != null && informer.hasSynced()) {
+            HasMetadata cached = informer.getStore().getByKey(namespace + "/" + name);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return nodeType.getQueryFunction().apply(client()).apply(namespace).apply(name);
+    }
+
+    private SharedIndexInformer<? extends HasMetadata> ownerInformer(
+            KubeDiscoveryNodeType nodeType, String namespace) {
+        Class<? extends HasMetadata> type = nodeType.getResourceType();
+        if (type == null) {
+            return null;
+        }
+        // the stores of cluster-scoped informers are keyed by namespace and name just the same,
+        // so lookups do not need to know which kind of informer they are reading
+        boolean allNamespaces = kubeConfig.watchAllNamespaces();
+        String scope = allNamespaces ? KubeConfig.ALL_NAMESPACES : namespace;
+        return ownerInformers.computeIfAbsent(
+                String.format("%s/%s", nodeType.getKind(), scope),
+                k -> {
+                    logger.debugv(
+                            "Starting {0} SharedInformer for namespace \"{1}\"",
+                            nodeType.getKind(), scope);
+                    // start without waiting for the initial listing, lookups fall back to direct
+                    // requests until it completes
+                    SharedIndexInformer<? extends HasMetadata> informer =
+                            allNamespaces
+                                    ? client().resources(type).inAnyNamespace().runnableInformer(0)
+                                    : client().resources(type)
+                                            .inNamespace(namespace)
+                                            .runnableInformer(0);
+                    informer.start();
+                    return informer;
+                });
+    }
+
+    /**
+     * Close the owner informers for a namespace which no longer has any watched Endpoints, so that
+     * their watches and caches are not kept for a namespace with no targets. They are started
+     * again if targets later reappear there. Cluster-scoped owner informers are shared by every
+     * namespace and are kept.
+     */
+    void closeOwnerInformersIfIdle(String namespace) {
+        if (kubeConfig.watchAllNamespaces() || !observedEndpoints(namespace).isEmpty()) {
+            return;
+        }
+        String suffix = "/" + namespace;
+        ownerInformers
+                .entrySet()
+                .removeIf(
+                        e -> {
+                            if (!e.getKey().endsWith(suffix)) {
+                                return false;
+                            }
+                            e.getValue().close();
+                            logger.debugv("Closed {0} SharedInformer", e.getKey());
+                            return true;
+                        });
+    }
+
     @ApplicationScoped
     static final class KubeConfig {
         private static final String OWN_NAMESPACE = ".";
+        static final String ALL_NAMESPACES = "*";
 
         @Inject Logger logger;
         @Inject FileSystem fs;
@@ -527,6 +738,7 @@ public class KubeApiDiscovery {
 
         Collection<String> getWatchNamespaces() {
             return watchNamespaces.orElse(List.of()).stream()
+                    .filter(n -> !ALL_NAMESPACES.equals(n))
                     .map(
                             n -> {
                                 if (OWN_NAMESPACE.equals(n)) {
@@ -538,6 +750,10 @@ public class KubeApiDiscovery {
                     .collect(Collectors.toSet());
         }
 
+        boolean watchAllNamespaces() {
+            return watchNamespaces.orElse(List.of()).contains(ALL_NAMESPACES);
+        }
+
         String getOwnNamespace() {
             try {
                 return fs.readString(Path.of(namespacePath));
@@ -562,8 +778,7 @@ public class KubeApiDiscovery {
             logger.debugv(
                     "Endpoint {0} created in namespace {1}",
                     endpoints.getMetadata().getName(), endpoints.getMetadata().getNamespace());
-            QuarkusTransaction.joiningExisting()
-                    .run(() -> handleObservedEndpoints(endpoints.getMetadata().getNamespace()));
+            handle(endpoints.getMetadata().getNamespace(), null, endpoints);
         }
 
         @Override
@@ -572,8 +787,7 @@ public class KubeApiDiscovery {
                     "Endpoint {0} modified in namespace {1}",
                     newEndpoints.getMetadata().getName(),
                     newEndpoints.getMetadata().getNamespace());
-            QuarkusTransaction.joiningExisting()
-                    .run(() -> handleObservedEndpoints(newEndpoints.getMetadata().getNamespace()));
+            handle(newEndpoints.getMetadata().getNamespace(), oldEndpoints, newEndpoints);
         }
 
         @Override
@@ -581,16 +795,38 @@ public class KubeApiDiscovery {
             logger.debugv(
                     "Endpoint {0} deleted in namespace {1}",
                     endpoints.getMetadata().getName(), endpoints.getMetadata().getNamespace());
+            String namespace = endpoints.getMetadata().getNamespace();
             if (deletedFinalStateUnknown) {
+                // the next full sync will prune whatever this object last pointed to
                 logger.warnv("Deleted final state unknown: {0}", endpoints);
-                return;
+            } else {
+                handle(namespace, endpoints, null);
             }
+            closeOwnerInformersIfIdle(namespace);
+        }
+
+        private void handle(
+                String namespace, @Nullable Endpoints previous, @Nullable Endpoints current) {
+            // informer resyncs redeliver each object as an update to itself
+            boolean resync =
+                    previous != null
+                            && current != null
+                            && Objects.equals(
+                                    previous.getMetadata().getResourceVersion(),
+                                    current.getMetadata().getResourceVersion());
             QuarkusTransaction.joiningExisting()
-                    .run(() -> handleObservedEndpoints(endpoints.getMetadata().getNamespace()));
+                    .run(
+                            () -> {
+                                if (fullSyncDue(namespace)) {
+                                    handleObservedEndpoints(namespace);
+                                } else if (!resync) {
+                                    reconcileEndpoints(namespace, previous, current);
+                                }
+                            });
         }
     }
 
-    private static record EndpointDiscoveryEvent(
+    static record EndpointDiscoveryEvent(
             String namespace, Target target, ObjectReference objRef, EventKind eventKind) {
         static EndpointDiscoveryEvent from(
                 String namespace, Target target, ObjectReference objRef, EventKind eventKind) {
@@ -609,25 +845,28 @@ public class KubeApiDiscovery {
             this.port = port;
         }
 
+        URI connectUrl() throws MalformedURLException {
+            String ip = addr.getIp().replaceAll("\\.", "-");
+            String namespace = objRef.getNamespace();
+
+            boolean isPod = objRef.getKind().equals(KubeDiscoveryNodeType.POD.getKind());
+
+            String host = String.format("%s.%s", ip, namespace);
+            if (isPod) {
+                host = String.format("%s.pod", host);
+            }
+
+            JMXServiceURL jmxUrl =
+                    new JMXServiceURL(
+                            "rmi", "", 0, "/jndi/rmi://" + host + ':' + port.getPort() + "/jmxrmi");
+            return URI.create(jmxUrl.toString());
+        }
+
         public Target toTarget() {
             try {
-                String ip = addr.getIp().replaceAll("\\.", "-");
                 String namespace = objRef.getNamespace();
-
                 boolean isPod = objRef.getKind().equals(KubeDiscoveryNodeType.POD.getKind());
-
-                String host = String.format("%s.%s", ip, namespace);
-                if (isPod) {
-                    host = String.format("%s.pod", host);
-                }
-
-                JMXServiceURL jmxUrl =
-                        new JMXServiceURL(
-                                "rmi",
-                                "",
-                                0,
-                                "/jndi/rmi://" + host + ':' + port.getPort() + "/jmxrmi");
-                URI connectUrl = URI.create(jmxUrl.toString());
+                URI connectUrl = connectUrl();
 
                 Pair<HasMetadata, DiscoveryNode> pair =
                         queryForNode(namespace, objRef.getName(), objRef.getKind());
@@ -638,7 +877,10 @@ public class KubeApiDiscovery {
                 target.activeRecordings = new ArrayList<>();
                 target.connectUrl = connectUrl;
                 target.alias = objRef.getName();
-                target.labels = obj != null ? obj.getMetadata().getLabels() : new HashMap<>();
+                target.labels =
+                        obj != null
+                                ? new HashMap<>(obj.getMetadata().getLabels())
+                                : new HashMap<>();
                 target.annotations = new Annotations();
                 target.annotations
                         .platform()
@@ -671,35 +913,48 @@ enum KubeDiscoveryNodeType implements NodeType {
     NAMESPACE("Namespace"),
     STATEFULSET(
             "StatefulSet",
+            StatefulSet.class,
             c -> ns -> n -> c.apps().statefulSets().inNamespace(ns).withName(n).get()),
-    DAEMONSET("DaemonSet", c -> ns -> n -> c.apps().daemonSets().inNamespace(ns).withName(n).get()),
+    DAEMONSET(
+            "DaemonSet",
+            DaemonSet.class,
+            c -> ns -> n -> c.apps().daemonSets().inNamespace(ns).withName(n).get()),
     DEPLOYMENT(
-            "Deployment", c -> ns -> n -> c.apps().deployments().inNamespace(ns).withName(n).get()),
+            "Deployment",
+            Deployment.class,
+            c -> ns -> n -> c.apps().deployments().inNamespace(ns).withName(n).get()),
     REPLICASET(
-            "ReplicaSet", c -> ns -> n -> c.apps().replicaSets().inNamespace(ns).withName(n).get()),
+            "ReplicaSet",
+            ReplicaSet.class,
+            c -> ns -> n -> c.apps().replicaSets().inNamespace(ns).withName(n).get()),
     REPLICATIONCONTROLLER(
             "ReplicationController",
+            ReplicationController.class,
             c -> ns -> n -> c.replicationControllers().inNamespace(ns).withName(n).get()),
-    POD("Pod", c -> ns -> n -> c.pods().inNamespace(ns).withName(n).get()),
-    ENDPOINT("Endpoint", c -> ns -> n -> c.endpoints().inNamespace(ns).withName(n).get()),
+    POD("Pod", Pod.class, c -> ns -> n -> c.pods().inNamespace(ns).withName(n).get()),
+    // Endpoints are watched by their own informers, and are never owners
+    ENDPOINT("Endpoint", null, c -> ns -> n -> c.endpoints().inNamespace(ns).withName(n).get()),
     // OpenShift resources
     DEPLOYMENTCONFIG("DeploymentConfig"),
     ;
 
     private final String kubernetesKind;
+    private final transient Class<? extends HasMetadata> resourceType;
     private final transient Function<
                     KubernetesClient, Function<String, Function<String, ? extends HasMetadata>>>
             getFn;
 
     KubeDiscoveryNodeType(String kubernetesKind) {
-        this(kubernetesKind, client -> namespace -> name -> null);
+        this(kubernetesKind, null, client -> namespace -> name -> null);
     }
 
     KubeDiscoveryNodeType(
             String kubernetesKind,
+            Class<? extends HasMetadata> resourceType,
             Function<KubernetesClient, Function<String, Function<String, ? extends HasMetadata>>>
                     getFn) {
         this.kubernetesKind = kubernetesKind;
+        this.resourceType = resourceType;
         this.getFn = getFn;
     }
 
@@ -713,6 +968,11 @@ enum KubeDiscoveryNodeType implements NodeType {
         return getFn;
     }
 
+    /** The resource type to cache with an informer, or null if objects of this kind are not. */
+    public Class<? extends HasMetadata> getResourceType() {
+        return resourceType;
+    }
+
     public static KubeDiscoveryNodeType fromKubernetesKind(String kubernetesKind) {
         if (kubernetesKind == null) {
             return null;
@@ -0,0 +1,273 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.Producers;
+import io.cryostat.discovery.DiscoveryPlugin.PluginCallback;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Hibernate;
+import org.jboss.logging.Logger;
+
+/**
+ * Periodically asks every registered discovery plugin to refresh, pruning plugins which do not
+ * respond. Rather than calling every plugin on the same period boundary, each cycle spreads its
+ * calls evenly across the period with some random jitter, so that large numbers of plugins see a
+ * steady trickle of requests rather than a burst. The calls are non-blocking, with at most {@link
+ * ConfigProperties#DISCOVERY_PLUGINS_PING_CONCURRENCY} in flight at a time, and the round-trip
+ * latency of each is recorded per plugin.
+ */
+@ApplicationScoped
+public class PluginPinger {
+
+    // at startup, plugins which went away while Cryostat was down should be pruned promptly
+    private static final Duration STARTUP_SPREAD = Duration.ofSeconds(10);
+    // weight of the newest sample in the moving average of each plugin's latency
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    @Inject Logger logger;
+    @Inject Vertx vertx;
+
+    @Inject
+    @Named(Producers.BLOCKING_EXECUTOR)
+    ExecutorService executor;
+
+    @ConfigProperty(name = "cryostat.discovery.plugins.ping-period")
+    Duration pingPeriod;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_CONCURRENCY)
+    int concurrency;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_TIMEOUT)
+    Duration timeout;
+
+    private final Map<UUID, PingStats> stats = new ConcurrentHashMap<>();
+    private final AtomicBoolean cycling = new AtomicBoolean();
+    private final AtomicReference<Duration> deferredCycle = new AtomicReference<>();
+    private long timerId = -1;
+
+    void onStart(@Observes StartupEvent evt) {
+        Duration startupSpread =
+                STARTUP_SPREAD.compareTo(pingPeriod) < 0 ? STARTUP_SPREAD : pingPeriod;
+        executor.execute(() -> cycle(startupSpread));
+        timerId =
+                vertx.setPeriodic(
+                        pingPeriod.toMillis(), id -> executor.execute(() -> cycle(pingPeriod)));
+    }
+
+    void onStop(@Observes ShutdownEvent evt) {
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+    }
+
+    Optional<PingStats> stats(UUID pluginId) {
+        return Optional.ofNullable(stats.get(pluginId));
+    }
+
+    // a cycle spreads its calls across the whole period, so the next cycle can come due while the
+    // last calls of the previous one are still in flight. Rather than overlapping with it, the next
+    // cycle is deferred until the previous one finishes, and at most one cycle is ever deferred.
+    void cycle(Duration spread) {
+        if (!cycling.compareAndSet(false, true)) {
+            logger.debug("Previous discovery plugin ping cycle still in flight, deferring");
+            deferredCycle.set(spread);
+            return;
+        }
+        Uni.createFrom()
+                .deferred(() -> pingAll(spread))
+                .onTermination()
+                .invoke(this::cycleFinished)
+                .subscribe()
+                .with(
+                        unused -> {},
+                        failure -> logger.warn("Discovery plugin ping cycle failed", failure));
+    }
+
+    private void cycleFinished() {
+        cycling.set(false);
+        Duration next = deferredCycle.getAndSet(null);
+        if (next != null) {
+            executor.execute(() -> cycle(next));
+        }
+    }
+
+    Uni<Void> pingAll(Duration spread) {
+        List<UUID> ids;
+        try {
+            ids =
+                    QuarkusTransaction.requiringNew()
+                            .call(
+                                    () ->
+                                            DiscoveryPlugin.<DiscoveryPlugin>find("builtin", false)
+                                                    .list()
+                                                    .stream()
+                                                    .map(p -> p.id)
+                                                    .sorted()
+                                                    .toList());
+        } catch (Exception e) {
+            logger.warn("Failed to list discovery plugins", e);
+            return Uni.createFrom().voidItem();
+        }
+        stats.keySet().retainAll(ids);
+        if (ids.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+
+        // each plugin gets its own slot within the period, and a random offset within its slot
+        long slot = Math.max(1, spread.toMillis() / ids.size());
+        return Multi.createFrom()
+                .range(0, ids.size())
+                .onItem()
+                .transformToUni(
+                        i ->
+                                Uni.createFrom()
+                                        .item(ids.get(i))
+                                        .onItem()
+                                        .delayIt()
+                                        .by(
+                                                Duration.ofMillis(
+                                                        i * slot
+                                                                + ThreadLocalRandom.current()
+                                                                        .nextLong(slot))))
+                .merge(ids.size())
+                .onItem()
+                .transformToUni(this::ping)
+                .merge(concurrency)
+                .collect()
+                .last()
+                .replaceWithVoid();
+    }
+
+    private Uni<Void> ping(UUID id) {
+        return Uni.createFrom()
+                .item(() -> QuarkusTransaction.requiringNew().call(() -> callback(id)))
+                .runSubscriptionOn(executor)
+                .chain(
+                        cb -> {
+                            if (cb == null) {
+                                return Uni.createFrom().voidItem();
+                            }
+                            long start = System.nanoTime();
+                            return cb.callback()
+                                    .refreshAsync()
+                                    .ifNoItem()
+                                    .after(timeout)
+                                    .fail()
+                                    .onItem()
+                                    .invoke(
+                                            () -> {
+                                                Duration rtt =
+                                                        Duration.ofNanos(System.nanoTime() - start);
+                                                stats.compute(
+                                                        id,
+                                                        (k, prev) ->
+                                                                PingStats.next(prev, rtt));
+                                                logger.debugv(
+                                                        "Retained discovery plugin: {0} @ {1} in"
+                                                                + " {2}ms",
+                                                        cb.realm(),
+                                                        cb.uri(),
+                                                        rtt.toMillis());
+                                            })
+                                    .onFailure()
+                                    .invoke(
+                                            e -> {
+                                                logger.debugv(
+                                                        e,
+                                                        "Pruned discovery plugin: {0} @ {1}",
+                                                        cb.realm(),
+                                                        cb.uri());
+                                                executor.execute(() -> prune(id));
+                                            })
+                                    .onFailure()
+                                    .recoverWithNull()
+                                    .replaceWithVoid();
+                        })
+                .onFailure()
+                .recoverWithItem(
+                        e -> {
+                            logger.warnv(e, "Failed to ping discovery plugin {0}", id);
+                            return null;
+                        });
+    }
+
+    private Callback callback(UUID id) throws Exception {
+        Optional<DiscoveryPlugin> plugin = DiscoveryPlugin.findByIdOptional(id);
+        if (plugin.isEmpty()) {
+            return null;
+        }
+        DiscoveryPlugin p = plugin.get();
+        // the callback's authorization header is computed from the credential later, outside of
+        // this transaction, so it must be loaded now
+        Hibernate.initialize(p.credential);
+        return new Callback(p.realm.name, p.callback.toString(), PluginCallback.create(p));
+    }
+
+    private void prune(UUID id) {
+        stats.remove(id);
+        try {
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () ->
+                                    DiscoveryPlugin.<DiscoveryPlugin>findByIdOptional(id)
+                                            .ifPresent(DiscoveryPlugin::delete));
+        } catch (Exception e) {
+            logger.warnv(e, "Failed to prune discovery plugin {0}", id);
+        }
+    }
+
+    private record Callback(String realm, String uri, PluginCallback callback) {}
+
+    /**
+     * Round-trip latency of a plugin's most recent successful refresh, and a moving average over
+     * its recent refreshes.
+     */
+    public record PingStats(Instant lastPing, long lastLatencyMs, double averageLatencyMs) {
+        static PingStats next(PingStats prev, Duration rtt) {
+            long ms = rtt.toMillis();
+            double avg =
+                    prev == null
+                            ? ms
+                            : LATENCY_SMOOTHING * ms
+                                    + (1 - LATENCY_SMOOTHING) * prev.averageLatencyMs();
+            return new PingStats(Instant.now(), ms, avg);
+        }
+    }
+}
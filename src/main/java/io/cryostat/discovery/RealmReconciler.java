@@ -0,0 +1,209 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import io.cryostat.targets.Target;
+
+/**
+ * Applies a discovery plugin's published subtree to its stored realm as a diff. Nodes are matched
+ * by identity, which for target nodes is the target's connection URL and for environment nodes is
+ * their type and name among their siblings. Only nodes which are new are inserted, only nodes
+ * which are gone are deleted, and matched nodes are only updated where their contents actually
+ * differ. Unchanged targets therefore keep their IDs and emit no discovery events, and a plugin
+ * publishing the same tree again costs reads but no writes.
+ *
+ * <p>Removals are flushed before anything is inserted, so that a target which has moved within
+ * the plugin's tree does not briefly exist twice.
+ */
+final class RealmReconciler {
+
+    private int added;
+    private int removed;
+    private int updated;
+
+    private RealmReconciler() {}
+
+    /** Replace the realm's subtree with the published one. */
+    static Result publish(DiscoveryNode realm, List<DiscoveryNode> published) {
+        var reconciler = new RealmReconciler();
+        reconciler.prune(realm, published);
+        DiscoveryNode.flush();
+        reconciler.apply(realm, published);
+        return reconciler.result();
+    }
+
+    /**
+     * Apply an incremental change to the realm. All removals are applied first, regardless of
+     * the order in which the plugin listed them:
+     *
+     * <ul>
+     *   <li>each target with one of the removed connection URLs is deleted, wherever it is in the
+     *       realm's subtree. Environment nodes left empty by this are kept, since the plugin may
+     *       still be populating them. URLs which are not present are ignored.
+     *   <li>each replaced node's existing subtree is pruned down to the published one, exactly as
+     *       {@link #publish} does for the whole realm.
+     * </ul>
+     *
+     * Then each added and replaced node is inserted at the top level of the realm, or merged into
+     * the existing node with the same identity. Adding a node only ever inserts or updates
+     * descendants, while replacing it also deletes the descendants it no longer lists.
+     */
+    static Result patch(
+            DiscoveryNode realm,
+            Collection<URI> removedUrls,
+            List<DiscoveryNode> added,
+            List<DiscoveryNode> replaced) {
+        var reconciler = new RealmReconciler();
+        reconciler.remove(realm, Set.copyOf(removedUrls));
+        Map<String, DiscoveryNode> current = index(realm.children);
+        for (DiscoveryNode node : replaced) {
+            DiscoveryNode match = current.get(key(node));
+            if (match != null && match.target == null) {
+                reconciler.prune(match, childrenOf(node));
+            }
+        }
+        DiscoveryNode.flush();
+        List<DiscoveryNode> upserted = new ArrayList<>(added);
+        upserted.addAll(replaced);
+        reconciler.apply(realm, upserted);
+        return reconciler.result();
+    }
+
+    private void remove(DiscoveryNode existing, Set<URI> removedUrls) {
+        for (DiscoveryNode child : new ArrayList<>(childrenOf(existing))) {
+            if (child.target == null) {
+                remove(child, removedUrls);
+            } else if (removedUrls.contains(child.target.connectUrl)) {
+                detach(existing, child);
+            }
+        }
+    }
+
+    private void prune(DiscoveryNode existing, List<DiscoveryNode> published) {
+        Map<String, DiscoveryNode> wanted = index(published);
+        for (DiscoveryNode child : new ArrayList<>(existing.children)) {
+            DiscoveryNode match = wanted.get(key(child));
+            if (match == null) {
+                detach(existing, child);
+            } else if (child.target == null) {
+                prune(child, childrenOf(match));
+            }
+        }
+    }
+
+    private void apply(DiscoveryNode existing, List<DiscoveryNode> published) {
+        Map<String, DiscoveryNode> current = index(existing.children);
+        for (DiscoveryNode node : published) {
+            DiscoveryNode match = current.get(key(node));
+            if (match == null) {
+                attach(existing, node);
+                current.put(key(node), node);
+            } else if (match.target != null) {
+                if (updateTarget(match, node)) {
+                    updated++;
+                }
+            } else {
+                if (!Objects.equals(match.labels, node.labels)) {
+                    match.labels = node.labels;
+                    updated++;
+                }
+                apply(match, childrenOf(node));
+            }
+        }
+    }
+
+    private void attach(DiscoveryNode parent, DiscoveryNode node) {
+        List<DiscoveryNode> children = childrenOf(node);
+        node.parent = parent;
+        node.children = node.target != null ? null : new ArrayList<>();
+        if (node.target != null) {
+            node.target.discoveryNode = node;
+        }
+        parent.children.add(node);
+        // the node must have an ID before its children are persisted, since their paths include it
+        node.persist();
+        added++;
+        children.forEach(child -> attach(node, child));
+    }
+
+    private void detach(DiscoveryNode parent, DiscoveryNode node) {
+        parent.children.remove(node);
+        node.parent = null;
+        removed++;
+    }
+
+    // only the fields a plugin controls are compared, and only changed fields are assigned, so
+    // that dirty checking leaves unchanged targets alone
+    private static boolean updateTarget(DiscoveryNode existing, DiscoveryNode published) {
+        Target current = existing.target;
+        Target incoming = published.target;
+        boolean changed = false;
+        if (incoming.alias != null) {
+            String alias = URLEncoder.encode(incoming.alias, StandardCharsets.UTF_8);
+            if (!Objects.equals(current.alias, alias)) {
+                current.alias = alias;
+                changed = true;
+            }
+        }
+        if (!Objects.equals(current.labels, incoming.labels)) {
+            current.labels = incoming.labels;
+            changed = true;
+        }
+        if (!Objects.equals(current.annotations, incoming.annotations)) {
+            current.annotations = incoming.annotations;
+            changed = true;
+        }
+        if (!Objects.equals(existing.labels, published.labels)) {
+            existing.labels = published.labels;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static Map<String, DiscoveryNode> index(Collection<DiscoveryNode> nodes) {
+        Map<String, DiscoveryNode> result = new HashMap<>();
+        nodes.forEach(n -> result.put(key(n), n));
+        return result;
+    }
+
+    private static String key(DiscoveryNode node) {
+        if (node.target != null) {
+            return "target:" + node.target.connectUrl;
+        }
+        return node.nodeType + ":" + node.name;
+    }
+
+    private static List<DiscoveryNode> childrenOf(DiscoveryNode node) {
+        return node.children != null ? node.children : List.of();
+    }
+
+    private Result result() {
+        return new Result(added, removed, updated);
+    }
+
+    record Result(int added, int removed, int updated) {}
+}
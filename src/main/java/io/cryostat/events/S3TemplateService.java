@@ -39,6 +39,7 @@ import org.openjdk.jmc.flightrecorder.configuration.model.xml.XMLTagInstance;
 import org.openjdk.jmc.flightrecorder.configuration.model.xml.XMLValidationResult;
 
 import io.cryostat.ConfigProperties;
+import io.cryostat.ObjectStorage;
 import io.cryostat.Producers;
 import io.cryostat.StorageBuckets;
 import io.cryostat.core.FlightRecorderException;
@@ -62,14 +63,8 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.jsoup.Jsoup;
 import org.jsoup.parser.Parser;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.s3.model.Tag;
 import software.amazon.awssdk.services.s3.model.Tagging;
 
@@ -85,7 +80,7 @@ public class S3TemplateService implements MutableTemplateService {
     @ConfigProperty(name = ConfigProperties.TEMPLATES_DIR)
     Path dir;
 
-    @Inject S3Client storage;
+    @Inject ObjectStorage storage;
     @Inject StorageBuckets storageBuckets;
 
     @Inject EventBus bus;
@@ -139,7 +134,7 @@ public class S3TemplateService implements MutableTemplateService {
 
     @Override
     public List<Template> getTemplates() throws FlightRecorderException {
-        return getObjects().stream()
+        return getObjectTags().stream()
                 .map(
                         t -> {
                             try {
@@ -166,16 +161,20 @@ public class S3TemplateService implements MutableTemplateService {
         }
     }
 
-    private List<S3Object> getObjects() {
-        var builder = ListObjectsV2Request.builder().bucket(bucket);
-        return storage.listObjectsV2(builder.build()).contents();
+    private List<List<Tag>> getObjectTags() {
+        return storage.await(
+                storage.listObjects(bucket)
+                        .collect()
+                        .asList()
+                        .flatMap(
+                                objects ->
+                                        storage.mapConcurrently(
+                                                objects, o -> storage.getTags(bucket, o.key())))
+                        .map(tags -> tags.stream().map(t -> t.orElse(List.of())).toList()));
     }
 
-    private Template convertObject(S3Object object) throws InvalidEventTemplateException {
-        var req = GetObjectTaggingRequest.builder().bucket(bucket).key(object.key()).build();
-        var tagging = storage.getObjectTagging(req);
-        var list = tagging.tagSet();
-        if (!tagging.hasTagSet() || list.isEmpty()) {
+    private Template convertObject(List<Tag> list) throws InvalidEventTemplateException {
+        if (list.isEmpty()) {
             throw new InvalidEventTemplateException("No metadata found");
         }
         var decodedList = new ArrayList<Pair<String, String>>();
@@ -213,8 +212,7 @@ public class S3TemplateService implements MutableTemplateService {
     }
 
     private InputStream getModel(String name) {
-        var req = GetObjectRequest.builder().bucket(bucket).key(name).build();
-        return storage.getObject(req);
+        return storage.await(storage.getObject(bucket, name)).asInputStream();
     }
 
     @Override
@@ -228,18 +226,19 @@ public class S3TemplateService implements MutableTemplateService {
                 throw new IllegalArgumentException(
                         String.format("Duplicate event template name: %s", template.getName()));
             }
-            storage.putObject(
-                    PutObjectRequest.builder()
-                            .bucket(bucket)
-                            .key(template.getName())
-                            .contentType(MediaType.APPLICATION_XML)
-                            .tagging(
-                                    createTemplateTagging(
-                                            template.getName(),
-                                            template.getDescription(),
-                                            template.getProvider()))
-                            .build(),
-                    RequestBody.fromString(model.toString()));
+            storage.await(
+                    storage.putObject(
+                            PutObjectRequest.builder()
+                                    .bucket(bucket)
+                                    .key(template.getName())
+                                    .contentType(MediaType.APPLICATION_XML)
+                                    .tagging(
+                                            createTemplateTagging(
+                                                    template.getName(),
+                                                    template.getDescription(),
+                                                    template.getProvider()))
+                                    .build(),
+                            AsyncRequestBody.fromString(model.toString())));
 
             bus.publish(
                     MessagingServer.class.getName(),
@@ -264,8 +263,9 @@ public class S3TemplateService implements MutableTemplateService {
                             .filter(t -> t.getName().equals(templateName))
                             .findFirst()
                             .orElseThrow();
-            var req = DeleteObjectRequest.builder().bucket(bucket).key(templateName).build();
-            if (storage.deleteObject(req).sdkHttpResponse().isSuccessful()) {
+            if (storage.await(storage.deleteObject(bucket, templateName))
+                    .sdkHttpResponse()
+                    .isSuccessful()) {
                 bus.publish(
                         MessagingServer.class.getName(),
                         new Notification(EVENT_TEMPLATE_DELETED, Map.of("template", template)));
@@ -0,0 +1,403 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.expressions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import io.cryostat.targets.Target;
+
+import com.google.api.expr.v1alpha1.Constant;
+import com.google.api.expr.v1alpha1.Expr;
+import jakarta.annotation.Nullable;
+import org.projectnessie.cel.Env;
+import org.projectnessie.cel.Env.AstIssuesTuple;
+
+/**
+ * A match expression compiled directly into Java, bypassing CEL evaluation. Most expressions in
+ * practice are small boolean combinations of comparisons against a target's labels, annotations
+ * and identifying fields, such as {@code target.labels['app'] == 'foo' &&
+ * target.annotations.cryostat['REALM'] == 'KubernetesApi'}. Expressions of that shape are
+ * recognized from their parsed syntax tree and evaluated against the {@link Target} as-is.
+ *
+ * <p>Evaluation is three-valued: wherever CEL would produce an error, such as indexing a label
+ * the target does not have, the result is {@code null} and the caller must fall back to CEL for
+ * that target so that the error is reported exactly as before. CEL's logical operators absorb
+ * errors when the other operand decides the result, and so do these.
+ */
+final class FastPathPredicate {
+
+    private static final String TARGET = "target";
+
+    private final Node root;
+
+    private FastPathPredicate(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compile the expression, or return an empty Optional if it is not of a recognized shape or
+     * does not parse.
+     */
+    static Optional<FastPathPredicate> compile(String matchExpression) {
+        AstIssuesTuple parsed = Env.newEnv().parse(matchExpression);
+        if (parsed.hasIssues()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(node(parsed.getAst().getExpr())).map(FastPathPredicate::new);
+    }
+
+    /**
+     * Test the target against the expression, or return null if CEL must evaluate it instead.
+     */
+    @Nullable
+    Boolean test(Target target) {
+        return root.test(target);
+    }
+
+    /**
+     * The terms every matching target must satisfy. These are the equality comparisons against
+     * labels and annotations which the expression requires, through any number of conjunctions,
+     * and so a target which fails any one of them cannot match.
+     */
+    List<Term> requiredTerms() {
+        List<Term> terms = new ArrayList<>();
+        root.collectRequired(terms);
+        return terms;
+    }
+
+    /** A required {@code key == value} comparison against one of a target's string maps. */
+    record Term(Source source, String key, String value) {}
+
+    enum Source {
+        LABELS(t -> t.labels),
+        CRYOSTAT_ANNOTATIONS(t -> t.annotations == null ? null : t.annotations.cryostat()),
+        PLATFORM_ANNOTATIONS(t -> t.annotations == null ? null : t.annotations.platform()),
+        ;
+
+        private final Function<Target, Map<String, String>> fn;
+
+        Source(Function<Target, Map<String, String>> fn) {
+            this.fn = fn;
+        }
+
+        Map<String, String> of(Target target) {
+            Map<String, String> map = fn.apply(target);
+            return map == null ? Map.of() : map;
+        }
+    }
+
+    private interface Node {
+        @Nullable
+        Boolean test(Target target);
+
+        default void collectRequired(List<Term> terms) {}
+    }
+
+    private interface Value {
+        // null when CEL would fail to produce a value
+        @Nullable
+        String get(Target target);
+
+        @Nullable
+        default Term term(String value) {
+            return null;
+        }
+    }
+
+    private record Field(Function<Target, String> fn) implements Value {
+        @Override
+        public String get(Target target) {
+            return fn.apply(target);
+        }
+    }
+
+    private record Entry(Source source, String key) implements Value {
+        @Override
+        public String get(Target target) {
+            return source.of(target).get(key);
+        }
+
+        @Override
+        public Term term(String value) {
+            return new Term(source, key, value);
+        }
+    }
+
+    private record Literal(boolean value) implements Node {
+        @Override
+        public Boolean test(Target target) {
+            return value;
+        }
+    }
+
+    private record Equals(Value value, String expected, boolean negated) implements Node {
+        @Override
+        public Boolean test(Target target) {
+            String actual = value.get(target);
+            if (actual == null) {
+                return null;
+            }
+            return expected.equals(actual) != negated;
+        }
+
+        @Override
+        public void collectRequired(List<Term> terms) {
+            if (!negated) {
+                Term term = value.term(expected);
+                if (term != null) {
+                    terms.add(term);
+                }
+            }
+        }
+    }
+
+    private record In(Value value, Set<String> candidates) implements Node {
+        @Override
+        public Boolean test(Target target) {
+            String actual = value.get(target);
+            if (actual == null) {
+                return null;
+            }
+            return candidates.contains(actual);
+        }
+    }
+
+    private record HasKey(Source source, String key) implements Node {
+        @Override
+        public Boolean test(Target target) {
+            return source.of(target).containsKey(key);
+        }
+    }
+
+    private record Not(Node operand) implements Node {
+        @Override
+        public Boolean test(Target target) {
+            Boolean result = operand.test(target);
+            return result == null ? null : !result;
+        }
+    }
+
+    private record And(Node left, Node right) implements Node {
+        @Override
+        public Boolean test(Target target) {
+            Boolean l = left.test(target);
+            if (Boolean.FALSE.equals(l)) {
+                return false;
+            }
+            Boolean r = right.test(target);
+            if (Boolean.FALSE.equals(r)) {
+                return false;
+            }
+            return l == null || r == null ? null : true;
+        }
+
+        @Override
+        public void collectRequired(List<Term> terms) {
+            left.collectRequired(terms);
+            right.collectRequired(terms);
+        }
+    }
+
+    private record Or(Node left, Node right) implements Node {
+        @Override
+        public Boolean test(Target target) {
+            Boolean l = left.test(target);
+            if (Boolean.TRUE.equals(l)) {
+                return true;
+            }
+            Boolean r = right.test(target);
+            if (Boolean.TRUE.equals(r)) {
+                return true;
+            }
+            return l == null || r == null ? null : false;
+        }
+    }
+
+    @Nullable
+    private static Node node(Expr expr) {
+        switch (expr.getExprKindCase()) {
+            case CONST_EXPR:
+                Constant c = expr.getConstExpr();
+                return c.getConstantKindCase() == Constant.ConstantKindCase.BOOL_VALUE
+                        ? new Literal(c.getBoolValue())
+                        : null;
+            case SELECT_EXPR:
+                // has(target.labels.key)
+                if (!expr.getSelectExpr().getTestOnly()) {
+                    return null;
+                }
+                Source source = source(expr.getSelectExpr().getOperand());
+                return source == null ? null : new HasKey(source, expr.getSelectExpr().getField());
+            case CALL_EXPR:
+                return call(expr.getCallExpr().getFunction(), expr.getCallExpr().getArgsList());
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static Node call(String function, List<Expr> args) {
+        switch (function) {
+            case "_&&_":
+            case "_||_":
+                {
+                    Node left = node(args.get(0));
+                    Node right = node(args.get(1));
+                    if (left == null || right == null) {
+                        return null;
+                    }
+                    return "_&&_".equals(function) ? new And(left, right) : new Or(left, right);
+                }
+            case "!_":
+                {
+                    Node operand = node(args.get(0));
+                    return operand == null ? null : new Not(operand);
+                }
+            case "_==_":
+            case "_!=_":
+                {
+                    boolean negated = "_!=_".equals(function);
+                    Value value = value(args.get(0));
+                    String literal = string(args.get(1));
+                    if (value == null || literal == null) {
+                        value = value(args.get(1));
+                        literal = string(args.get(0));
+                    }
+                    if (value == null || literal == null) {
+                        return null;
+                    }
+                    return new Equals(value, literal, negated);
+                }
+            case "@in":
+                {
+                    // 'key' in target.labels
+                    String key = string(args.get(0));
+                    Source source = source(args.get(1));
+                    if (key != null && source != null) {
+                        return new HasKey(source, key);
+                    }
+                    // target.labels['key'] in ['a', 'b']
+                    Value value = value(args.get(0));
+                    Expr list = args.get(1);
+                    if (value == null || list.getExprKindCase() != Expr.ExprKindCase.LIST_EXPR) {
+                        return null;
+                    }
+                    List<String> candidates = new ArrayList<>();
+                    for (Expr element : list.getListExpr().getElementsList()) {
+                        String s = string(element);
+                        if (s == null) {
+                            return null;
+                        }
+                        candidates.add(s);
+                    }
+                    return new In(value, Set.copyOf(candidates));
+                }
+            default:
+                return null;
+        }
+    }
+
+    // target.alias, target.labels['key'], target.labels.key and the like
+    @Nullable
+    private static Value value(Expr expr) {
+        switch (expr.getExprKindCase()) {
+            case SELECT_EXPR:
+                if (expr.getSelectExpr().getTestOnly()) {
+                    return null;
+                }
+                Expr operand = expr.getSelectExpr().getOperand();
+                String field = expr.getSelectExpr().getField();
+                if (isTarget(operand)) {
+                    switch (field) {
+                        case "alias":
+                            return new Field(t -> t.alias);
+                        case "connectUrl":
+                            return new Field(
+                                    t -> t.connectUrl == null ? null : t.connectUrl.toString());
+                        case "jvmId":
+                            return new Field(t -> t.jvmId);
+                        default:
+                            return null;
+                    }
+                }
+                Source source = source(operand);
+                return source == null ? null : new Entry(source, field);
+            case CALL_EXPR:
+                if (!"_[_]".equals(expr.getCallExpr().getFunction())) {
+                    return null;
+                }
+                Source indexed = source(expr.getCallExpr().getArgs(0));
+                String key = string(expr.getCallExpr().getArgs(1));
+                return indexed == null || key == null ? null : new Entry(indexed, key);
+            default:
+                return null;
+        }
+    }
+
+    // target.labels, target.annotations.cryostat or target.annotations.platform
+    @Nullable
+    private static Source source(Expr expr) {
+        if (expr.getExprKindCase() != Expr.ExprKindCase.SELECT_EXPR
+                || expr.getSelectExpr().getTestOnly()) {
+            return null;
+        }
+        Expr operand = expr.getSelectExpr().getOperand();
+        String field = expr.getSelectExpr().getField();
+        if (isTarget(operand)) {
+            return "labels".equals(field) ? Source.LABELS : null;
+        }
+        if (operand.getExprKindCase() == Expr.ExprKindCase.SELECT_EXPR
+                && !operand.getSelectExpr().getTestOnly()
+                && "annotations".equals(operand.getSelectExpr().getField())
+                && isTarget(operand.getSelectExpr().getOperand())) {
+            switch (field) {
+                case "cryostat":
+                    return Source.CRYOSTAT_ANNOTATIONS;
+                case "platform":
+                    return Source.PLATFORM_ANNOTATIONS;
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isTarget(Expr expr) {
+        return expr.getExprKindCase() == Expr.ExprKindCase.IDENT_EXPR
+                && TARGET.equals(expr.getIdentExpr().getName());
+    }
+
+    @Nullable
+    private static String string(Expr expr) {
+        if (expr.getExprKindCase() != Expr.ExprKindCase.CONST_EXPR
+                || expr.getConstExpr().getConstantKindCase()
+                        != Constant.ConstantKindCase.STRING_VALUE) {
+            return null;
+        }
+        return expr.getConstExpr().getStringValue();
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toString(root);
+    }
+}
@@ -86,7 +86,7 @@ public class MatchExpression extends PanacheEntity {
         }
 
         public MatchedExpression match(MatchExpression expr) throws ScriptException {
-            return match(expr, Target.listAll());
+            return match(expr, evaluator.getCandidateTargets(expr));
         }
     }
 
@@ -20,9 +20,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import io.cryostat.expressions.FastPathPredicate.Term;
 import io.cryostat.expressions.MatchExpression.ExpressionEvent;
 import io.cryostat.targets.Target;
 import io.cryostat.targets.Target.Annotations;
@@ -30,14 +35,11 @@ import io.cryostat.targets.Target.TargetDiscovery;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.quarkus.cache.CacheManager;
-import io.quarkus.cache.CacheResult;
-import io.quarkus.cache.CompositeCacheKey;
+import io.quarkus.cache.CaffeineCache;
 import io.quarkus.vertx.ConsumeEvent;
-import io.smallrye.common.annotation.Blocking;
 import jakarta.annotation.Nullable;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import jdk.jfr.Category;
 import jdk.jfr.Event;
 import jdk.jfr.Label;
@@ -53,10 +55,14 @@ import org.projectnessie.cel.tools.ScriptHost;
 public class MatchExpressionEvaluator {
 
     private static final String CACHE_NAME = "matchexpressions";
+    private static final String SCRIPT_CACHE_NAME = "matchexpressionscripts";
+    // beyond this many candidates, filtering a full listing is cheaper than a huge IN clause
+    private static final int MAX_CANDIDATE_QUERY_SIZE = 1000;
 
     @Inject ScriptHost scriptHost;
     @Inject Logger logger;
     @Inject CacheManager cacheManager;
+    @Inject TargetLabelIndex labelIndex;
 
     @ConsumeEvent(value = MatchExpression.EXPRESSION_ADDRESS, blocking = true)
     void onMessage(ExpressionEvent event) {
@@ -64,35 +70,29 @@ public class MatchExpressionEvaluator {
             case CREATED:
                 break;
             case DELETED:
-                invalidate(event.expression().script);
+                invalidate(event.expression());
+                invalidateScript(event.expression().script);
                 break;
             case UPDATED:
                 // expression scripts aren't meant to be updatable, but handle them by invalidating
                 // cached results just in case
-                invalidate(event.expression().script);
+                invalidate(event.expression());
+                invalidateScript(event.expression().script);
                 break;
             default:
                 break;
         }
     }
 
-    @Transactional
-    @Blocking
-    @ConsumeEvent(value = Target.TARGET_JVM_DISCOVERY, blocking = true)
+    @ConsumeEvent(value = Target.TARGET_JVM_DISCOVERY)
     void onMessage(TargetDiscovery event) {
-        var target = Target.<Target>find("id", event.serviceRef().id).singleResultOptional();
-        switch (event.kind()) {
-            case LOST:
-            // fall-through
-            case FOUND:
-            // fall-through
-            case MODIFIED:
-                target.ifPresent(this::invalidate);
-                break;
-            default:
-                // no-op
-                break;
+        Long id = event.serviceRef().id;
+        if (id == null) {
+            return;
         }
+        // lookups already ignore results for other versions of the target, so this only releases
+        // them sooner
+        invalidateIf(k -> k.targetId() == id);
     }
 
     Script createScript(String matchExpression) throws ScriptCreateException {
@@ -115,43 +115,115 @@ public class MatchExpressionEvaluator {
         }
     }
 
-    @CacheResult(cacheName = CACHE_NAME)
+    /**
+     * Get the compiled form of an expression. Parsing, type-checking and planning a script is far
+     * more expensive than executing it, so compiled scripts are cached by expression text,
+     * separately from the per-target results, and are shared by every target the expression is
+     * evaluated against. Expressions of simple, common shapes are additionally compiled to a
+     * {@link FastPathPredicate}.
+     */
+    CompiledExpression compile(String matchExpression) throws ScriptCreateException {
+        ScriptLookup evt = new ScriptLookup(matchExpression);
+        try {
+            evt.begin();
+            CaffeineCache cache =
+                    cacheManager.getCache(SCRIPT_CACHE_NAME).orElseThrow().as(CaffeineCache.class);
+            CompletableFuture<CompiledExpression> cached = cache.getIfPresent(matchExpression);
+            if (cached != null) {
+                evt.cacheHit = true;
+                // only completed values are ever put into the cache, so this does not block
+                return cached.join();
+            }
+            // two threads missing on the same expression at once may both compile it, which is
+            // cheaper than making either wait on the other
+            CompiledExpression compiled =
+                    new CompiledExpression(
+                            createScript(matchExpression),
+                            FastPathPredicate.compile(matchExpression));
+            cache.put(matchExpression, CompletableFuture.completedFuture(compiled));
+            return compiled;
+        } finally {
+            evt.end();
+            if (evt.shouldCommit()) {
+                evt.commit();
+            }
+        }
+    }
+
     boolean load(String matchExpression, Target target) throws ScriptException {
-        Script script = createScript(matchExpression);
-        return script.execute(Boolean.class, Map.of("target", SimplifiedTarget.from(target)));
-    }
-
-    void invalidate(String matchExpression) {
-        var cache = cacheManager.getCache(CACHE_NAME).orElseThrow();
-        // 0-index is important here. the argument order of the load() method determines the
-        // composite key order
-        cache.invalidateIf(
-                        k ->
-                                Objects.equals(
-                                        (String) ((CompositeCacheKey) k).getKeyElements()[0],
-                                        matchExpression))
+        CompiledExpression compiled = compile(matchExpression);
+        if (compiled.fastPath().isPresent()) {
+            Boolean result = compiled.fastPath().get().test(target);
+            if (result != null) {
+                return result;
+            }
+        }
+        return compiled
+                .script()
+                .execute(Boolean.class, Map.of("target", SimplifiedTarget.from(target)));
+    }
+
+    /**
+     * Evaluate a persisted expression against a persisted target, reusing the result of a
+     * previous evaluation of the same expression against the same version of the target. Every
+     * update to a target increments its version, so a result is never reused for a target which
+     * has since changed, no matter how evaluation and change events interleave.
+     */
+    boolean load(MatchExpression matchExpression, Target target) throws ScriptException {
+        if (matchExpression.id == null || target.id == null) {
+            return load(matchExpression.script, target);
+        }
+        ResultKey key = new ResultKey(matchExpression.id, target.id, target.version);
+        CaffeineCache cache =
+                cacheManager.getCache(CACHE_NAME).orElseThrow().as(CaffeineCache.class);
+        CompletableFuture<Boolean> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            // only completed values are ever put into the cache, so this does not block
+            return cached.join();
+        }
+        boolean result = load(matchExpression.script, target);
+        cache.put(key, CompletableFuture.completedFuture(result));
+        return result;
+    }
+
+    void invalidate(MatchExpression matchExpression) {
+        if (matchExpression.id == null) {
+            return;
+        }
+        long id = matchExpression.id;
+        invalidateIf(k -> k.expressionId() == id);
+    }
+
+    private void invalidateIf(Predicate<ResultKey> predicate) {
+        cacheManager
+                .getCache(CACHE_NAME)
+                .orElseThrow()
+                .invalidateIf(k -> predicate.test((ResultKey) k))
                 .subscribe()
                 .with((v) -> {}, logger::warn);
     }
 
-    void invalidate(Target target) {
-        var cache = cacheManager.getCache(CACHE_NAME).orElseThrow();
-        // 0-index is important here. the argument order of the load() method determines the
-        // composite key order
-        cache.invalidateIf(
-                        k ->
-                                Objects.equals(
-                                        (Target) ((CompositeCacheKey) k).getKeyElements()[1],
-                                        target))
+    void invalidateScript(String matchExpression) {
+        cacheManager
+                .getCache(SCRIPT_CACHE_NAME)
+                .orElseThrow()
+                .invalidate(matchExpression)
                 .subscribe()
                 .with((v) -> {}, logger::warn);
     }
 
+    void invalidate(Target target) {
+        if (target.id != null) {
+            long id = target.id;
+            invalidateIf(k -> k.targetId() == id);
+        }
+    }
+
     public boolean applies(MatchExpression matchExpression, Target target) throws ScriptException {
         MatchExpressionApplies evt = new MatchExpressionApplies(matchExpression);
         try {
             evt.begin();
-            return load(matchExpression.script, target);
+            return load(matchExpression, target);
         } catch (CompletionException e) {
             if (e.getCause() instanceof ScriptException) {
                 throw (ScriptException) e.getCause();
@@ -165,9 +237,50 @@ public class MatchExpressionEvaluator {
         }
     }
 
+    /**
+     * Get the IDs of the only targets which could possibly match the expression, if the
+     * expression requires particular label or annotation values. Otherwise, or if the expression
+     * is invalid, return an empty Optional and any target may match.
+     */
+    public Optional<Set<Long>> getCandidateTargetIds(MatchExpression matchExpression) {
+        List<Term> required;
+        try {
+            required =
+                    compile(matchExpression.script)
+                            .fastPath()
+                            .map(FastPathPredicate::requiredTerms)
+                            .orElse(List.of());
+        } catch (ScriptCreateException e) {
+            // evaluating the expression will report this
+            return Optional.empty();
+        }
+        return labelIndex.lookup(required);
+    }
+
+    /**
+     * Get the targets which could possibly match the expression. This is every target unless the
+     * expression requires particular label or annotation values, in which case only the targets
+     * with those values are loaded.
+     */
+    public List<Target> getCandidateTargets(MatchExpression matchExpression) {
+        Optional<Set<Long>> ids = getCandidateTargetIds(matchExpression);
+        if (ids.isEmpty()) {
+            return Target.listAll();
+        }
+        if (ids.get().isEmpty()) {
+            return List.of();
+        }
+        if (ids.get().size() > MAX_CANDIDATE_QUERY_SIZE) {
+            return Target.<Target>listAll().stream()
+                    .filter(t -> ids.get().contains(t.id))
+                    .collect(Collectors.toList());
+        }
+        return Target.list("id in ?1", ids.get());
+    }
+
     public List<Target> getMatchedTargets(MatchExpression matchExpression) {
         var targets =
-                Target.<Target>listAll().stream()
+                getCandidateTargets(matchExpression).stream()
                         .filter(
                                 target -> {
                                     try {
@@ -218,6 +331,31 @@ public class MatchExpressionEvaluator {
     // directly")
     public static class ScriptCreation extends Event {}
 
+    @Name("io.cryostat.rules.MatchExpressionEvaluator.ScriptLookup")
+    @Label("Match Expression Script Lookup")
+    @Category("Cryostat")
+    @SuppressFBWarnings(value = "URF_UNREAD_FIELD")
+    public static class ScriptLookup extends Event {
+
+        String matchExpression;
+
+        @Label("Cache Hit")
+        boolean cacheHit;
+
+        ScriptLookup(String matchExpression) {
+            this.matchExpression = matchExpression;
+        }
+    }
+
+    /** Cache key for the result of evaluating an expression against one version of a target. */
+    private record ResultKey(long expressionId, long targetId, long targetVersion) {}
+
+    /**
+     * A compiled expression. The fast path, if present, is tried first and the script is only
+     * executed when the fast path cannot decide the result itself.
+     */
+    record CompiledExpression(Script script, Optional<FastPathPredicate> fastPath) {}
+
     /**
      * Restricted view of a {@link io.cryostat.targets.Target} with only particular
      * expression-relevant fields exposed, connection URI exposed as a String, etc.
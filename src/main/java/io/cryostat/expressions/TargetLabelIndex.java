@@ -0,0 +1,185 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.expressions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import io.cryostat.expressions.FastPathPredicate.Source;
+import io.cryostat.expressions.FastPathPredicate.Term;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.Target.TargetDiscovery;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+/**
+ * In-memory inverted index from each label and annotation {@code key=value} pair to the IDs of
+ * the targets which have it. Expressions which require particular label or annotation values, as
+ * reported by {@link FastPathPredicate#requiredTerms()}, only need to be evaluated against the
+ * targets found here rather than against the whole fleet.
+ *
+ * <p>The index is built from the committed contents of the database on first use, and is then
+ * kept current by observing each target change as its transaction commits, on the committing
+ * thread and before the change is announced on the event bus. Changes which are rolled back are
+ * never indexed, and a target is indexed by the time anything learns that it was committed.
+ * Lookups may return targets which no longer exist or no longer match, so callers must still load
+ * and evaluate the candidates, but they never omit a target which does match.
+ */
+@ApplicationScoped
+public class TargetLabelIndex {
+
+    @Inject Logger logger;
+
+    // all guarded by this
+    private final Map<Term, Set<Long>> postings = new HashMap<>();
+    private final Map<Long, List<Term>> entries = new HashMap<>();
+    private boolean ready;
+    // IDs of targets with events received while the index is being built, or null when not
+    // building
+    private Set<Long> touched;
+
+    // runs before the target's own AFTER_SUCCESS observer publishes the change to the event bus
+    void onCommit(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) @Priority(1)
+                    TargetDiscovery event) {
+        Target target = event.serviceRef();
+        if (target.id == null) {
+            return;
+        }
+        List<Term> terms = EventKind.LOST.equals(event.kind()) ? List.of() : terms(target);
+        synchronized (this) {
+            if (touched != null) {
+                touched.add(target.id);
+            }
+            put(target.id, terms);
+        }
+    }
+
+    /**
+     * Get the IDs of the targets which have every one of the given terms, or an empty Optional if
+     * the index is not available and the caller must consider every target instead.
+     */
+    Optional<Set<Long>> lookup(List<Term> required) {
+        if (required.isEmpty() || !ensureBuilt()) {
+            return Optional.empty();
+        }
+        synchronized (this) {
+            List<Set<Long>> sets = new ArrayList<>(required.size());
+            for (Term term : required) {
+                Set<Long> ids = postings.get(term);
+                if (ids == null) {
+                    return Optional.of(Set.of());
+                }
+                sets.add(ids);
+            }
+            // intersect starting from the most selective term
+            sets.sort(Comparator.comparingInt(Set::size));
+            Set<Long> result = new HashSet<>(sets.get(0));
+            for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+                result.retainAll(sets.get(i));
+            }
+            return Optional.of(result);
+        }
+    }
+
+    private boolean ensureBuilt() {
+        synchronized (this) {
+            if (ready) {
+                return true;
+            }
+            if (touched != null) {
+                // another thread is already building the index
+                return false;
+            }
+            touched = new HashSet<>();
+        }
+        Map<Long, List<Term>> loaded;
+        try {
+            loaded = loadCommitted();
+        } catch (Exception e) {
+            logger.warn("Failed to build target label index", e);
+            synchronized (this) {
+                touched = null;
+            }
+            return false;
+        }
+        synchronized (this) {
+            // targets with events received since loading began are already current
+            loaded.forEach(
+                    (id, terms) -> {
+                        if (!touched.contains(id)) {
+                            put(id, terms);
+                        }
+                    });
+            touched = null;
+            ready = true;
+            logger.debugv("Built target label index over {0} targets", entries.size());
+            return true;
+        }
+    }
+
+    // read in a transaction of its own, so that uncommitted changes made by the caller are not
+    // indexed. If they were and were then rolled back, no event would ever correct them
+    Map<Long, List<Term>> loadCommitted() {
+        return QuarkusTransaction.requiringNew()
+                .call(
+                        () -> {
+                            Map<Long, List<Term>> loaded = new HashMap<>();
+                            Target.<Target>listAll().forEach(t -> loaded.put(t.id, terms(t)));
+                            return loaded;
+                        });
+    }
+
+    // must hold the lock
+    private void put(long id, List<Term> terms) {
+        List<Term> previous = terms.isEmpty() ? entries.remove(id) : entries.put(id, terms);
+        if (previous != null) {
+            for (Term term : previous) {
+                Set<Long> ids = postings.get(term);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+        for (Term term : terms) {
+            postings.computeIfAbsent(term, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private static List<Term> terms(Target target) {
+        List<Term> terms = new ArrayList<>();
+        for (Source source : Source.values()) {
+            source.of(target).forEach((k, v) -> terms.add(new Term(source, k, v)));
+        }
+        return terms;
+    }
+}
@@ -22,16 +22,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import org.openjdk.jmc.common.unit.QuantityConversionException;
 
 import io.cryostat.ConfigProperties;
-import io.cryostat.discovery.DiscoveryNode;
 import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
 import io.cryostat.graphql.TargetNodes.AggregateInfo;
 import io.cryostat.graphql.TargetNodes.Recordings;
 import io.cryostat.graphql.matchers.LabelSelectorMatcher;
+import io.cryostat.graphql.matchers.SqlLabels;
 import io.cryostat.libcryostat.templates.Template;
 import io.cryostat.libcryostat.templates.TemplateType;
 import io.cryostat.recordings.ActiveRecording;
@@ -73,15 +74,7 @@ public class ActiveRecordings {
     public List<ActiveRecording> createRecording(
             @NonNull DiscoveryNodeFilter nodes, @NonNull RecordingSettings recording)
             throws QuantityConversionException {
-        var list =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
-                        .toList();
+        var list = RootNode.findTargetsUnder(nodes);
         var recordings = new ArrayList<ActiveRecording>();
         for (var t : list) {
             var template =
@@ -116,13 +109,7 @@ public class ActiveRecordings {
             @NonNull DiscoveryNodeFilter nodes, @Nullable ActiveRecordingsFilter recordings)
             throws Exception {
         var list =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
+                RootNode.findTargetsUnder(nodes).stream()
                         .flatMap(
                                 t ->
                                         recordingHelper.listActiveRecordings(t).stream()
@@ -148,13 +135,7 @@ public class ActiveRecordings {
             @NonNull DiscoveryNodeFilter nodes, @Nullable ActiveRecordingsFilter recordings)
             throws Exception {
         var list =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
+                RootNode.findTargetsUnder(nodes).stream()
                         .flatMap(
                                 t ->
                                         recordingHelper.listActiveRecordings(t).stream()
@@ -178,13 +159,7 @@ public class ActiveRecordings {
     public List<ActiveRecording> deleteRecording(
             @NonNull DiscoveryNodeFilter nodes, @Nullable ActiveRecordingsFilter recordings) {
         var list =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
+                RootNode.findTargetsUnder(nodes).stream()
                         .flatMap(
                                 t ->
                                         recordingHelper.listActiveRecordings(t).stream()
@@ -206,15 +181,7 @@ public class ActiveRecordings {
             "Create a Flight Recorder Snapshot on all Targets under"
                     + " the subtrees of the discovery nodes matching the given filter")
     public List<ActiveRecording> createSnapshot(@NonNull DiscoveryNodeFilter nodes) {
-        var targets =
-                DiscoveryNode.<DiscoveryNode>listAll().stream()
-                        .filter(nodes)
-                        .flatMap(
-                                node ->
-                                        RootNode.recurseChildren(node, n -> n.target != null)
-                                                .stream()
-                                                .map(n -> n.target))
-                        .toList();
+        var targets = RootNode.findTargetsUnder(nodes);
         var snapshots = new ArrayList<ActiveRecording>();
         for (var t : targets) {
             snapshots.add(recordingHelper.createSnapshot(t).await().atMost(Duration.ofSeconds(10)));
@@ -363,6 +330,66 @@ public class ActiveRecordings {
         public @Nullable Long startTimeMsAfterEqual;
         public @Nullable Long startTimeMsBeforeEqual;
 
+        private static final SqlLabels RECORDING_LABELS =
+                new SqlLabels() {
+                    @Override
+                    public String value(String key) {
+                        return String.format("(r.metadata -> 'labels' ->> %s)", key);
+                    }
+
+                    @Override
+                    public String hasValue(String key, String value) {
+                        return String.format(
+                                "(r.metadata -> 'labels' @> jsonb_build_object(cast(%s as text),"
+                                        + " cast(%s as text)))",
+                                key, value);
+                    }
+                };
+
+        /**
+         * Translate this filter into SQL predicates over an ActiveRecording {@code r}. All of the
+         * returned predicates must hold for a recording to match.
+         */
+        List<String> toSql(Function<Object, String> binder) {
+            List<String> predicates = new ArrayList<>();
+            if (name != null) {
+                predicates.add("r.name = " + binder.apply(name));
+            }
+            if (names != null) {
+                predicates.add(
+                        names.isEmpty() ? "FALSE" : "r.name IN (" + binder.apply(names) + ")");
+            }
+            if (labels != null) {
+                labels.forEach(
+                        label ->
+                                predicates.add(
+                                        LabelSelectorMatcher.parse(label)
+                                                .toSql(RECORDING_LABELS, binder)));
+            }
+            if (state != null) {
+                predicates.add("r.state = " + binder.apply(state.ordinal()));
+            }
+            if (continuous != null) {
+                predicates.add("r.continuous = " + binder.apply(continuous));
+            }
+            if (toDisk != null) {
+                predicates.add("r.toDisk = " + binder.apply(toDisk));
+            }
+            if (durationMsGreaterThanEqual != null) {
+                predicates.add("r.duration >= " + binder.apply(durationMsGreaterThanEqual));
+            }
+            if (durationMsLessThanEqual != null) {
+                predicates.add("r.duration <= " + binder.apply(durationMsLessThanEqual));
+            }
+            if (startTimeMsAfterEqual != null) {
+                predicates.add("r.startTime >= " + binder.apply(startTimeMsAfterEqual));
+            }
+            if (startTimeMsBeforeEqual != null) {
+                predicates.add("r.startTime <= " + binder.apply(startTimeMsBeforeEqual));
+            }
+            return predicates;
+        }
+
         @Override
         public boolean test(ActiveRecording r) {
             Predicate<ActiveRecording> matchesName =
@@ -384,13 +411,13 @@ public class ActiveRecordings {
             Predicate<ActiveRecording> matchesDurationGte =
                     n ->
                             durationMsGreaterThanEqual == null
-                                    || durationMsGreaterThanEqual >= n.duration;
+                                    || n.duration >= durationMsGreaterThanEqual;
             Predicate<ActiveRecording> matchesDurationLte =
-                    n -> durationMsLessThanEqual == null || durationMsLessThanEqual <= n.duration;
+                    n -> durationMsLessThanEqual == null || n.duration <= durationMsLessThanEqual;
             Predicate<ActiveRecording> matchesStartTimeAfter =
-                    n -> startTimeMsAfterEqual == null || startTimeMsAfterEqual >= n.startTime;
+                    n -> startTimeMsAfterEqual == null || n.startTime >= startTimeMsAfterEqual;
             Predicate<ActiveRecording> matchesStartTimeBefore =
-                    n -> startTimeMsBeforeEqual == null || startTimeMsBeforeEqual <= n.startTime;
+                    n -> startTimeMsBeforeEqual == null || n.startTime <= startTimeMsBeforeEqual;
 
             return List.of(
                             matchesName,
@@ -18,10 +18,13 @@ package io.cryostat.graphql;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Predicate;
 
+import io.cryostat.ConfigProperties;
 import io.cryostat.graphql.ActiveRecordings.MetadataLabels;
 import io.cryostat.graphql.TargetNodes.AggregateInfo;
+import io.cryostat.graphql.TargetNodes.ArchivedRecordingConnection;
 import io.cryostat.graphql.TargetNodes.Recordings;
 import io.cryostat.graphql.matchers.LabelSelectorMatcher;
 import io.cryostat.recordings.RecordingHelper;
@@ -30,8 +33,12 @@ import io.cryostat.recordings.Recordings.Metadata;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.smallrye.common.annotation.Blocking;
+import io.smallrye.graphql.api.Context;
 import io.smallrye.graphql.api.Nullable;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
 import org.eclipse.microprofile.graphql.NonNull;
 import org.eclipse.microprofile.graphql.Query;
@@ -41,19 +48,48 @@ import org.eclipse.microprofile.graphql.Source;
 public class ArchivedRecordings {
 
     @Inject RecordingHelper recordingHelper;
+    @Inject ArchivedRecordingsLoader archivedRecordingsLoader;
+
+    @ConfigProperty(name = ConfigProperties.GRAPHQL_MAX_PAGE_SIZE)
+    int maxPageSize;
 
-    @Blocking
     @Query("archivedRecordings")
-    public TargetNodes.ArchivedRecordings listArchivedRecordings(ArchivedRecordingsFilter filter) {
-        var r = new TargetNodes.ArchivedRecordings();
-        r.data =
-                recordingHelper
-                        .listArchivedRecordings(filter == null ? null : filter.sourceTarget)
-                        .stream()
-                        .filter(filter)
-                        .toList();
-        r.aggregate = AggregateInfo.fromArchived(r.data);
-        return r;
+    public Uni<TargetNodes.ArchivedRecordings> listArchivedRecordings(
+            ArchivedRecordingsFilter filter, Context context) {
+        return archivedRecordingsLoader
+                .loadAll(context, filter)
+                .map(
+                        list -> {
+                            var r = new TargetNodes.ArchivedRecordings();
+                            r.data =
+                                    list.stream()
+                                            .filter(x -> filter == null || filter.test(x))
+                                            .toList();
+                            r.aggregate = AggregateInfo.fromArchived(r.data);
+                            return r;
+                        });
+    }
+
+    @Query("archivedRecordingsConnection")
+    @Description("Get a page of the archived recordings across all targets, ordered by storage key")
+    public Uni<ArchivedRecordingConnection> listArchivedRecordingsConnection(
+            @Nullable ArchivedRecordingsFilter filter,
+            @Nullable @Description("The maximum number of recordings to return") Integer first,
+            @Nullable @Description("Return only recordings after this cursor") String after,
+            Context context) {
+        int limit = Pagination.limit(first, maxPageSize);
+        Optional<String> afterKey =
+                Pagination.decode(ArchivedRecordingConnection.CURSOR_KIND, after);
+        return archivedRecordingsLoader
+                .loadAll(context, filter)
+                .map(
+                        list ->
+                                ArchivedRecordingConnection.of(
+                                        list.stream()
+                                                .filter(x -> filter == null || filter.test(x))
+                                                .toList(),
+                                        limit,
+                                        afterKey));
     }
 
     public TargetNodes.ArchivedRecordings archived(
@@ -111,41 +147,35 @@ public class ArchivedRecordings {
 
         @Override
         public boolean test(ArchivedRecording r) {
+            return testWithoutMetadata(r) && testMetadata(r);
+        }
+
+        /**
+         * Test only the criteria which can be decided from a storage listing, without the
+         * recording's metadata. A recording which fails this cannot pass {@link #test}, so there
+         * is no need to retrieve its metadata.
+         */
+        public boolean testWithoutMetadata(ArchivedRecording r) {
             Predicate<ArchivedRecording> matchesName =
                     n -> name == null || Objects.equals(name, n.name());
             Predicate<ArchivedRecording> matchesNames =
                     n -> names == null || names.contains(n.name());
-            Predicate<ArchivedRecording> matchesSourceTarget =
-                    n ->
-                            sourceTarget == null
-                                    || Objects.equals(
-                                            r.metadata().labels().get("connectUrl"), sourceTarget);
-            Predicate<ArchivedRecording> matchesLabels =
-                    n ->
-                            labels == null
-                                    || labels.stream()
-                                            .allMatch(
-                                                    label ->
-                                                            LabelSelectorMatcher.parse(label)
-                                                                    .test(n.metadata().labels()));
             Predicate<ArchivedRecording> matchesSizeGte =
-                    n -> sizeBytesGreaterThanEqual == null || sizeBytesGreaterThanEqual >= n.size();
+                    n -> sizeBytesGreaterThanEqual == null || n.size() >= sizeBytesGreaterThanEqual;
             Predicate<ArchivedRecording> matchesSizeLte =
-                    n -> sizeBytesLessThanEqual == null || sizeBytesLessThanEqual <= n.size();
+                    n -> sizeBytesLessThanEqual == null || n.size() <= sizeBytesLessThanEqual;
             Predicate<ArchivedRecording> matchesArchivedTimeGte =
                     n ->
                             archivedTimeAfterEqual == null
-                                    || archivedTimeAfterEqual >= n.archivedTime();
+                                    || n.archivedTime() >= archivedTimeAfterEqual;
             Predicate<ArchivedRecording> matchesArchivedTimeLte =
                     n ->
                             archivedTimeBeforeEqual == null
-                                    || archivedTimeBeforeEqual <= n.archivedTime();
+                                    || n.archivedTime() <= archivedTimeBeforeEqual;
 
             return List.of(
                             matchesName,
                             matchesNames,
-                            matchesSourceTarget,
-                            matchesLabels,
                             matchesSizeGte,
                             matchesSizeLte,
                             matchesArchivedTimeGte,
@@ -154,5 +184,23 @@ public class ArchivedRecordings {
                     .reduce(x -> true, Predicate::and)
                     .test(r);
         }
+
+        private boolean testMetadata(ArchivedRecording r) {
+            Predicate<ArchivedRecording> matchesSourceTarget =
+                    n ->
+                            sourceTarget == null
+                                    || Objects.equals(
+                                            n.metadata().labels().get("connectUrl"), sourceTarget);
+            Predicate<ArchivedRecording> matchesLabels =
+                    n ->
+                            labels == null
+                                    || labels.stream()
+                                            .allMatch(
+                                                    label ->
+                                                            LabelSelectorMatcher.parse(label)
+                                                                    .test(n.metadata().labels()));
+
+            return matchesSourceTarget.and(matchesLabels).test(r);
+        }
     }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import io.cryostat.ObjectStorage;
+import io.cryostat.graphql.ArchivedRecordings.ArchivedRecordingsFilter;
+import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.Recordings.ArchivedRecording;
+import io.cryostat.recordings.Recordings.Metadata;
+
+import graphql.GraphQLContext;
+import graphql.schema.DataFetchingEnvironment;
+import io.smallrye.graphql.api.Context;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.Nullable;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Batches archived recording lookups made while executing a single GraphQL query. Per-JVM lookups
+ * go through a DataLoader, so the JVM IDs requested by every target at the same level of the query
+ * are collected before any listing is made. A lookup for a single JVM lists only that JVM's
+ * prefix, while lookups for several JVMs are served by one listing of the whole bucket, grouped
+ * by JVM ID prefix. If the query asks for recordings across all JVMs then the whole bucket is
+ * listed once and every per-JVM lookup in the same query is served from that. Each object's
+ * metadata tags are likewise resolved at most once per query no matter how many fields request
+ * them, and not at all for objects which a filter can exclude from the listing alone.
+ */
+@ApplicationScoped
+class ArchivedRecordingsLoader {
+
+    private static final String LISTINGS_KEY =
+            ArchivedRecordingsLoader.class.getName() + ".listings";
+    private static final String RESOLVED_KEY =
+            ArchivedRecordingsLoader.class.getName() + ".resolved";
+    private static final String LOADER_KEY = ArchivedRecordingsLoader.class.getName();
+
+    // listing key for the whole bucket
+    private static final String ALL = "";
+
+    @Inject RecordingHelper recordingHelper;
+    @Inject ObjectStorage storage;
+
+    /**
+     * Load the archived recordings belonging to the JVM. The listing is deferred until the query
+     * dispatches its DataLoaders, so this must be called while the field is being fetched rather
+     * than from within some later stage of its result.
+     */
+    Uni<List<ArchivedRecording>> load(Context context, String jvmId) {
+        DataLoader<String, List<S3Object>> loader =
+                context.unwrap(DataFetchingEnvironment.class)
+                        .getDataLoaderRegistry()
+                        .computeIfAbsent(
+                                LOADER_KEY,
+                                k ->
+                                        DataLoaderFactory.newDataLoader(
+                                                (List<String> jvmIds) ->
+                                                        objects(context, jvmIds)
+                                                                .subscribeAsCompletionStage()));
+        CompletableFuture<List<S3Object>> objects = loader.load(jvmId);
+        return Uni.createFrom()
+                .completionStage(objects)
+                .flatMap(list -> resolve(context, list, null));
+    }
+
+    /** Load the archived recordings across all JVMs which may match the filter. */
+    Uni<List<ArchivedRecording>> loadAll(
+            Context context, @Nullable ArchivedRecordingsFilter filter) {
+        return objects(context, ALL).flatMap(objects -> resolve(context, objects, filter));
+    }
+
+    private Uni<List<S3Object>> objects(Context context, String jvmId) {
+        return map(context, LISTINGS_KEY)
+                .computeIfAbsent(
+                        jvmId,
+                        id ->
+                                recordingHelper
+                                        .listArchivedRecordingObjectsWithoutMetadata(
+                                                ALL.equals(id) ? null : id)
+                                        .memoize()
+                                        .indefinitely());
+    }
+
+    // the objects belonging to each of the JVMs, in the same order
+    private Uni<List<List<S3Object>>> objects(Context context, List<String> jvmIds) {
+        Map<String, Uni<List<S3Object>>> listings = map(context, LISTINGS_KEY);
+        String listing = jvmIds.size() == 1 && !listings.containsKey(ALL) ? jvmIds.get(0) : ALL;
+        return objects(context, listing)
+                .map(
+                        list -> {
+                            Map<String, List<S3Object>> byJvmId =
+                                    list.stream()
+                                            .filter(o -> o.key().indexOf('/') > 0)
+                                            .collect(
+                                                    Collectors.groupingBy(
+                                                            ArchivedRecordingsLoader::jvmIdOf));
+                            return jvmIds.stream()
+                                    .map(id -> byJvmId.getOrDefault(id, List.of()))
+                                    .toList();
+                        });
+    }
+
+    private static String jvmIdOf(S3Object object) {
+        return object.key().substring(0, object.key().indexOf('/'));
+    }
+
+    private Uni<List<ArchivedRecording>> resolve(
+            Context context, List<S3Object> objects, @Nullable ArchivedRecordingsFilter filter) {
+        Map<String, Uni<Optional<ArchivedRecording>>> resolved = map(context, RESOLVED_KEY);
+        List<S3Object> candidates =
+                filter == null
+                        ? objects
+                        : objects.stream()
+                                .filter(
+                                        o ->
+                                                filter.testWithoutMetadata(
+                                                        recordingHelper.toArchivedRecording(
+                                                                o, Metadata.empty())))
+                                .toList();
+        return storage.mapConcurrently(
+                        candidates,
+                        o ->
+                                resolved.computeIfAbsent(
+                                        o.key(),
+                                        k ->
+                                                recordingHelper
+                                                        .resolveArchivedRecording(o)
+                                                        .memoize()
+                                                        .indefinitely()))
+                .map(list -> list.stream().flatMap(Optional::stream).toList());
+    }
+
+    private static <V> Map<String, V> map(Context context, String key) {
+        GraphQLContext ctx = context.unwrap(DataFetchingEnvironment.class).getGraphQlContext();
+        return ctx.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+}
@@ -16,12 +16,18 @@
 package io.cryostat.graphql;
 
 import java.util.List;
+import java.util.Optional;
 
+import io.cryostat.ConfigProperties;
 import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.graphql.RootNode.DiscoveryNodeConnection;
 import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
+import io.cryostat.graphql.RootNode.NodeQuery;
+import io.cryostat.graphql.RootNode.Selection;
 
 import io.smallrye.common.annotation.Blocking;
 import io.smallrye.graphql.api.Nullable;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
 import org.eclipse.microprofile.graphql.Query;
@@ -29,13 +35,30 @@ import org.eclipse.microprofile.graphql.Query;
 @GraphQLApi
 public class EnvironmentNodes {
 
+    @ConfigProperty(name = ConfigProperties.GRAPHQL_MAX_PAGE_SIZE)
+    int maxPageSize;
+
     @Blocking
     @Query("environmentNodes")
     @Description("Get all environment nodes in the discovery tree with optional filtering")
     public List<DiscoveryNode> environmentNodes(@Nullable DiscoveryNodeFilter filter) {
-        return RootNode.recurseChildren(DiscoveryNode.getUniverse(), node -> node.target == null)
-                .stream()
-                .filter(filter)
-                .toList();
+        return new NodeQuery(Optional.empty(), Selection.ENVIRONMENTS, filter)
+                .list(Optional.empty(), Optional.empty());
+    }
+
+    @Blocking
+    @Query("environmentNodesConnection")
+    @Description(
+            "Get a page of the environment nodes in the discovery tree with optional filtering,"
+                    + " ordered by ID")
+    public DiscoveryNodeConnection environmentNodesConnection(
+            @Nullable DiscoveryNodeFilter filter,
+            @Nullable @Description("The maximum number of nodes to return") Integer first,
+            @Nullable @Description("Return only nodes after this cursor") String after) {
+        return RootNode.paginate(
+                new NodeQuery(Optional.empty(), Selection.ENVIRONMENTS, filter),
+                first,
+                after,
+                maxPageSize);
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.smallrye.graphql.api.Nullable;
+import org.eclipse.microprofile.graphql.Description;
+import org.eclipse.microprofile.graphql.NonNull;
+
+/**
+ * Support for Relay-style cursor pagination of list queries. Pages are selected by keyset rather
+ * than by offset: a cursor encodes the sort key of the last element the client has seen, and the
+ * next page is everything strictly after that key. The cursor contents are an implementation
+ * detail and clients should treat them as opaque.
+ */
+public final class Pagination {
+
+    private Pagination() {}
+
+    /**
+     * The number of elements to return for a page request. An absent {@code first} requests as
+     * many elements as the server allows.
+     */
+    static int limit(@Nullable Integer first, int maxPageSize) {
+        if (first == null) {
+            return maxPageSize;
+        }
+        if (first < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Page size must not be negative, got %d", first));
+        }
+        return Math.min(first, maxPageSize);
+    }
+
+    static String encode(String kind, Object key) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((kind + ":" + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Optional<String> decode(String kind, @Nullable String cursor) {
+        if (cursor == null) {
+            return Optional.empty();
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Invalid cursor \"%s\"", cursor), e);
+        }
+        String prefix = kind + ":";
+        if (!decoded.startsWith(prefix)) {
+            throw new IllegalArgumentException(String.format("Invalid cursor \"%s\"", cursor));
+        }
+        return Optional.of(decoded.substring(prefix.length()));
+    }
+
+    static Optional<Long> decodeId(String kind, @Nullable String cursor) {
+        return decode(kind, cursor)
+                .map(
+                        id -> {
+                            try {
+                                return Long.valueOf(id);
+                            } catch (NumberFormatException e) {
+                                throw new IllegalArgumentException(
+                                        String.format("Invalid cursor \"%s\"", cursor), e);
+                            }
+                        });
+    }
+
+    /**
+     * Trim a result set which was fetched with one element more than the page size. The presence
+     * of that extra element is what indicates that another page follows.
+     */
+    static <T> List<T> trim(List<T> rows, int limit) {
+        return rows.size() > limit ? rows.subList(0, limit) : rows;
+    }
+
+    static <T> PageInfo pageInfo(
+            List<T> rows, int limit, boolean hasPreviousPage, Function<T, String> cursor) {
+        List<T> page = trim(rows, limit);
+        var info = new PageInfo();
+        info.hasNextPage = rows.size() > limit;
+        info.hasPreviousPage = hasPreviousPage;
+        if (!page.isEmpty()) {
+            info.startCursor = cursor.apply(page.get(0));
+            info.endCursor = cursor.apply(page.get(page.size() - 1));
+        }
+        return info;
+    }
+
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public static class PageInfo {
+        @Description("Whether more elements follow this page")
+        public @NonNull boolean hasNextPage;
+
+        @Description("Whether this page was requested with an 'after' cursor")
+        public @NonNull boolean hasPreviousPage;
+
+        @Description("The cursor of the first element of this page")
+        public @Nullable String startCursor;
+
+        @Description(
+                "The cursor of the last element of this page. Pass this as 'after' to request the"
+                        + " next page.")
+        public @Nullable String endCursor;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.Producers;
+
+import graphql.GraphQLContext;
+import graphql.schema.DataFetchingEnvironment;
+import io.smallrye.graphql.api.Context;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Runs the per-target work behind GraphQL field resolvers. A query selecting a field across many
+ * targets fans out into one resolver invocation per target, and each of those may need a remote
+ * JMX round trip. Blocking work is run on the shared blocking executor, but at most {@link
+ * ConfigProperties#GRAPHQL_RESOLVER_CONCURRENCY} resolver tasks occupy it at once so that a large
+ * query cannot crowd out other work. Every resolver belonging to the same query shares a single
+ * deadline. Resolvers which miss the deadline fail with {@link DeadlineExceededException}, which
+ * GraphQL reports as a field error alongside the results from the targets which did respond in
+ * time, and their tasks are cancelled: tasks still waiting for a turn are dropped and running tasks
+ * are interrupted.
+ */
+@ApplicationScoped
+class ResolverExecutor {
+
+    private static final String DEADLINE_KEY = ResolverExecutor.class.getName() + ".deadline";
+
+    @ConfigProperty(name = ConfigProperties.GRAPHQL_RESOLVER_CONCURRENCY)
+    int concurrency;
+
+    @ConfigProperty(name = ConfigProperties.GRAPHQL_QUERY_TIMEOUT)
+    Duration timeout;
+
+    @Inject
+    @Named(Producers.BLOCKING_EXECUTOR)
+    ExecutorService executor;
+
+    private final Queue<Task<?>> waiting = new ArrayDeque<>();
+    private int running;
+
+    /** Run blocking resolver work on the bounded pool, subject to the query deadline. */
+    <T> Uni<T> submit(Context context, String description, Supplier<T> task) {
+        return submit(deadline(context), description, task);
+    }
+
+    <T> Uni<T> submit(Instant deadline, String description, Supplier<T> task) {
+        Uni<T> uni =
+                Uni.createFrom()
+                        .emitter(
+                                emitter -> {
+                                    Task<T> t = new Task<>(task, emitter);
+                                    emitter.onTermination(t::cancel);
+                                    enqueue(t);
+                                });
+        return withDeadline(deadline, description, uni);
+    }
+
+    /** Subject already non-blocking resolver work to the query deadline. */
+    <T> Uni<T> withDeadline(Context context, String description, Uni<T> uni) {
+        return withDeadline(deadline(context), description, uni);
+    }
+
+    private <T> Uni<T> withDeadline(Instant deadline, String description, Uni<T> uni) {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        if (remaining.isNegative() || remaining.isZero()) {
+            return Uni.createFrom().failure(new DeadlineExceededException(description));
+        }
+        // failing here cancels the upstream, which in turn cancels the task
+        return uni.ifNoItem()
+                .after(remaining)
+                .failWith(() -> new DeadlineExceededException(description));
+    }
+
+    // the deadline is fixed by the first resolver to run within a query and then shared by all of
+    // the others, so it approximates the query's start time plus the configured timeout
+    private Instant deadline(Context context) {
+        GraphQLContext ctx = context.unwrap(DataFetchingEnvironment.class).getGraphQlContext();
+        return ctx.computeIfAbsent(DEADLINE_KEY, k -> Instant.now().plus(timeout));
+    }
+
+    private synchronized void enqueue(Task<?> task) {
+        waiting.add(task);
+        dispatch();
+    }
+
+    private synchronized void release() {
+        running--;
+        dispatch();
+    }
+
+    private synchronized void dispatch() {
+        while (running < Math.max(1, concurrency)) {
+            Task<?> next = waiting.poll();
+            if (next == null) {
+                return;
+            }
+            if (next.isCancelled()) {
+                continue;
+            }
+            running++;
+            try {
+                executor.execute(
+                        () -> {
+                            try {
+                                next.run();
+                            } finally {
+                                release();
+                            }
+                        });
+            } catch (RejectedExecutionException e) {
+                running--;
+                next.emitter.fail(e);
+            }
+        }
+    }
+
+    private static final class Task<T> {
+        private final Supplier<T> supplier;
+        private final UniEmitter<? super T> emitter;
+        private boolean cancelled;
+        private Thread thread;
+
+        Task(Supplier<T> supplier, UniEmitter<? super T> emitter) {
+            this.supplier = supplier;
+            this.emitter = emitter;
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = supplier.get();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            synchronized (this) {
+                thread = null;
+                // don't leak an interrupt meant for this task into the next one run by the thread
+                Thread.interrupted();
+            }
+            if (failure != null) {
+                emitter.fail(failure);
+            } else {
+                emitter.complete(result);
+            }
+        }
+    }
+
+    public static class DeadlineExceededException extends RuntimeException {
+        DeadlineExceededException(String description) {
+            super(String.format("Deadline exceeded while resolving %s", description));
+        }
+    }
+}
@@ -15,19 +15,27 @@
  */
 package io.cryostat.graphql;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.graphql.Pagination.PageInfo;
 import io.cryostat.graphql.matchers.LabelSelectorMatcher;
+import io.cryostat.graphql.matchers.SqlLabels;
+import io.cryostat.targets.Target;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.smallrye.common.annotation.Blocking;
 import io.smallrye.graphql.api.Nullable;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
+import org.eclipse.microprofile.graphql.NonNull;
 import org.eclipse.microprofile.graphql.Query;
 import org.eclipse.microprofile.graphql.Source;
 
@@ -47,24 +55,156 @@ public class RootNode {
                     + " from anywhere below this node's subtree.")
     public List<DiscoveryNode> descendantTargets(
             @Source DiscoveryNode discoveryNode, DiscoveryNodeFilter filter) {
-        // TODO do this filtering at the database query level as much as possible. As is, this will
-        // load the entire discovery tree out of the database, then perform the filtering at the
-        // application level.
-        return recurseChildren(discoveryNode, n -> n.target != null).stream()
-                .filter(n -> filter == null ? true : filter.test(n))
-                .toList();
+        return findTargetNodes(Optional.of(discoveryNode), filter);
     }
 
-    static Set<DiscoveryNode> recurseChildren(
-            DiscoveryNode node, Predicate<DiscoveryNode> predicate) {
-        Set<DiscoveryNode> result = new HashSet<>();
-        if (predicate.test(node)) {
-            result.add(node);
+    /**
+     * Select the targets anywhere within the subtrees of the discovery nodes matching the filter.
+     */
+    static List<Target> findTargetsUnder(DiscoveryNodeFilter nodes) {
+        List<DiscoveryNode> roots =
+                new NodeQuery(Optional.empty(), Selection.ALL, nodes)
+                        .list(Optional.empty(), Optional.empty());
+        return DiscoveryNode.findTargetsUnder(roots).stream().map(n -> n.target).toList();
+    }
+
+    /**
+     * Select the target discovery nodes matching the filter, optionally restricted to the subtree
+     * below the given node. The filter is evaluated by the database, so the cost of this scales
+     * with the number of matching nodes rather than with the size of the discovery tree.
+     */
+    static List<DiscoveryNode> findTargetNodes(
+            Optional<DiscoveryNode> root, @Nullable DiscoveryNodeFilter filter) {
+        return new NodeQuery(root, Selection.TARGETS, filter)
+                .list(Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Select one page of the discovery nodes matched by the query, ordered by ID, along with the
+     * total number of matching nodes.
+     */
+    static DiscoveryNodeConnection paginate(
+            NodeQuery query, @Nullable Integer first, @Nullable String after, int maxPageSize) {
+        int limit = Pagination.limit(first, maxPageSize);
+        Optional<Long> afterId = Pagination.decodeId(DiscoveryNodeConnection.CURSOR_KIND, after);
+        List<DiscoveryNode> rows = query.list(afterId, Optional.of(limit + 1));
+
+        var connection = new DiscoveryNodeConnection();
+        connection.edges =
+                Pagination.trim(rows, limit).stream().map(DiscoveryNodeEdge::new).toList();
+        connection.pageInfo =
+                Pagination.pageInfo(
+                        rows, limit, afterId.isPresent(), DiscoveryNodeConnection::cursor);
+        connection.totalCount = query.count();
+        return connection;
+    }
+
+    enum Selection {
+        TARGETS,
+        ENVIRONMENTS,
+        ALL
+    }
+
+    /**
+     * A native SQL selection of discovery nodes. Each node is outer joined with its Target, so
+     * that the filter's Target predicates can be evaluated in the same query, and targets or
+     * environment nodes are selected by whether that Target exists.
+     */
+    static class NodeQuery {
+        private final Map<String, Object> params = new HashMap<>();
+        private final List<String> predicates = new ArrayList<>();
+
+        NodeQuery(
+                Optional<DiscoveryNode> root,
+                Selection selection,
+                @Nullable DiscoveryNodeFilter filter) {
+            Function<Object, String> binder =
+                    v -> {
+                        String name = "p" + params.size();
+                        params.put(name, v);
+                        return ":" + name;
+                    };
+            root.ifPresent(
+                    r ->
+                            predicates.add(
+                                    String.format(
+                                            "(n.id = %s OR n.path LIKE %s)",
+                                            binder.apply(r.id),
+                                            binder.apply(r.descendantPathPrefix() + "%"))));
+            switch (selection) {
+                case TARGETS:
+                    predicates.add("t.id IS NOT NULL");
+                    break;
+                case ENVIRONMENTS:
+                    predicates.add("t.id IS NULL");
+                    break;
+                default:
+                    break;
+            }
+            if (filter != null) {
+                predicates.addAll(filter.toSql(binder));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<DiscoveryNode> list(Optional<Long> after, Optional<Integer> limit) {
+            List<String> where = new ArrayList<>(predicates);
+            after.ifPresent(id -> where.add("n.id > :after"));
+            var query =
+                    DiscoveryNode.getEntityManager()
+                            .createNativeQuery(
+                                    sql("SELECT n.*", where) + " ORDER BY n.id",
+                                    DiscoveryNode.class);
+            params.forEach(query::setParameter);
+            after.ifPresent(id -> query.setParameter("after", id));
+            limit.ifPresent(query::setMaxResults);
+            return query.getResultList();
+        }
+
+        long count() {
+            var query =
+                    DiscoveryNode.getEntityManager()
+                            .createNativeQuery(sql("SELECT count(*)", predicates));
+            params.forEach(query::setParameter);
+            return ((Number) query.getSingleResult()).longValue();
         }
-        if (node.children != null) {
-            node.children.forEach(c -> result.addAll(recurseChildren(c, predicate)));
+
+        private String sql(String select, List<String> where) {
+            StringBuilder sql =
+                    new StringBuilder(select)
+                            .append(" FROM DiscoveryNode n")
+                            .append(" LEFT JOIN Target t ON t.discoveryNode = n.id");
+            if (!where.isEmpty()) {
+                sql.append(" WHERE ").append(String.join(" AND ", where));
+            }
+            return sql.toString();
+        }
+    }
+
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public static class DiscoveryNodeConnection {
+        static final String CURSOR_KIND = "DiscoveryNode";
+
+        public @NonNull List<DiscoveryNodeEdge> edges = new ArrayList<>();
+        public @NonNull PageInfo pageInfo = new PageInfo();
+
+        @Description("The number of nodes matching the query across all pages")
+        public @NonNull long totalCount;
+
+        static String cursor(DiscoveryNode node) {
+            return Pagination.encode(CURSOR_KIND, node.id);
+        }
+    }
+
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public static class DiscoveryNodeEdge {
+        public @NonNull String cursor;
+        public @NonNull DiscoveryNode node;
+
+        DiscoveryNodeEdge(DiscoveryNode node) {
+            this.cursor = DiscoveryNodeConnection.cursor(node);
+            this.node = node;
         }
-        return result;
     }
 
     @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
@@ -78,6 +218,111 @@ public class RootNode {
         public @Nullable List<String> labels;
         public @Nullable List<String> annotations;
 
+        private static final SqlLabels NODE_LABELS =
+                new SqlLabels() {
+                    @Override
+                    public String value(String key) {
+                        return String.format("(n.labels ->> %s)", key);
+                    }
+
+                    @Override
+                    public String hasValue(String key, String value) {
+                        return String.format("(n.labels @> %s)", jsonObject(key, value));
+                    }
+                };
+
+        // annotations are matched against the merged view, where platform annotations take
+        // precedence over cryostat annotations with the same key. Equality is tested by
+        // containment against the whole annotations document so that its GIN index applies
+        private static final SqlLabels TARGET_ANNOTATIONS =
+                new SqlLabels() {
+                    @Override
+                    public String value(String key) {
+                        return String.format(
+                                "coalesce(t.annotations -> 'platform' ->> %s, t.annotations ->"
+                                        + " 'cryostat' ->> %s)",
+                                key, key);
+                    }
+
+                    @Override
+                    public String hasValue(String key, String value) {
+                        String entry = jsonObject(key, value);
+                        return String.format(
+                                "(t.annotations @> jsonb_build_object('platform', %s) OR"
+                                        + " (t.annotations @> jsonb_build_object('cryostat', %s)"
+                                        + " AND t.annotations -> 'platform' ->> %s IS NULL))",
+                                entry, entry, key);
+                    }
+                };
+
+        private static String jsonObject(String key, String value) {
+            return String.format(
+                    "jsonb_build_object(cast(%s as text), cast(%s as text))", key, value);
+        }
+
+        // selectors are parsed once per filter rather than once per tested node
+        private List<LabelSelectorMatcher> labelMatchers;
+        private List<LabelSelectorMatcher> annotationMatchers;
+
+        private List<LabelSelectorMatcher> labelMatchers() {
+            if (labelMatchers == null) {
+                labelMatchers = labels.stream().map(LabelSelectorMatcher::parse).toList();
+            }
+            return labelMatchers;
+        }
+
+        private List<LabelSelectorMatcher> annotationMatchers() {
+            if (annotationMatchers == null) {
+                annotationMatchers =
+                        annotations.stream().map(LabelSelectorMatcher::parse).toList();
+            }
+            return annotationMatchers;
+        }
+
+        /**
+         * Translate this filter into SQL predicates over a DiscoveryNode {@code n} outer joined
+         * with its Target {@code t}. All of the returned predicates must hold for a node to match.
+         */
+        List<String> toSql(Function<Object, String> binder) {
+            List<String> predicates = new ArrayList<>();
+            if (id != null) {
+                predicates.add("n.id = " + binder.apply(id));
+            }
+            if (ids != null) {
+                predicates.add(in("n.id", ids, binder));
+            }
+            if (targetIds != null) {
+                predicates.add(in("t.id", targetIds, binder));
+            }
+            if (name != null) {
+                predicates.add("n.name = " + binder.apply(name));
+            }
+            if (names != null) {
+                predicates.add(in("n.name", names, binder));
+            }
+            if (nodeTypes != null) {
+                predicates.add(in("n.nodeType", nodeTypes, binder));
+            }
+            if (labels != null) {
+                labelMatchers().forEach(m -> predicates.add(m.toSql(NODE_LABELS, binder)));
+            }
+            if (annotations != null) {
+                // nodes without a Target have no annotations to match, even by absence
+                predicates.add("t.id IS NOT NULL");
+                annotationMatchers()
+                        .forEach(m -> predicates.add(m.toSql(TARGET_ANNOTATIONS, binder)));
+            }
+            return predicates;
+        }
+
+        private static String in(
+                String column, Collection<?> values, Function<Object, String> binder) {
+            if (values.isEmpty()) {
+                return "FALSE";
+            }
+            return String.format("%s IN (%s)", column, binder.apply(values));
+        }
+
         @Override
         public boolean test(DiscoveryNode t) {
             Predicate<DiscoveryNode> matchesId = n -> id == null || id.equals(n.id);
@@ -93,26 +338,17 @@ public class RootNode {
             Predicate<DiscoveryNode> matchesNodeTypes =
                     n -> nodeTypes == null || nodeTypes.contains(n.nodeType);
             Predicate<DiscoveryNode> matchesLabels =
-                    n ->
-                            labels == null
-                                    || labels.stream()
-                                            .allMatch(
-                                                    label ->
-                                                            LabelSelectorMatcher.parse(label)
-                                                                    .test(n.labels));
+                    n -> labels == null || labelMatchers().stream().allMatch(m -> m.test(n.labels));
             Predicate<DiscoveryNode> matchesAnnotations =
                     n ->
                             annotations == null
                                     || (n.target != null
-                                            && annotations.stream()
+                                            && annotationMatchers().stream()
                                                     .allMatch(
-                                                            annotation ->
-                                                                    LabelSelectorMatcher.parse(
-                                                                                    annotation)
-                                                                            .test(
-                                                                                    n.target
-                                                                                            .annotations
-                                                                                            .merged())));
+                                                            m ->
+                                                                    m.test(
+                                                                            n.target.annotations
+                                                                                    .merged())));
 
             return List.of(
                             matchesId,
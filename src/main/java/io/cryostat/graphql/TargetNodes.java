@@ -16,13 +16,20 @@
 package io.cryostat.graphql;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 
+import io.cryostat.ConfigProperties;
 import io.cryostat.core.net.JFRConnection;
 import io.cryostat.discovery.DiscoveryNode;
 import io.cryostat.graphql.ActiveRecordings.ActiveRecordingsFilter;
 import io.cryostat.graphql.ArchivedRecordings.ArchivedRecordingsFilter;
+import io.cryostat.graphql.Pagination.PageInfo;
+import io.cryostat.graphql.RootNode.DiscoveryNodeConnection;
 import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
 import io.cryostat.libcryostat.net.MBeanMetrics;
 import io.cryostat.recordings.ActiveRecording;
@@ -33,12 +40,14 @@ import io.cryostat.targets.TargetConnectionManager;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import graphql.schema.DataFetchingEnvironment;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.smallrye.common.annotation.Blocking;
 import io.smallrye.graphql.api.Context;
 import io.smallrye.graphql.api.Nullable;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
 import org.eclipse.microprofile.graphql.NonNull;
@@ -50,23 +59,37 @@ public class TargetNodes {
 
     @Inject RecordingHelper recordingHelper;
     @Inject TargetConnectionManager connectionManager;
+    @Inject ResolverExecutor resolverExecutor;
+    @Inject ArchivedRecordingsLoader archivedRecordingsLoader;
+
+    @ConfigProperty(name = ConfigProperties.GRAPHQL_MAX_PAGE_SIZE)
+    int maxPageSize;
 
     @Blocking
     @Query("targetNodes")
     @Description("Get the Target discovery nodes, i.e. the leaf nodes of the discovery tree")
     public List<DiscoveryNode> getTargetNodes(DiscoveryNodeFilter filter) {
-        // TODO do this filtering at the database query level as much as possible. As is, this will
-        // load the entire discovery tree out of the database, then perform the filtering at the
-        // application level.
-        return Target.<Target>findAll().stream()
-                // FIXME filtering by distinct JVM ID breaks clients that expect to be able to use a
-                // different connection URL (in the node filter or for client-side filtering) than
-                // the one we end up selecting for here.
-                // .filter(distinctWith(t -> t.jvmId))
-                .map(t -> t.discoveryNode)
-                .filter(Objects::nonNull)
-                .filter(n -> filter == null ? true : filter.test(n))
-                .toList();
+        // FIXME filtering by distinct JVM ID breaks clients that expect to be able to use a
+        // different connection URL (in the node filter or for client-side filtering) than the one
+        // we end up selecting for here.
+        // .filter(distinctWith(t -> t.jvmId))
+        return RootNode.findTargetNodes(Optional.empty(), filter);
+    }
+
+    @Blocking
+    @Query("targetNodesConnection")
+    @Description(
+            "Get a page of the Target discovery nodes, i.e. the leaf nodes of the discovery tree,"
+                    + " ordered by ID")
+    public DiscoveryNodeConnection getTargetNodesConnection(
+            @Nullable DiscoveryNodeFilter filter,
+            @Nullable @Description("The maximum number of nodes to return") Integer first,
+            @Nullable @Description("Return only nodes after this cursor") String after) {
+        return RootNode.paginate(
+                new RootNode.NodeQuery(Optional.empty(), RootNode.Selection.TARGETS, filter),
+                first,
+                after,
+                maxPageSize);
     }
 
     // private static <T> Predicate<T> distinctWith(Function<? super T, ?> fn) {
@@ -74,70 +97,219 @@ public class TargetNodes {
     //     return t -> observed.add(fn.apply(t));
     // }
 
-    @Blocking
-    @Transactional
-    public ActiveRecordings activeRecordings(
-            @Source Target target, @Nullable ActiveRecordingsFilter filter) {
-        var fTarget = Target.getTargetById(target.id);
-        var recordings = new ActiveRecordings();
-        if (StringUtils.isNotBlank(fTarget.jvmId)) {
-            recordings.data =
-                    recordingHelper.listActiveRecordings(fTarget).stream()
-                            .filter(r -> filter == null || filter.test(r))
-                            .toList();
-            recordings.aggregate = AggregateInfo.fromActive(recordings.data);
-        }
-        return recordings;
+    public Uni<ActiveRecordings> activeRecordings(
+            @Source Target target, @Nullable ActiveRecordingsFilter filter, Context context) {
+        return listActive(target, context)
+                .map(
+                        list -> {
+                            var recordings = new ActiveRecordings();
+                            recordings.data =
+                                    list.stream()
+                                            .filter(r -> filter == null || filter.test(r))
+                                            .toList();
+                            recordings.aggregate = AggregateInfo.fromActive(recordings.data);
+                            return recordings;
+                        });
     }
 
-    @Blocking
-    public ArchivedRecordings archivedRecordings(
-            @Source Target target, @Nullable ArchivedRecordingsFilter filter) {
-        var fTarget = Target.getTargetById(target.id);
-        var recordings = new ArchivedRecordings();
-        if (StringUtils.isNotBlank(fTarget.jvmId)) {
-            recordings.data =
-                    recordingHelper.listArchivedRecordings(fTarget).stream()
-                            .filter(r -> filter == null || filter.test(r))
-                            .toList();
-            recordings.aggregate = AggregateInfo.fromArchived(recordings.data);
+    public Uni<ArchivedRecordings> archivedRecordings(
+            @Source Target target, @Nullable ArchivedRecordingsFilter filter, Context context) {
+        return listArchived(target, context)
+                .map(
+                        list -> {
+                            var recordings = new ArchivedRecordings();
+                            recordings.data =
+                                    list.stream()
+                                            .filter(r -> filter == null || filter.test(r))
+                                            .toList();
+                            recordings.aggregate = AggregateInfo.fromArchived(recordings.data);
+                            return recordings;
+                        });
+    }
+
+    /**
+     * Only the first page brings the stored recordings up to date with the Target. Following
+     * pages are read from the database as they stand, so that walking a long list costs one JMX
+     * round trip rather than one per page, and so that the cursor keeps referring to the same
+     * snapshot of rows.
+     */
+    @Description("Get a page of the active recordings belonging to this target, ordered by ID")
+    public Uni<ActiveRecordingConnection> activeRecordingsConnection(
+            @Source Target target,
+            @Nullable ActiveRecordingsFilter filter,
+            @Nullable @Description("The maximum number of recordings to return") Integer first,
+            @Nullable @Description("Return only recordings after this cursor") String after,
+            Context context) {
+        int limit = Pagination.limit(first, maxPageSize);
+        Optional<Long> afterId = Pagination.decodeId(ActiveRecordingConnection.CURSOR_KIND, after);
+        if (StringUtils.isBlank(target.jvmId)) {
+            return Uni.createFrom()
+                    .item(ActiveRecordingConnection.of(List.of(), limit, afterId.isPresent(), 0));
         }
-        return recordings;
+        return resolverExecutor.submit(
+                context,
+                String.format("active recordings for %s", target.connectUrl),
+                () ->
+                        QuarkusTransaction.joiningExisting()
+                                .call(
+                                        () -> {
+                                            if (afterId.isEmpty()) {
+                                                recordingHelper.listActiveRecordings(
+                                                        Target.getTargetById(target.id));
+                                            }
+                                            return ActiveRecordingConnection.of(
+                                                    findActiveRecordings(
+                                                            target.id, filter, afterId, limit + 1),
+                                                    limit,
+                                                    afterId.isPresent(),
+                                                    countActiveRecordings(target.id, filter));
+                                        }));
+    }
+
+    @Description("Get a page of the archived recordings belonging to this target, ordered by name")
+    public Uni<ArchivedRecordingConnection> archivedRecordingsConnection(
+            @Source Target target,
+            @Nullable ArchivedRecordingsFilter filter,
+            @Nullable @Description("The maximum number of recordings to return") Integer first,
+            @Nullable @Description("Return only recordings after this cursor") String after,
+            Context context) {
+        int limit = Pagination.limit(first, maxPageSize);
+        Optional<String> afterKey =
+                Pagination.decode(ArchivedRecordingConnection.CURSOR_KIND, after);
+        return listArchived(target, context)
+                .map(
+                        list ->
+                                ArchivedRecordingConnection.of(
+                                        list.stream()
+                                                .filter(r -> filter == null || filter.test(r))
+                                                .toList(),
+                                        limit,
+                                        afterKey));
     }
 
-    @Blocking
-    @Transactional
     @Description("Get the active and archived recordings belonging to this target")
-    public Recordings recordings(@Source Target target, Context context) {
-        var fTarget = Target.getTargetById(target.id);
-        var recordings = new Recordings();
-        if (StringUtils.isBlank(fTarget.jvmId)) {
-            return recordings;
-        }
+    public Uni<Recordings> recordings(@Source Target target, Context context) {
         var dfe = context.unwrap(DataFetchingEnvironment.class);
         var requestedFields =
                 dfe.getSelectionSet().getFields().stream().map(field -> field.getName()).toList();
 
-        if (requestedFields.contains("active")) {
-            recordings.active = new ActiveRecordings();
-            recordings.active.data = recordingHelper.listActiveRecordings(fTarget);
-            recordings.active.aggregate = AggregateInfo.fromActive(recordings.active.data);
+        Uni<List<ActiveRecording>> active =
+                requestedFields.contains("active")
+                        ? listActive(target, context)
+                        : Uni.createFrom().item(List.of());
+        Uni<List<ArchivedRecording>> archived =
+                requestedFields.contains("archived")
+                        ? listArchived(target, context)
+                        : Uni.createFrom().item(List.of());
+
+        // the JMX and storage requests are independent, so let them run concurrently
+        return Uni.combine()
+                .all()
+                .unis(active, archived)
+                .asTuple()
+                .map(
+                        t -> {
+                            var recordings = new Recordings();
+                            recordings.active.data = t.getItem1();
+                            recordings.active.aggregate = AggregateInfo.fromActive(t.getItem1());
+                            recordings.archived.data = t.getItem2();
+                            recordings.archived.aggregate =
+                                    AggregateInfo.fromArchived(t.getItem2());
+                            return recordings;
+                        });
+    }
+
+    @Description("Get live MBean metrics snapshot from the specified Target")
+    public Uni<MBeanMetrics> mbeanMetrics(@Source Target target, Context context) {
+        return resolverExecutor.submit(
+                context,
+                String.format("mbeanMetrics for %s", target.connectUrl),
+                () -> {
+                    var fTarget =
+                            QuarkusTransaction.joiningExisting()
+                                    .call(() -> Target.getTargetById(target.id));
+                    return connectionManager.executeConnectedTask(
+                            fTarget, JFRConnection::getMBeanMetrics);
+                });
+    }
+
+    private Uni<List<ActiveRecording>> listActive(Target target, Context context) {
+        if (StringUtils.isBlank(target.jvmId)) {
+            return Uni.createFrom().item(List.of());
         }
+        return resolverExecutor.submit(
+                context,
+                String.format("active recordings for %s", target.connectUrl),
+                () ->
+                        QuarkusTransaction.joiningExisting()
+                                .call(
+                                        () ->
+                                                recordingHelper.listActiveRecordings(
+                                                        Target.getTargetById(target.id))));
+    }
 
-        if (requestedFields.contains("archived")) {
-            recordings.archived = new ArchivedRecordings();
-            recordings.archived.data = recordingHelper.listArchivedRecordings(fTarget);
-            recordings.archived.aggregate = AggregateInfo.fromArchived(recordings.archived.data);
+    private Uni<List<ArchivedRecording>> listArchived(Target target, Context context) {
+        if (StringUtils.isBlank(target.jvmId)) {
+            return Uni.createFrom().item(List.of());
         }
+        return resolverExecutor.withDeadline(
+                context,
+                String.format("archived recordings for %s", target.connectUrl),
+                archivedRecordingsLoader.load(context, target.jvmId));
+    }
 
-        return recordings;
+    /**
+     * Select one page of the Target's active recordings matching the filter, ordered by ID. This
+     * only reads what is already stored in the database, so callers should first bring that up to
+     * date with {@link RecordingHelper#listActiveRecordings(Target)}.
+     */
+    @SuppressWarnings("unchecked")
+    static List<ActiveRecording> findActiveRecordings(
+            long targetId,
+            @Nullable ActiveRecordingsFilter filter,
+            Optional<Long> after,
+            int limit) {
+        Map<String, Object> params = new HashMap<>();
+        String sql =
+                activeRecordingsSql("SELECT r.*", targetId, filter, after, params)
+                        + " ORDER BY r.id";
+        var query =
+                ActiveRecording.getEntityManager().createNativeQuery(sql, ActiveRecording.class);
+        params.forEach(query::setParameter);
+        query.setMaxResults(limit);
+        return query.getResultList();
     }
 
-    @Blocking
-    @Description("Get live MBean metrics snapshot from the specified Target")
-    public MBeanMetrics mbeanMetrics(@Source Target target) {
-        var fTarget = Target.getTargetById(target.id);
-        return connectionManager.executeConnectedTask(fTarget, JFRConnection::getMBeanMetrics);
+    static long countActiveRecordings(
+            long targetId, @Nullable ActiveRecordingsFilter filter) {
+        Map<String, Object> params = new HashMap<>();
+        String sql =
+                activeRecordingsSql("SELECT count(*)", targetId, filter, Optional.empty(), params);
+        var query = ActiveRecording.getEntityManager().createNativeQuery(sql);
+        params.forEach(query::setParameter);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    private static String activeRecordingsSql(
+            String select,
+            long targetId,
+            @Nullable ActiveRecordingsFilter filter,
+            Optional<Long> after,
+            Map<String, Object> params) {
+        Function<Object, String> binder =
+                v -> {
+                    String name = "p" + params.size();
+                    params.put(name, v);
+                    return ":" + name;
+                };
+        List<String> predicates = new ArrayList<>();
+        predicates.add("r.target_id = " + binder.apply(targetId));
+        after.ifPresent(id -> predicates.add("r.id > " + binder.apply(id)));
+        if (filter != null) {
+            predicates.addAll(filter.toSql(binder));
+        }
+        return String.format(
+                "%s FROM ActiveRecording r WHERE %s", select, String.join(" AND ", predicates));
     }
 
     @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
@@ -158,6 +330,105 @@ public class TargetNodes {
         public @NonNull AggregateInfo aggregate = AggregateInfo.fromArchived(data);
     }
 
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public static class ActiveRecordingConnection {
+        static final String CURSOR_KIND = "ActiveRecording";
+
+        public @NonNull List<ActiveRecordingEdge> edges = new ArrayList<>();
+        public @NonNull PageInfo pageInfo = new PageInfo();
+
+        @Description("The number of recordings matching the query across all pages")
+        public @NonNull long totalCount;
+
+        public @NonNull AggregateInfo aggregate = AggregateInfo.empty();
+
+        static ActiveRecordingConnection of(
+                List<ActiveRecording> rows, int limit, boolean hasPreviousPage, long totalCount) {
+            var connection = new ActiveRecordingConnection();
+            connection.edges =
+                    Pagination.trim(rows, limit).stream().map(ActiveRecordingEdge::new).toList();
+            connection.pageInfo =
+                    Pagination.pageInfo(
+                            rows, limit, hasPreviousPage, ActiveRecordingConnection::cursor);
+            connection.totalCount = totalCount;
+            connection.aggregate = new AggregateInfo(totalCount, 0);
+            return connection;
+        }
+
+        static String cursor(ActiveRecording recording) {
+            return Pagination.encode(CURSOR_KIND, recording.id);
+        }
+    }
+
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public static class ActiveRecordingEdge {
+        public @NonNull String cursor;
+        public @NonNull ActiveRecording node;
+
+        ActiveRecordingEdge(ActiveRecording node) {
+            this.cursor = ActiveRecordingConnection.cursor(node);
+            this.node = node;
+        }
+    }
+
+    /**
+     * Archived recordings are listed from object storage rather than from the database, so the
+     * keyset here is the recording's storage key and pages are cut from the already listed
+     * recordings.
+     */
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public static class ArchivedRecordingConnection {
+        static final String CURSOR_KIND = "ArchivedRecording";
+        private static final Comparator<ArchivedRecording> ORDER =
+                Comparator.comparing(ArchivedRecordingConnection::key);
+
+        public @NonNull List<ArchivedRecordingEdge> edges = new ArrayList<>();
+        public @NonNull PageInfo pageInfo = new PageInfo();
+
+        @Description("The number of recordings matching the query across all pages")
+        public @NonNull long totalCount;
+
+        public @NonNull AggregateInfo aggregate = AggregateInfo.empty();
+
+        static ArchivedRecordingConnection of(
+                List<ArchivedRecording> matching, int limit, Optional<String> after) {
+            List<ArchivedRecording> rows =
+                    matching.stream()
+                            .filter(r -> after.map(k -> key(r).compareTo(k) > 0).orElse(true))
+                            .sorted(ORDER)
+                            .limit(limit + 1L)
+                            .toList();
+            var connection = new ArchivedRecordingConnection();
+            connection.edges =
+                    Pagination.trim(rows, limit).stream().map(ArchivedRecordingEdge::new).toList();
+            connection.pageInfo =
+                    Pagination.pageInfo(
+                            rows, limit, after.isPresent(), ArchivedRecordingConnection::cursor);
+            connection.totalCount = matching.size();
+            connection.aggregate = AggregateInfo.fromArchived(matching);
+            return connection;
+        }
+
+        static String cursor(ArchivedRecording recording) {
+            return Pagination.encode(CURSOR_KIND, key(recording));
+        }
+
+        private static String key(ArchivedRecording recording) {
+            return recording.jvmId() + "/" + recording.name();
+        }
+    }
+
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public static class ArchivedRecordingEdge {
+        public @NonNull String cursor;
+        public @NonNull ArchivedRecording node;
+
+        ArchivedRecordingEdge(ArchivedRecording node) {
+            this.cursor = ArchivedRecordingConnection.cursor(node);
+            this.node = node;
+        }
+    }
+
     @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
     public static class AggregateInfo {
         public @NonNull @Description("The number of elements in this collection") long count;
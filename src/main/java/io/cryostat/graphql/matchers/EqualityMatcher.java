@@ -41,6 +41,18 @@ public class EqualityMatcher implements LabelMatcher {
         return operator.with(value).test(s);
     }
 
+    @Override
+    public String toSql(SqlLabels labels, Function<Object, String> binder) {
+        String k = binder.apply(key);
+        String v = binder.apply(value);
+        switch (operator) {
+            case NOT_EQUAL:
+                return String.format("(%s IS DISTINCT FROM %s)", labels.value(k), v);
+            default:
+                return labels.hasValue(k, v);
+        }
+    }
+
     public enum Operator {
         EQUAL("=", arg -> v -> Objects.equals(arg, v)),
         DOUBLE_EQUAL("==", arg -> v -> Objects.equals(arg, v)),
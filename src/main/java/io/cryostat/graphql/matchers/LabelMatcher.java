@@ -15,8 +15,15 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 interface LabelMatcher extends Predicate<String> {
     String getKey();
+
+    /**
+     * Render this matcher as a SQL predicate over the given label set. The binder registers a
+     * query parameter value and returns its placeholder.
+     */
+    String toSql(SqlLabels labels, Function<Object, String> binder);
 }
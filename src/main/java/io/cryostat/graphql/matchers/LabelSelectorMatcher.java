@@ -62,6 +62,19 @@ public class LabelSelectorMatcher implements Predicate<Map<String, String>> {
         return this.matchers.stream().allMatch(m -> m.test(labels.get(m.getKey())));
     }
 
+    /**
+     * Render this selector as a SQL predicate over the given label set, equivalent to {@link
+     * #test(Map)}. The binder registers a query parameter value and returns its placeholder.
+     */
+    public String toSql(SqlLabels labels, Function<Object, String> binder) {
+        if (matchers.isEmpty()) {
+            return "TRUE";
+        }
+        return matchers.stream()
+                .map(m -> m.toSql(labels, binder))
+                .collect(Collectors.joining(" AND ", "(", ")"));
+    }
+
     public static LabelSelectorMatcher parse(String clause) throws IllegalArgumentException {
         Collection<Function<String, LabelMatcher>> parsers =
                 Arrays.asList(
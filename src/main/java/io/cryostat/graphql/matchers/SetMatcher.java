@@ -20,6 +20,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public class SetMatcher implements LabelMatcher {
 
@@ -47,6 +48,32 @@ public class SetMatcher implements LabelMatcher {
         return operator.with(values).test(s);
     }
 
+    @Override
+    public String toSql(SqlLabels labels, Function<Object, String> binder) {
+        String k = binder.apply(key);
+        String v = labels.value(k);
+        switch (operator) {
+            case IN:
+                // one equality test per value rather than a single IN, so that each may be
+                // answered from an index where the label set supports it
+                if (values.isEmpty()) {
+                    return "FALSE";
+                }
+                return values.stream()
+                        .sorted()
+                        .map(value -> labels.hasValue(k, binder.apply(value)))
+                        .collect(Collectors.joining(" OR ", "(", ")"));
+            case NOT_IN:
+                return String.format("(%s IS NULL OR %s NOT IN (%s))", v, v, binder.apply(values));
+            case EXISTS:
+                return String.format("(%s IS NOT NULL)", v);
+            case DOES_NOT_EXIST:
+                return String.format("(%s IS NULL)", v);
+            default:
+                throw new IllegalStateException(operator.name());
+        }
+    }
+
     public enum Operator {
         IN("In", args -> v -> contains(args, v)),
         NOT_IN("NotIn", args -> v -> !contains(args, v)),
@@ -0,0 +1,36 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql.matchers;
+
+/**
+ * Describes how a label set is stored in the database, so that a {@link LabelSelectorMatcher} can
+ * be rendered as a SQL predicate and evaluated by the database rather than in memory. Arguments
+ * are SQL fragments, typically bound parameter placeholders.
+ */
+public interface SqlLabels {
+
+    /** A SQL expression yielding the text value of the given label key, or NULL if absent. */
+    String value(String key);
+
+    /**
+     * A SQL predicate which is true if the label set maps the given key to the given value.
+     * Implementations may override this with a form that the database can answer from an index,
+     * such as JSONB containment.
+     */
+    default String hasValue(String key, String value) {
+        return String.format("(%s = %s)", value(key), value);
+    }
+}
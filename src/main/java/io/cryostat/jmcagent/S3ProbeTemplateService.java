@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Objects;
 
 import io.cryostat.ConfigProperties;
+import io.cryostat.ObjectStorage;
 import io.cryostat.Producers;
 import io.cryostat.StorageBuckets;
 import io.cryostat.core.jmcagent.ProbeTemplate;
@@ -42,14 +43,8 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.xml.sax.SAXException;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.s3.model.Tag;
 import software.amazon.awssdk.services.s3.model.Tagging;
 
@@ -58,7 +53,7 @@ public class S3ProbeTemplateService implements ProbeTemplateService {
     @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_PROBE_TEMPLATES)
     String bucket;
 
-    @Inject S3Client storage;
+    @Inject ObjectStorage storage;
     @Inject StorageBuckets storageBuckets;
 
     @Inject EventBus bus;
@@ -78,7 +73,7 @@ public class S3ProbeTemplateService implements ProbeTemplateService {
 
     @Override
     public List<ProbeTemplate> getTemplates() {
-        return getObjects().stream()
+        return getObjectTags().stream()
                 .map(
                         t -> {
                             try {
@@ -110,8 +105,9 @@ public class S3ProbeTemplateService implements ProbeTemplateService {
                         .filter(t -> t.getFileName().equals(templateName))
                         .findFirst()
                         .orElseThrow();
-        var req = DeleteObjectRequest.builder().bucket(bucket).key(templateName).build();
-        if (storage.deleteObject(req).sdkHttpResponse().isSuccessful()) {
+        if (storage.await(storage.deleteObject(bucket, templateName))
+                .sdkHttpResponse()
+                .isSuccessful()) {
             bus.publish(
                     MessagingServer.class.getName(),
                     new Notification(
@@ -121,20 +117,23 @@ public class S3ProbeTemplateService implements ProbeTemplateService {
     }
 
     private InputStream getModel(String name) {
-        var req = GetObjectRequest.builder().bucket(bucket).key(name).build();
-        return storage.getObject(req);
+        return storage.await(storage.getObject(bucket, name)).asInputStream();
     }
 
-    private List<S3Object> getObjects() {
-        var builder = ListObjectsV2Request.builder().bucket(bucket);
-        return storage.listObjectsV2(builder.build()).contents();
+    private List<List<Tag>> getObjectTags() {
+        return storage.await(
+                storage.listObjects(bucket)
+                        .collect()
+                        .asList()
+                        .flatMap(
+                                objects ->
+                                        storage.mapConcurrently(
+                                                objects, o -> storage.getTags(bucket, o.key())))
+                        .map(tags -> tags.stream().map(t -> t.orElse(List.of())).toList()));
     }
 
-    private ProbeTemplate convertObject(S3Object object) throws Exception {
-        var req = GetObjectTaggingRequest.builder().bucket(bucket).key(object.key()).build();
-        var tagging = storage.getObjectTagging(req);
-        var list = tagging.tagSet();
-        if (!tagging.hasTagSet() || list.isEmpty()) {
+    private ProbeTemplate convertObject(List<Tag> list) throws Exception {
+        if (list.isEmpty()) {
             throw new Exception("No metadata found");
         }
         var decodedList = new ArrayList<Pair<String, String>>();
@@ -187,19 +186,20 @@ public class S3ProbeTemplateService implements ProbeTemplateService {
             ProbeTemplate template = new ProbeTemplate();
             template.setFileName(fileName);
             template.deserialize(stream);
-            storage.putObject(
-                    PutObjectRequest.builder()
-                            .bucket(bucket)
-                            .key(fileName)
-                            .contentType(MediaType.APPLICATION_XML)
-                            .tagging(
-                                    createTemplateTagging(
-                                            fileName,
-                                            template.getClassPrefix(),
-                                            String.valueOf(template.getAllowToString()),
-                                            String.valueOf(template.getAllowConverter())))
-                            .build(),
-                    RequestBody.fromString(template.serialize()));
+            storage.await(
+                    storage.putObject(
+                            PutObjectRequest.builder()
+                                    .bucket(bucket)
+                                    .key(fileName)
+                                    .contentType(MediaType.APPLICATION_XML)
+                                    .tagging(
+                                            createTemplateTagging(
+                                                    fileName,
+                                                    template.getClassPrefix(),
+                                                    String.valueOf(template.getAllowToString()),
+                                                    String.valueOf(template.getAllowConverter())))
+                                    .build(),
+                            AsyncRequestBody.fromString(template.serialize())));
             bus.publish(
                     MessagingServer.class.getName(),
                     new Notification(
@@ -33,6 +33,7 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,6 +41,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
@@ -55,6 +57,7 @@ import org.openjdk.jmc.flightrecorder.configuration.IRecordingDescriptor;
 import org.openjdk.jmc.flightrecorder.configuration.recording.RecordingOptionsBuilder;
 
 import io.cryostat.ConfigProperties;
+import io.cryostat.ObjectStorage;
 import io.cryostat.Producers;
 import io.cryostat.core.EventOptionsBuilder;
 import io.cryostat.core.FlightRecorderException;
@@ -81,6 +84,7 @@ import io.cryostat.ws.Notification;
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.StartupEvent;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.unchecked.Unchecked;
 import io.vertx.ext.web.handler.HttpException;
 import io.vertx.mutiny.core.eventbus.EventBus;
 import io.vertx.mutiny.ext.web.client.HttpResponse;
@@ -113,21 +117,13 @@ import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.exception.SdkClientException;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
 import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
-import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
-import software.amazon.awssdk.services.s3.model.PutObjectTaggingRequest;
 import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.s3.model.Tag;
 import software.amazon.awssdk.services.s3.model.Tagging;
@@ -142,7 +138,7 @@ public class RecordingHelper {
             Pattern.compile("^template=([\\w]+)(?:,type=([\\w]+))?$");
     public static final String DATASOURCE_FILENAME = "cryostat-analysis.jfr";
 
-    @Inject S3Client storage;
+    @Inject ObjectStorage objectStorage;
 
     @Inject WebClient webClient;
     @Inject FileSystem fs;
@@ -326,8 +322,54 @@ public class RecordingHelper {
             RecordingOptions options,
             Map<String, String> rawLabels)
             throws QuantityConversionException {
+        String recordingName = options.name();
+        Supplier<RecordingState> previousState =
+                () ->
+                        connectionManager.executeConnectedTask(
+                                target,
+                                conn ->
+                                        getDescriptorByName(conn, recordingName)
+                                                .map(this::mapState)
+                                                .orElse(null));
+        Supplier<Optional<ActiveRecording>> existing =
+                () -> getActiveRecording(target, r -> r.name.equals(recordingName));
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                startRecordingImpl(
+                                        target,
+                                        replace,
+                                        template,
+                                        options,
+                                        rawLabels,
+                                        previousState,
+                                        existing));
+    }
+
+    /**
+     * Start a recording when the target's existing recording of the same name, if any, is already
+     * known from a recent synchronization of the target's recordings. This saves querying the
+     * target for it again.
+     */
+    public Uni<ActiveRecording> startRecording(
+            Target target,
+            RecordingReplace replace,
+            Template template,
+            RecordingOptions options,
+            Map<String, String> rawLabels,
+            Optional<ActiveRecording> existing)
+            throws QuantityConversionException {
         return QuarkusTransaction.joiningExisting()
-                .call(() -> startRecordingImpl(target, replace, template, options, rawLabels));
+                .call(
+                        () ->
+                                startRecordingImpl(
+                                        target,
+                                        replace,
+                                        template,
+                                        options,
+                                        rawLabels,
+                                        () -> existing.map(r -> r.state).orElse(null),
+                                        () -> existing));
     }
 
     private Uni<ActiveRecording> startRecordingImpl(
@@ -335,21 +377,18 @@ public class RecordingHelper {
             RecordingReplace replace,
             Template template,
             RecordingOptions options,
-            Map<String, String> rawLabels) {
+            Map<String, String> rawLabels,
+            Supplier<RecordingState> previousStateSupplier,
+            Supplier<Optional<ActiveRecording>> existingSupplier) {
         String recordingName = options.name();
 
-        RecordingState previousState =
-                connectionManager.executeConnectedTask(
-                        target,
-                        conn ->
-                                getDescriptorByName(conn, recordingName)
-                                        .map(this::mapState)
-                                        .orElse(null));
+        RecordingState previousState = previousStateSupplier.get();
         boolean restart = previousState == null || shouldRestartRecording(replace, previousState);
         if (!restart) {
             throw new EntityExistsException("Recording", recordingName);
         }
-        getActiveRecording(target, r -> r.name.equals(recordingName))
+        existingSupplier
+                .get()
                 .ifPresent(r -> this.deleteRecording(r).await().atMost(connectionFailedTimeout));
         var desc =
                 connectionManager.executeConnectedTask(
@@ -717,63 +756,94 @@ public class RecordingHelper {
     }
 
     public List<ArchivedRecording> listArchivedRecordings() {
-        return listArchivedRecordingObjects().stream()
-                .map(
-                        item -> {
-                            String path = item.key().strip();
-                            String[] parts = path.split("/");
-                            String jvmId = parts[0];
-                            String filename = parts[1];
-                            Metadata metadata =
-                                    getArchivedRecordingMetadata(jvmId, filename)
-                                            .orElseGet(Metadata::empty);
-                            return new ArchivedRecording(
-                                    jvmId,
-                                    filename,
-                                    downloadUrl(jvmId, filename),
-                                    reportUrl(jvmId, filename),
-                                    metadata,
-                                    item.size(),
-                                    item.lastModified().getEpochSecond());
-                        })
-                .toList();
+        return objectStorage.await(listArchivedRecordingsUni(null));
     }
 
     public List<S3Object> listArchivedRecordingObjects(String jvmId) {
-        var builder = ListObjectsV2Request.builder().bucket(archiveBucket);
-        if (StringUtils.isNotBlank(jvmId)) {
-            builder = builder.prefix(jvmId);
-        }
-        return storage.listObjectsV2(builder.build()).contents().stream()
-                .filter(
-                        o -> {
-                            var metadata = getArchivedRecordingMetadata(o.key());
-                            var temporary = metadata.map(m -> m.expiry() != null).orElse(false);
-                            return !temporary;
-                        })
-                .toList();
+        return objectStorage.await(listArchivedRecordingObjectsUni(jvmId));
+    }
+
+    public Uni<List<S3Object>> listArchivedRecordingObjectsUni(String jvmId) {
+        return listArchivedRecordingObjectsWithMetadata(jvmId)
+                .map(list -> list.stream().map(Pair::getKey).toList());
     }
 
     public List<ArchivedRecording> listArchivedRecordings(String jvmId) {
-        return listArchivedRecordingObjects(jvmId).stream()
+        return objectStorage.await(listArchivedRecordingsUni(jvmId));
+    }
+
+    public Uni<List<ArchivedRecording>> listArchivedRecordingsUni(String jvmId) {
+        return listArchivedRecordingObjectsWithMetadata(jvmId)
+                .map(list -> list.stream().map(this::toArchivedRecording).toList());
+    }
+
+    /**
+     * List the archived recording objects belonging to the JVM, or all archived recording objects
+     * if no JVM ID is given. Object tags are not retrieved, so this is much cheaper than a full
+     * listing with metadata - use {@link #resolveArchivedRecording(S3Object)} to resolve the
+     * objects of interest.
+     */
+    public Uni<List<S3Object>> listArchivedRecordingObjectsWithoutMetadata(String jvmId) {
+        return objectStorage.listObjects(archiveBucket, archivePrefix(jvmId)).collect().asList();
+    }
+
+    // the key prefix of the JVM's archived recordings, which includes the separator so that one
+    // JVM ID which is a prefix of another does not also select the other's recordings
+    private static Optional<String> archivePrefix(String jvmId) {
+        return StringUtils.isNotBlank(jvmId) ? Optional.of(jvmId + "/") : Optional.empty();
+    }
+
+    /**
+     * Resolve the metadata for the given archived recording object and convert it to an {@link
+     * ArchivedRecording}, or an empty Optional if it is a temporary object which has an expiry.
+     */
+    public Uni<Optional<ArchivedRecording>> resolveArchivedRecording(S3Object object) {
+        return withMetadata(object)
                 .map(
-                        item -> {
-                            String path = item.key().strip();
-                            String[] parts = path.split("/");
-                            String filename = parts[1];
-                            Metadata metadata =
-                                    getArchivedRecordingMetadata(jvmId, filename)
-                                            .orElseGet(Metadata::empty);
-                            return new ArchivedRecording(
-                                    jvmId,
-                                    filename,
-                                    downloadUrl(jvmId, filename),
-                                    reportUrl(jvmId, filename),
-                                    metadata,
-                                    item.size(),
-                                    item.lastModified().getEpochSecond());
-                        })
-                .toList();
+                        p ->
+                                p.getValue().expiry() == null
+                                        ? Optional.of(toArchivedRecording(p))
+                                        : Optional.empty());
+    }
+
+    private ArchivedRecording toArchivedRecording(Pair<S3Object, Metadata> pair) {
+        return toArchivedRecording(pair.getKey(), pair.getValue());
+    }
+
+    public ArchivedRecording toArchivedRecording(S3Object item, Metadata metadata) {
+        String path = item.key().strip();
+        String[] parts = path.split("/");
+        String jvmId = parts[0];
+        String filename = parts[1];
+        return new ArchivedRecording(
+                jvmId,
+                filename,
+                downloadUrl(jvmId, filename),
+                reportUrl(jvmId, filename),
+                metadata,
+                item.size(),
+                item.lastModified().getEpochSecond());
+    }
+
+    // List the archived recording objects along with their metadata, excluding temporary objects
+    // which have an expiry. Tags are fetched concurrently, and each object's tags only once.
+    private Uni<List<Pair<S3Object, Metadata>>> listArchivedRecordingObjectsWithMetadata(
+            String jvmId) {
+        return objectStorage
+                .listObjects(archiveBucket, archivePrefix(jvmId))
+                .collect()
+                .asList()
+                .flatMap(objects -> objectStorage.mapConcurrently(objects, this::withMetadata))
+                .map(
+                        list ->
+                                list.stream()
+                                        .filter(p -> p.getValue().expiry() == null)
+                                        .toList());
+    }
+
+    private Uni<Pair<S3Object, Metadata>> withMetadata(S3Object object) {
+        return getArchivedRecordingMetadataUni(object.key())
+                .map(metadata -> Pair.of(object, metadata.orElseGet(Metadata::empty)));
     }
 
     public List<ArchivedRecording> listArchivedRecordings(Target target) {
@@ -814,7 +884,7 @@ public class RecordingHelper {
                 builder = builder.expires(expiry);
             }
             CreateMultipartUploadRequest request = builder.build();
-            multipartId = storage.createMultipartUpload(request).uploadId();
+            multipartId = objectStorage.await(objectStorage.createMultipartUpload(request));
             int read = 0;
             for (int i = 1; i <= 10_000; i++) {
                 read = ch.read(buf);
@@ -831,7 +901,8 @@ public class RecordingHelper {
 
                 logger.tracev("Writing chunk {0} of {1} bytes", i, read);
                 String eTag =
-                        storage.uploadPart(
+                        objectStorage.awaitTransfer(
+                                objectStorage.uploadPart(
                                         UploadPartRequest.builder()
                                                 .bucket(archiveBucket)
                                                 .key(key)
@@ -839,8 +910,7 @@ public class RecordingHelper {
                                                 .partNumber(i)
                                                 .contentLength(Long.valueOf(read))
                                                 .build(),
-                                        RequestBody.fromByteBuffer(buf.slice(0, read)))
-                                .eTag();
+                                        AsyncRequestBody.fromByteBuffer(buf.slice(0, read))));
                 parts.add(Pair.of(i, eTag));
                 buf.clear();
                 // S3 API limit
@@ -852,12 +922,13 @@ public class RecordingHelper {
             logger.error("Could not upload recording to S3 storage", e);
             try {
                 if (multipartId != null) {
-                    storage.abortMultipartUpload(
-                            AbortMultipartUploadRequest.builder()
-                                    .bucket(archiveBucket)
-                                    .key(key)
-                                    .uploadId(multipartId)
-                                    .build());
+                    objectStorage.await(
+                            objectStorage.abortMultipartUpload(
+                                    AbortMultipartUploadRequest.builder()
+                                            .bucket(archiveBucket)
+                                            .key(key)
+                                            .uploadId(multipartId)
+                                            .build()));
                 }
             } catch (Exception e2) {
                 logger.error("Could not abort S3 multipart upload", e2);
@@ -865,28 +936,26 @@ public class RecordingHelper {
             throw e;
         }
         try {
-            storage.completeMultipartUpload(
-                    CompleteMultipartUploadRequest.builder()
-                            .bucket(archiveBucket)
-                            .key(key)
-                            .uploadId(multipartId)
-                            .multipartUpload(
-                                    CompletedMultipartUpload.builder()
-                                            .parts(
-                                                    parts.stream()
-                                                            .map(
-                                                                    part ->
-                                                                            CompletedPart.builder()
-                                                                                    .partNumber(
-                                                                                            part
-                                                                                                    .getLeft())
-                                                                                    .eTag(
-                                                                                            part
-                                                                                                    .getRight())
-                                                                                    .build())
-                                                            .toList())
-                                            .build())
-                            .build());
+            List<CompletedPart> completedParts =
+                    parts.stream()
+                            .map(
+                                    part ->
+                                            CompletedPart.builder()
+                                                    .partNumber(part.getLeft())
+                                                    .eTag(part.getRight())
+                                                    .build())
+                            .toList();
+            objectStorage.await(
+                    objectStorage.completeMultipartUpload(
+                            CompleteMultipartUploadRequest.builder()
+                                    .bucket(archiveBucket)
+                                    .key(key)
+                                    .uploadId(multipartId)
+                                    .multipartUpload(
+                                            CompletedMultipartUpload.builder()
+                                                    .parts(completedParts)
+                                                    .build())
+                                    .build()));
         } catch (SdkClientException e) {
             // Amazon S3 couldn't be contacted for a response, or the client
             // couldn't parse the response from Amazon S3.
@@ -929,19 +998,13 @@ public class RecordingHelper {
     }
 
     public Optional<Metadata> getArchivedRecordingMetadata(String storageKey) {
-        try {
-            return Optional.of(
-                    taggingToMetadata(
-                            storage.getObjectTagging(
-                                            GetObjectTaggingRequest.builder()
-                                                    .bucket(archiveBucket)
-                                                    .key(storageKey)
-                                                    .build())
-                                    .tagSet()));
-        } catch (NoSuchKeyException nske) {
-            logger.warn(nske);
-            return Optional.empty();
-        }
+        return objectStorage.await(getArchivedRecordingMetadataUni(storageKey));
+    }
+
+    public Uni<Optional<Metadata>> getArchivedRecordingMetadataUni(String storageKey) {
+        return objectStorage
+                .getTags(archiveBucket, storageKey)
+                .map(tags -> tags.map(this::taggingToMetadata));
     }
 
     private String decodeBase64(String encoded) {
@@ -988,10 +1051,7 @@ public class RecordingHelper {
     public InputStream getArchivedRecordingStream(String encodedKey) {
         String key = new String(base64Url.decode(encodedKey), StandardCharsets.UTF_8);
 
-        GetObjectRequest getRequest =
-                GetObjectRequest.builder().bucket(archiveBucket).key(key).build();
-
-        return storage.getObject(getRequest);
+        return objectStorage.await(objectStorage.getObjectStream(archiveBucket, key));
     }
 
     public String downloadUrl(ActiveRecording recording) {
@@ -1044,12 +1104,42 @@ public class RecordingHelper {
 
     /* Archived Recording Helpers */
     public void deleteArchivedRecording(String jvmId, String filename) {
-        storage.deleteObject(
-                DeleteObjectRequest.builder()
-                        .bucket(archiveBucket)
-                        .key(archivedRecordingKey(jvmId, filename))
-                        .build());
+        objectStorage.await(
+                objectStorage.deleteObject(archiveBucket, archivedRecordingKey(jvmId, filename)));
+        notifyArchivedRecordingDeleted(jvmId, filename);
+    }
 
+    /**
+     * Delete several of a JVM's archived recordings using as few DeleteObjects requests as
+     * possible, rather than one request per recording.
+     *
+     * @return the filenames which could not be deleted
+     */
+    public Set<String> deleteArchivedRecordings(String jvmId, Collection<String> filenames) {
+        if (filenames.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> failed = new HashSet<>();
+        objectStorage
+                .await(
+                        objectStorage.deleteObjects(
+                                archiveBucket,
+                                filenames.stream()
+                                        .map(f -> archivedRecordingKey(jvmId, f))
+                                        .toList()))
+                .forEach(
+                        err -> {
+                            logger.errorv(
+                                    "Deletion failure: {0} due to {1}", err.key(), err.message());
+                            failed.add(err.key().substring(err.key().indexOf('/') + 1));
+                        });
+        filenames.stream()
+                .filter(f -> !failed.contains(f))
+                .forEach(f -> notifyArchivedRecordingDeleted(jvmId, f));
+        return failed;
+    }
+
+    private void notifyArchivedRecordingDeleted(String jvmId, String filename) {
         var metadata = Metadata.empty(); // TODO
         var target = Target.getTargetByJvmId(jvmId);
         var event =
@@ -1176,16 +1266,13 @@ public class RecordingHelper {
         Metadata updatedMetadata = new Metadata(updatedLabels);
 
         Tagging tagging = createMetadataTagging(updatedMetadata);
-        storage.putObjectTagging(
-                PutObjectTaggingRequest.builder()
-                        .bucket(archiveBucket)
-                        .key(key)
-                        .tagging(tagging)
-                        .build());
-
         var response =
-                storage.headObject(
-                        HeadObjectRequest.builder().bucket(archiveBucket).key(key).build());
+                objectStorage
+                        .await(
+                                objectStorage
+                                        .putTags(archiveBucket, key, tagging)
+                                        .chain(() -> objectStorage.head(archiveBucket, key)))
+                        .orElseThrow(NotFoundException::new);
         long size = response.contentLength();
         Instant lastModified = response.lastModified();
 
@@ -1239,20 +1326,14 @@ public class RecordingHelper {
         Objects.requireNonNull(key);
         Objects.requireNonNull(key.getKey());
         Objects.requireNonNull(key.getValue());
-        GetObjectRequest getRequest =
-                GetObjectRequest.builder()
-                        .bucket(archiveBucket)
-                        .key(archivedRecordingKey(key))
-                        .build();
-
         Path recordingPath = fs.createTempFile(null, null);
         // the S3 client will create the file at this path, we just need to get a fresh temp file
         // path but one that does not yet exist
         fs.deleteIfExists(recordingPath);
 
-        storage.getObject(getRequest, recordingPath);
-
-        return uploadToJFRDatasource(recordingPath);
+        return objectStorage
+                .getObject(archiveBucket, archivedRecordingKey(key), recordingPath)
+                .chain(Unchecked.function(res -> uploadToJFRDatasource(recordingPath)));
     }
 
     private Uni<String> uploadToJFRDatasource(Path recordingPath)
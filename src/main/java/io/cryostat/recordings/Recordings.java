@@ -39,6 +39,7 @@ import org.openjdk.jmc.flightrecorder.configuration.IRecordingDescriptor;
 import org.openjdk.jmc.flightrecorder.configuration.recording.RecordingOptionsBuilder;
 
 import io.cryostat.ConfigProperties;
+import io.cryostat.ObjectStorage;
 import io.cryostat.Producers;
 import io.cryostat.StorageBuckets;
 import io.cryostat.V2Response;
@@ -91,13 +92,8 @@ import org.jboss.resteasy.reactive.RestPath;
 import org.jboss.resteasy.reactive.RestQuery;
 import org.jboss.resteasy.reactive.RestResponse;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.Delete;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -113,7 +109,7 @@ public class Recordings {
     @Inject RecordingOptionsCustomizerFactory recordingOptionsCustomizerFactory;
     @Inject EventOptionsBuilder.Factory eventOptionsBuilderFactory;
     @Inject Clock clock;
-    @Inject S3Client storage;
+    @Inject ObjectStorage storage;
     @Inject StorageBuckets storageBuckets;
     @Inject S3Presigner presigner;
     @Inject RemoteRecordingInputStreamFactory remoteRecordingStreamFactory;
@@ -231,24 +227,7 @@ public class Recordings {
         bus.publish(
                 MessagingServer.class.getName(),
                 new Notification(event.category().category(), event.payload()));
-        storage.deleteObjects(
-                        DeleteObjectsRequest.builder()
-                                .bucket(bucket)
-                                .delete(
-                                        Delete.builder()
-                                                .objects(
-                                                        toRemove.stream()
-                                                                .map(S3Object::key)
-                                                                .map(
-                                                                        k ->
-                                                                                ObjectIdentifier
-                                                                                        .builder()
-                                                                                        .key(k)
-                                                                                        .build())
-                                                                .toList())
-                                                .build())
-                                .build())
-                .errors()
+        storage.await(storage.deleteObjects(bucket, toRemove.stream().map(S3Object::key).toList()))
                 .forEach(
                         err -> {
                             logger.errorv(
@@ -321,14 +300,17 @@ public class Recordings {
         Map<String, String> labels = new HashMap<>(metadata.labels);
         labels.put("jvmId", jvmId);
         String key = recordingHelper.archivedRecordingKey(jvmId, filename);
-        storage.putObject(
-                PutObjectRequest.builder()
-                        .bucket(bucket)
-                        .key(key)
-                        .contentType(RecordingHelper.JFR_MIME)
-                        .tagging(recordingHelper.createMetadataTagging(new Metadata(labels)))
-                        .build(),
-                RequestBody.fromFile(recording.filePath()));
+        storage.awaitTransfer(
+                storage.putObject(
+                        PutObjectRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .contentType(RecordingHelper.JFR_MIME)
+                                .tagging(
+                                        recordingHelper.createMetadataTagging(
+                                                new Metadata(labels)))
+                                .build(),
+                        AsyncRequestBody.fromFile(recording.filePath())));
         logger.trace("Upload complete");
 
         var target = Target.getTargetByJvmId(jvmId);
@@ -359,11 +341,7 @@ public class Recordings {
     @RolesAllowed("write")
     public void delete(@RestPath String filename) throws Exception {
         // TODO scan all prefixes for matching filename? This is an old v1 API problem.
-        storage.deleteObject(
-                DeleteObjectRequest.builder()
-                        .bucket(bucket)
-                        .key(String.format("%s/%s", "uploads", filename))
-                        .build());
+        storage.await(storage.deleteObject(bucket, String.format("%s/%s", "uploads", filename)));
     }
 
     @GET
@@ -735,11 +713,9 @@ public class Recordings {
                 "Sending S3 deletion request for {0} {1}",
                 bucket, recordingHelper.archivedRecordingKey(jvmId, filename));
         var resp =
-                storage.deleteObject(
-                        DeleteObjectRequest.builder()
-                                .bucket(bucket)
-                                .key(recordingHelper.archivedRecordingKey(jvmId, filename))
-                                .build());
+                storage.await(
+                        storage.deleteObject(
+                                bucket, recordingHelper.archivedRecordingKey(jvmId, filename)));
         logger.tracev(
                 "Got SDK response {0} {1}",
                 resp.sdkHttpResponse().statusCode(), resp.sdkHttpResponse().statusText());
@@ -18,6 +18,7 @@ package io.cryostat.reports;
 import java.util.Optional;
 
 import io.cryostat.ConfigProperties;
+import io.cryostat.ObjectStorage;
 import io.cryostat.recordings.RecordingHelper;
 import io.cryostat.recordings.Recordings;
 import io.cryostat.recordings.Recordings.ArchivedRecording;
@@ -27,9 +28,6 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Exception;
 
 @ApplicationScoped
 class StorageCachingReportsListener {
@@ -40,7 +38,7 @@ class StorageCachingReportsListener {
     @ConfigProperty(name = ConfigProperties.ARCHIVED_REPORTS_STORAGE_CACHE_NAME)
     String bucket;
 
-    @Inject S3Client storage;
+    @Inject ObjectStorage storage;
 
     @Inject RecordingHelper recordingHelper;
 
@@ -56,12 +54,9 @@ class StorageCachingReportsListener {
                         jvmId -> {
                             var key = recordingHelper.archivedRecordingKey(jvmId, recording.name());
                             logger.tracev("Picked up deletion of archived recording: {0}", key);
-                            var req = DeleteObjectRequest.builder().bucket(bucket).key(key).build();
-                            try {
-                                storage.deleteObject(req);
-                            } catch (S3Exception e) {
-                                logger.warn(e);
-                            }
+                            storage.deleteObject(bucket, key)
+                                    .subscribe()
+                                    .with(deleted -> {}, logger::warn);
                         });
     }
 }
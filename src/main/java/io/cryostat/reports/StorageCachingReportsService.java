@@ -19,12 +19,14 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletionException;
 import java.util.function.Predicate;
 
 import org.openjdk.jmc.flightrecorder.rules.IRule;
 
 import io.cryostat.ConfigProperties;
+import io.cryostat.ObjectStorage;
 import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
 import io.cryostat.recordings.ActiveRecording;
 import io.cryostat.recordings.RecordingHelper;
@@ -43,11 +45,7 @@ import jakarta.enterprise.inject.Any;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 @Priority(20)
@@ -64,7 +62,7 @@ class StorageCachingReportsService implements ReportsService {
     @ConfigProperty(name = ConfigProperties.ARCHIVED_REPORTS_EXPIRY_DURATION)
     Duration expiry;
 
-    @Inject S3Client storage;
+    @Inject ObjectStorage storage;
     @Inject RecordingHelper recordingHelper;
     @Inject ObjectMapper mapper;
 
@@ -103,53 +101,51 @@ class StorageCachingReportsService implements ReportsService {
     }
 
     private Uni<Boolean> checkStorage(String key) {
-        return Uni.createFrom()
-                .item(
-                        () -> {
-                            var req = HeadObjectRequest.builder().bucket(bucket).key(key).build();
-                            try {
-                                return storage.headObject(req).sdkHttpResponse().isSuccessful();
-                            } catch (NoSuchKeyException nske) {
-                                return false;
-                            }
-                        });
+        return storage.head(bucket, key).map(Optional::isPresent);
     }
 
     private Uni<Map<String, AnalysisResult>> putStorage(
             String key, Uni<Map<String, AnalysisResult>> payload) {
         return payload.onItem()
-                .invoke(
+                .call(
                         map -> {
+                            String str;
                             try {
-                                var str = mapper.writeValueAsString(map);
-                                var req =
-                                        PutObjectRequest.builder()
-                                                .bucket(bucket)
-                                                .key(key)
-                                                .contentType(HttpMimeType.JSON.mime())
-                                                .expires(Instant.now().plus(expiry))
-                                                .build();
-                                var res = storage.putObject(req, RequestBody.fromString(str));
-                                var sc = res.sdkHttpResponse().statusCode();
-                                if (!HttpStatusCodeIdentifier.isSuccessCode(sc)) {
-                                    throw new CompletionException(
-                                            String.format("Bad S3 report storage response: %d", sc),
-                                            null);
-                                }
+                                str = mapper.writeValueAsString(map);
                             } catch (JsonProcessingException jpe) {
-                                throw new CompletionException(jpe);
+                                return Uni.createFrom().failure(new CompletionException(jpe));
                             }
+                            var req =
+                                    PutObjectRequest.builder()
+                                            .bucket(bucket)
+                                            .key(key)
+                                            .contentType(HttpMimeType.JSON.mime())
+                                            .expires(Instant.now().plus(expiry))
+                                            .build();
+                            return storage.putObject(req, AsyncRequestBody.fromString(str))
+                                    .invoke(
+                                            res -> {
+                                                var sc = res.sdkHttpResponse().statusCode();
+                                                if (!HttpStatusCodeIdentifier.isSuccessCode(sc)) {
+                                                    throw new CompletionException(
+                                                            String.format(
+                                                                    "Bad S3 report storage"
+                                                                            + " response: %d",
+                                                                    sc),
+                                                            null);
+                                                }
+                                            });
                         });
     }
 
     private Uni<Map<String, AnalysisResult>> getStorage(String key) {
-        return Uni.createFrom()
-                .item(
-                        () -> {
-                            var req = GetObjectRequest.builder().bucket(bucket).key(key).build();
-                            try (var res = storage.getObject(req)) {
+        return storage.getObject(bucket, key)
+                .map(
+                        res -> {
+                            try {
                                 return mapper.readValue(
-                                        res, new TypeReference<Map<String, AnalysisResult>>() {});
+                                        res.asByteArrayUnsafe(),
+                                        new TypeReference<Map<String, AnalysisResult>>() {});
                             } catch (IOException ioe) {
                                 throw new CompletionException(ioe);
                             }
@@ -0,0 +1,201 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.cryostat.ConfigProperties;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Runs periodic rule archive jobs with at most {@link
+ * ConfigProperties#RULES_ARCHIVE_MAX_CONCURRENCY} in progress at a time. Quartz fires the jobs,
+ * which hand their work to this queue and return, so that archives waiting for a turn do not hold
+ * Quartz threads needed by other jobs. If a job fires again while its previous run is still
+ * queued or running then the new run is dropped, so that a slow archive never overlaps the next
+ * run of the same job.
+ *
+ * <p>Each run's queue time, from when Quartz was scheduled to fire it until it started, and lag,
+ * until it finished, are recorded as {@link ArchiveJobExecution} JFR events and summarized by
+ * {@link #stats()}.
+ */
+@ApplicationScoped
+public class ArchiveJobQueue {
+
+    // weight of the newest sample in the moving averages of queue time and lag
+    private static final double SMOOTHING = 0.2;
+
+    @Inject Logger logger;
+
+    @ConfigProperty(name = ConfigProperties.RULES_ARCHIVE_MAX_CONCURRENCY)
+    int maxConcurrency;
+
+    private ExecutorService workers;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    // the jobs which are queued or running, which are only released once their run finishes
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long lastQueueTimeMs;
+    private volatile long lastLagMs;
+    private volatile double meanQueueTimeMs;
+    private volatile double meanLagMs;
+
+    void onStart(@Observes StartupEvent evt) {
+        AtomicInteger count = new AtomicInteger();
+        workers =
+                Executors.newFixedThreadPool(
+                        Math.max(1, maxConcurrency),
+                        r -> {
+                            Thread t = new Thread(r, "rule-archiver-" + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+    }
+
+    void onStop(@Observes ShutdownEvent evt) {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queue an archive run. The run is executed within its own transaction.
+     *
+     * @param key identifies the job, so that a job is queued or running at most once at a time
+     * @param scheduledFireTime when Quartz was scheduled to fire the job
+     */
+    void submit(String key, Instant scheduledFireTime, Runnable archive) {
+        if (!inFlight.add(key)) {
+            logger.warnv(
+                    "Archive job {0} is still queued or running from a previous run, skipping",
+                    key);
+            return;
+        }
+        queued.add(key);
+        workers.execute(
+                () -> {
+                    queued.remove(key);
+                    running.incrementAndGet();
+                    ArchiveJobExecution evt = new ArchiveJobExecution(key);
+                    evt.begin();
+                    long queueTimeMs = millisSince(scheduledFireTime);
+                    evt.queueTime = queueTimeMs;
+                    try {
+                        execute(archive);
+                        completed.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        logger.errorv(e, "Archive job {0} failed", key);
+                    } finally {
+                        inFlight.remove(key);
+                        running.decrementAndGet();
+                        long lagMs = millisSince(scheduledFireTime);
+                        record(queueTimeMs, lagMs);
+                        evt.lag = lagMs;
+                        evt.end();
+                        if (evt.shouldCommit()) {
+                            evt.commit();
+                        }
+                    }
+                });
+    }
+
+    void execute(Runnable archive) {
+        QuarkusTransaction.requiringNew().run(archive);
+    }
+
+    Stats stats() {
+        return new Stats(
+                queued.size(),
+                running.get(),
+                completed.get(),
+                failed.get(),
+                lastQueueTimeMs,
+                meanQueueTimeMs,
+                lastLagMs,
+                meanLagMs);
+    }
+
+    private synchronized void record(long queueTimeMs, long lagMs) {
+        boolean first = completed.get() + failed.get() <= 1;
+        lastQueueTimeMs = queueTimeMs;
+        lastLagMs = lagMs;
+        meanQueueTimeMs =
+                first ? queueTimeMs : SMOOTHING * queueTimeMs + (1 - SMOOTHING) * meanQueueTimeMs;
+        meanLagMs = first ? lagMs : SMOOTHING * lagMs + (1 - SMOOTHING) * meanLagMs;
+    }
+
+    private static long millisSince(Instant instant) {
+        return Math.max(0, Duration.between(instant, Instant.now()).toMillis());
+    }
+
+    /**
+     * Health of the periodic archive jobs. Queue time runs from when a job was due to fire until
+     * it started archiving, and lag from when it was due until it finished. The means are moving
+     * averages weighted towards recent runs.
+     */
+    public record Stats(
+            int queued,
+            int running,
+            long completed,
+            long failed,
+            long lastQueueTimeMs,
+            double meanQueueTimeMs,
+            long lastLagMs,
+            double meanLagMs) {}
+
+    @Name("io.cryostat.rules.ArchiveJobQueue.ArchiveJobExecution")
+    @Label("Rule Archive Job Execution")
+    @Category("Cryostat")
+    @SuppressFBWarnings(value = "URF_UNREAD_FIELD")
+    public static class ArchiveJobExecution extends Event {
+
+        String job;
+
+        @Label("Queue Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long queueTime;
+
+        @Label("Lag")
+        @Timespan(Timespan.MILLISECONDS)
+        long lag;
+
+        ArchiveJobExecution(String job) {
+            this.job = job;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.ObjectStorage;
+import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.Recordings;
+import io.cryostat.recordings.Recordings.ArchivedRecording;
+import io.cryostat.rules.Rule.RuleEvent;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.Target.TargetDiscovery;
+
+import io.quarkus.vertx.ConsumeEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Tracks the archives each rule has made of each target, oldest first, so that a periodic archive
+ * job can prune the oldest beyond the rule's {@code preservedArchives} without listing the archive
+ * bucket each time. Each (rule, JVM ID) ring is seeded once from a listing of only that JVM's
+ * prefix, without fetching object tags, and is then maintained as archives are added, pruned, or
+ * deleted by any other means. Pruned archives are deleted in batched DeleteObjects requests.
+ *
+ * <p>The rings are only kept in memory, not in the database, since they can always be rebuilt
+ * from storage. They are rebuilt after a restart, after the rule changes, and after the target is
+ * lost and found again, each at the cost of one listing.
+ */
+@ApplicationScoped
+public class ArchiveRetention {
+
+    private static final Pattern RECORDING_FILENAME_PATTERN =
+            Pattern.compile(
+                    "([A-Za-z\\d\\.-]*)_([A-Za-z\\d-_]*)_([\\d]*T[\\d]*Z)(\\.[\\d]+)?(\\.jfr)?");
+
+    @Inject RecordingHelper recordingHelper;
+    @Inject ObjectStorage storage;
+    @Inject Logger logger;
+
+    @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_ARCHIVES)
+    String archiveBucket;
+
+    private final Map<RingKey, Deque<String>> rings = new ConcurrentHashMap<>();
+
+    @ConsumeEvent(Rule.RULE_ADDRESS)
+    void onRuleEvent(RuleEvent event) {
+        Long ruleId = event.rule().id;
+        if (ruleId == null) {
+            return;
+        }
+        rings.keySet().removeIf(k -> k.ruleId() == ruleId);
+    }
+
+    @ConsumeEvent(Target.TARGET_JVM_DISCOVERY)
+    void onTargetDiscovery(TargetDiscovery event) {
+        if (event.kind() != EventKind.LOST || event.jvmId() == null) {
+            return;
+        }
+        rings.keySet().removeIf(k -> Objects.equals(k.jvmId(), event.jvmId()));
+    }
+
+    @ConsumeEvent(Recordings.ARCHIVED_RECORDING_DELETED)
+    void onArchiveDeleted(ArchivedRecording recording) {
+        rings.forEach(
+                (key, ring) -> {
+                    if (Objects.equals(key.jvmId(), recording.jvmId())) {
+                        synchronized (ring) {
+                            ring.remove(recording.name());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Make room for one more archive of the target by the rule, deleting the oldest archives so
+     * that no more than {@code preservedArchives - 1} remain.
+     */
+    void prune(Rule rule, Target target) {
+        Deque<String> ring = ring(rule, target);
+        List<String> pruned = new ArrayList<>();
+        synchronized (ring) {
+            while (!ring.isEmpty() && ring.size() >= rule.preservedArchives) {
+                pruned.add(ring.removeFirst());
+            }
+        }
+        Set<String> failed;
+        try {
+            failed = recordingHelper.deleteArchivedRecordings(target.jvmId, pruned);
+        } catch (RuntimeException e) {
+            // none of them are known to be deleted. Deleting one which already has been is
+            // harmless, so keep them all to retry on the next run
+            restore(ring, pruned, Set.copyOf(pruned));
+            throw e;
+        }
+        restore(ring, pruned, failed);
+    }
+
+    // put the pruned archives which were not deleted back at the front of the ring, in order, so
+    // that they are retried on the next run
+    private void restore(Deque<String> ring, List<String> pruned, Set<String> failed) {
+        if (failed.isEmpty()) {
+            return;
+        }
+        synchronized (ring) {
+            for (int i = pruned.size() - 1; i >= 0; i--) {
+                if (failed.contains(pruned.get(i))) {
+                    ring.addFirst(pruned.get(i));
+                }
+            }
+        }
+    }
+
+    /** Record a new archive of the target by the rule. */
+    void added(Rule rule, Target target, String filename) {
+        Deque<String> ring = ring(rule, target);
+        synchronized (ring) {
+            ring.addLast(filename);
+        }
+    }
+
+    private Deque<String> ring(Rule rule, Target target) {
+        RingKey key = new RingKey(rule.id, target.jvmId);
+        Deque<String> ring = rings.get(key);
+        if (ring != null) {
+            return ring;
+        }
+        // seeded outside of the map so that the listing does not hold up other rings. If another
+        // run seeded this ring meanwhile then its ring is used, since it may already be updated
+        Deque<String> seeded = seed(rule, target);
+        ring = rings.putIfAbsent(key, seeded);
+        return ring != null ? ring : seeded;
+    }
+
+    private Deque<String> seed(Rule rule, Target target) {
+        Deque<String> ring = new ArrayDeque<>();
+        storage.await(
+                        storage.listObjects(archiveBucket, Optional.of(target.jvmId + "/"))
+                                .collect()
+                                .asList())
+                .stream()
+                .sorted((a, b) -> a.lastModified().compareTo(b.lastModified()))
+                .forEach(
+                        item -> {
+                            String[] parts = item.key().strip().split("/");
+                            if (parts.length < 2) {
+                                return;
+                            }
+                            String filename = parts[1];
+                            Matcher m = RECORDING_FILENAME_PATTERN.matcher(filename);
+                            if (m.matches()
+                                    && Objects.equals(m.group(2), rule.getRecordingName())) {
+                                ring.addLast(filename);
+                            }
+                        });
+        logger.debugv(
+                "Seeded archive retention for rule {0} on {1} with {2} archives",
+                rule.name, target.jvmId, ring.size());
+        return ring;
+    }
+
+    private record RingKey(long ruleId, String jvmId) {}
+}
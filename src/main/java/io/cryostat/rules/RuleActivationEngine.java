@@ -0,0 +1,191 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.Producers;
+import io.cryostat.targets.Target;
+import io.cryostat.ws.MessagingServer;
+import io.cryostat.ws.Notification;
+
+import io.vertx.mutiny.core.eventbus.EventBus;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Runs automated rule activations with bounded concurrency. Activations are grouped by target:
+ * every rule submitted for a target which has not yet started activating joins that target's
+ * pending activation, so several rules matching one target are activated together in a single
+ * pass by {@link RuleService#activate(List, Target)} rather than competing for its connection. At
+ * most {@link ConfigProperties#RULES_ACTIVATION_CONCURRENCY} targets are activated at a time, and a
+ * target is never activated twice concurrently.
+ *
+ * <p>Progress is reported by {@link #progress()} and by {@link #PROGRESS_CATEGORY} WebSocket
+ * notifications, rate limited to one per {@link #NOTIFICATION_INTERVAL}. The engine is considered
+ * ready once the activations submitted at startup have all finished.
+ */
+@ApplicationScoped
+public class RuleActivationEngine {
+
+    public static final String PROGRESS_CATEGORY = "RuleActivationProgress";
+    static final Duration NOTIFICATION_INTERVAL = Duration.ofSeconds(1);
+
+    @Inject Logger logger;
+    @Inject EventBus bus;
+    @Inject RuleService ruleService;
+
+    @Inject
+    @Named(Producers.BLOCKING_EXECUTOR)
+    ExecutorService executor;
+
+    @ConfigProperty(name = ConfigProperties.RULES_ACTIVATION_CONCURRENCY)
+    int concurrency;
+
+    // all guarded by this. Pending targets are dispatched in submission order
+    private final Map<Long, Activation> pending = new LinkedHashMap<>();
+    private final Set<Long> running = new HashSet<>();
+    private long completed;
+    private long failed;
+    private long activations;
+    private boolean startupSubmitted;
+    private boolean ready;
+    private long lastNotification;
+
+    /** Queue activation of the rule on the target. */
+    public synchronized void submit(Rule rule, Target target) {
+        pending.computeIfAbsent(target.id, id -> new Activation(target)).add(rule);
+        dispatch();
+    }
+
+    /**
+     * Mark that every activation due at startup has been submitted, so that the engine becomes
+     * ready once they have finished.
+     */
+    synchronized void startupSubmitted() {
+        startupSubmitted = true;
+        updateReady();
+        notifyProgress(true);
+    }
+
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    public synchronized Progress progress() {
+        return new Progress(pending.size(), running.size(), completed, failed, activations, ready);
+    }
+
+    // must hold the lock
+    private void dispatch() {
+        Iterator<Map.Entry<Long, Activation>> it = pending.entrySet().iterator();
+        while (running.size() < concurrency && it.hasNext()) {
+            Map.Entry<Long, Activation> entry = it.next();
+            if (running.contains(entry.getKey())) {
+                // already activating this target, so leave these rules queued behind it
+                continue;
+            }
+            it.remove();
+            running.add(entry.getKey());
+            Activation activation = entry.getValue();
+            executor.execute(() -> run(activation));
+        }
+    }
+
+    private void run(Activation activation) {
+        int count = 0;
+        try {
+            count = ruleService.activate(activation.rules, activation.target);
+        } catch (Exception e) {
+            logger.errorv(
+                    e, "Failed to activate rules on target {0}", activation.target.connectUrl);
+        }
+        boolean ok = count == activation.rules.size();
+        synchronized (this) {
+            running.remove(activation.target.id);
+            activations += count;
+            if (ok) {
+                completed++;
+            } else {
+                failed++;
+            }
+            dispatch();
+            updateReady();
+            notifyProgress(pending.isEmpty() && running.isEmpty());
+        }
+    }
+
+    // must hold the lock
+    private void updateReady() {
+        if (!ready && startupSubmitted && pending.isEmpty() && running.isEmpty()) {
+            ready = true;
+            logger.infov(
+                    "Startup rule activation finished: {0} targets activated, {1} failed",
+                    completed, failed);
+        }
+    }
+
+    // must hold the lock
+    private void notifyProgress(boolean force) {
+        long now = System.nanoTime();
+        if (!force && now - lastNotification < NOTIFICATION_INTERVAL.toNanos()) {
+            return;
+        }
+        lastNotification = now;
+        bus.publish(
+                MessagingServer.class.getName(), new Notification(PROGRESS_CATEGORY, progress()));
+    }
+
+    private static class Activation {
+        final Target target;
+        final List<Rule> rules = new ArrayList<>();
+        final Set<Long> ruleIds = new HashSet<>();
+
+        Activation(Target target) {
+            this.target = target;
+        }
+
+        void add(Rule rule) {
+            if (ruleIds.add(rule.id)) {
+                rules.add(rule);
+            }
+        }
+    }
+
+    /**
+     * Progress of rule activation, counted in targets. Each target may have several rules
+     * activated on it; {@code activations} counts those which succeeded.
+     */
+    public record Progress(
+            int pendingTargets,
+            int activeTargets,
+            long completedTargets,
+            long failedTargets,
+            long activations,
+            boolean ready) {}
+}
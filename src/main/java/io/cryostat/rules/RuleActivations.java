@@ -0,0 +1,44 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import io.cryostat.rules.RuleActivationEngine.Progress;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+
+@Path("/api/v3/rules")
+public class RuleActivations {
+
+    @Inject RuleActivationEngine engine;
+    @Inject ArchiveJobQueue archiveJobs;
+
+    @GET
+    @RolesAllowed("read")
+    @Path("/activation")
+    public Progress activation() {
+        return engine.progress();
+    }
+
+    @GET
+    @RolesAllowed("read")
+    @Path("/archival")
+    public ArchiveJobQueue.Stats archival() {
+        return archiveJobs.stats();
+    }
+}
@@ -17,6 +17,7 @@ package io.cryostat.rules;
 
 import java.time.Duration;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -43,12 +44,12 @@ import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.StartupEvent;
 import io.quarkus.vertx.ConsumeEvent;
 import io.smallrye.common.annotation.Blocking;
-import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
+import jdk.jfr.RecordingState;
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
@@ -71,6 +72,7 @@ public class RuleService {
     @Inject RecordingHelper recordingHelper;
     @Inject EntityManager entityManager;
     @Inject org.quartz.Scheduler quartz;
+    @Inject RuleActivationEngine activationEngine;
 
     @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
     Duration connectionFailedTimeout;
@@ -82,6 +84,7 @@ public class RuleService {
     void onStart(@Observes StartupEvent ev) {
         logger.trace("RuleService started");
         Rule.<Rule>streamAll().filter(r -> r.enabled).forEach(this::applyRuleToMatchingTargets);
+        activationEngine.startupSubmitted();
     }
 
     @ConsumeEvent(value = Target.TARGET_JVM_DISCOVERY, blocking = true)
@@ -160,41 +163,89 @@ public class RuleService {
         }
     }
 
-    void activate(Rule rule, Target target) throws Exception {
-        Target attachedTarget = Target.<Target>find("id", target.id).singleResult();
-        recordingHelper
-                .getActiveRecording(
-                        attachedTarget, r -> Objects.equals(r.name, rule.getRecordingName()))
-                .ifPresent(
-                        rec -> {
-                            try {
-                                recordingHelper
-                                        .stopRecording(rec)
-                                        .await()
-                                        .atMost(connectionFailedTimeout);
-                            } catch (Exception e) {
-                                logger.warn(e);
-                            }
-                        });
+    /**
+     * Activate every one of the rules on the target in a single pass. The target's recordings are
+     * synchronized once up front and each distinct event specifier's template is looked up once.
+     * Then each rule's previous recording is stopped and replaced in turn, all over the target's
+     * one cached connection. Each rule is activated in its own transaction, so that a rule which
+     * fails does not roll back the recordings of the rules activated before it, and no transaction
+     * is held open across the whole pass.
+     *
+     * @return the number of rules successfully activated
+     */
+    int activate(List<Rule> rules, Target target) {
+        // the IDs of the target's recordings by name, as of the synchronization
+        Map<String, Long> existing =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    Map<String, Long> ids = new HashMap<>();
+                                    recordingHelper
+                                            .listActiveRecordings(target)
+                                            .forEach(r -> ids.putIfAbsent(r.name, r.id));
+                                    return ids;
+                                });
+        Map<String, Template> templates = new HashMap<>();
 
-        Pair<String, TemplateType> pair = recordingHelper.parseEventSpecifier(rule.eventSpecifier);
-        Template template =
-                recordingHelper.getPreferredTemplate(target, pair.getKey(), pair.getValue());
+        int activated = 0;
+        for (Rule rule : rules) {
+            try {
+                Template template =
+                        templates.computeIfAbsent(
+                                rule.eventSpecifier,
+                                spec -> {
+                                    Pair<String, TemplateType> pair =
+                                            recordingHelper.parseEventSpecifier(spec);
+                                    return recordingHelper.getPreferredTemplate(
+                                            target, pair.getKey(), pair.getValue());
+                                });
+                Long previousId = existing.get(rule.getRecordingName());
 
-        ActiveRecording recording =
-                recordingHelper
-                        .startRecording(
-                                attachedTarget,
-                                RecordingReplace.STOPPED,
-                                template,
-                                createRecordingOptions(rule),
-                                Map.of("rule", rule.name))
-                        .await()
-                        .atMost(Duration.ofSeconds(10));
+                ActiveRecording recording =
+                        QuarkusTransaction.requiringNew()
+                                .call(() -> activate(rule, target, template, previousId));
 
-        if (rule.isArchiver()) {
-            scheduleArchival(rule, attachedTarget, recording);
+                if (rule.isArchiver()) {
+                    scheduleArchival(rule, target, recording);
+                }
+                activated++;
+            } catch (Exception e) {
+                logger.errorv(
+                        e,
+                        "Failed to activate rule {0} on target {1}",
+                        rule.name,
+                        target.connectUrl);
+            }
         }
+        return activated;
+    }
+
+    private ActiveRecording activate(Rule rule, Target target, Template template, Long previousId)
+            throws Exception {
+        Target attachedTarget = Target.<Target>find("id", target.id).singleResult();
+        Optional<ActiveRecording> previous =
+                previousId == null
+                        ? Optional.empty()
+                        : ActiveRecording.<ActiveRecording>findByIdOptional(previousId);
+        if (previous.isPresent() && previous.get().state != RecordingState.STOPPED) {
+            previous =
+                    Optional.of(
+                            recordingHelper
+                                    .stopRecording(previous.get())
+                                    .await()
+                                    .atMost(connectionFailedTimeout));
+        }
+
+        return recordingHelper
+                .startRecording(
+                        attachedTarget,
+                        RecordingReplace.STOPPED,
+                        template,
+                        createRecordingOptions(rule),
+                        Map.of("rule", rule.name),
+                        previous)
+                .await()
+                .atMost(Duration.ofSeconds(10));
     }
 
     private RecordingOptions createRecordingOptions(Rule rule) {
@@ -213,18 +264,7 @@ public class RuleService {
                 if (!evaluator.applies(rule.matchExpression, target)) {
                     continue;
                 }
-                Infrastructure.getDefaultWorkerPool()
-                        .submit(
-                                () ->
-                                        QuarkusTransaction.joiningExisting()
-                                                .run(
-                                                        () -> {
-                                                            try {
-                                                                activate(rule, target);
-                                                            } catch (Exception e) {
-                                                                logger.error(e);
-                                                            }
-                                                        }));
+                activationEngine.submit(rule, target);
             } catch (ScriptException se) {
                 logger.error(se);
             }
@@ -234,21 +274,17 @@ public class RuleService {
     void applyRuleToMatchingTargets(Rule rule) {
         var targets = evaluator.getMatchedTargets(rule.matchExpression);
         for (var target : targets) {
-            Infrastructure.getDefaultWorkerPool()
-                    .submit(
-                            () ->
-                                    QuarkusTransaction.joiningExisting()
-                                            .run(
-                                                    () -> {
-                                                        try {
-                                                            activate(rule, target);
-                                                        } catch (Exception e) {
-                                                            logger.error(e);
-                                                        }
-                                                    }));
+            activationEngine.submit(rule, target);
         }
     }
 
+    // targets matched at the same time would otherwise all archive in the same second. Each target
+    // is offset within the period, deterministically, so that its archives stay evenly spaced
+    // across restarts and rule updates
+    static long archivalOffsetMs(String ruleName, String jvmId, int archivalPeriodSeconds) {
+        return Math.floorMod(Objects.hash(ruleName, jvmId), archivalPeriodSeconds * 1000L);
+    }
+
     private void scheduleArchival(Rule rule, Target target, ActiveRecording recording) {
         JobDetail jobDetail =
                 JobBuilder.newJob(ScheduledArchiveJob.class)
@@ -264,6 +300,7 @@ public class RuleService {
         if (initialDelay <= 0) {
             initialDelay = archivalPeriodSeconds;
         }
+        long jitterMs = archivalOffsetMs(rule.name, target.jvmId, archivalPeriodSeconds);
 
         Map<String, Object> data = jobDetail.getJobDataMap();
         data.put("rule", rule.id);
@@ -279,7 +316,11 @@ public class RuleService {
                                         .withIntervalInSeconds(archivalPeriodSeconds)
                                         .repeatForever()
                                         .withMisfireHandlingInstructionNowWithExistingCount())
-                        .startAt(new Date(System.currentTimeMillis() + initialDelay * 1000))
+                        .startAt(
+                                new Date(
+                                        System.currentTimeMillis()
+                                                + initialDelay * 1000L
+                                                + jitterMs))
                         .build();
         try {
             quartz.scheduleJob(jobDetail, trigger);
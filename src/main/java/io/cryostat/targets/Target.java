@@ -34,6 +34,7 @@ import io.cryostat.ConfigProperties;
 import io.cryostat.core.net.JFRConnection;
 import io.cryostat.credentials.Credential;
 import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.discovery.DiscoveryTreeSnapshot;
 import io.cryostat.expressions.MatchExpressionEvaluator;
 import io.cryostat.libcryostat.JvmIdentifier;
 import io.cryostat.recordings.ActiveRecording;
@@ -49,6 +50,9 @@ import io.quarkus.vertx.ConsumeEvent;
 import io.smallrye.common.annotation.Blocking;
 import io.vertx.mutiny.core.eventbus.EventBus;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
@@ -63,11 +67,13 @@ import jakarta.persistence.PostPersist;
 import jakarta.persistence.PostRemove;
 import jakarta.persistence.PostUpdate;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Version;
 import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import org.jboss.logging.Logger;
@@ -112,6 +118,13 @@ public class Target extends PanacheEntity {
     @JsonIgnore
     public DiscoveryNode discoveryNode;
 
+    // incremented by each update, so that results derived from one version of the target's
+    // contents can be told apart from those of another without comparing the contents themselves
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    public long version;
+
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     public boolean isAgent() {
         return AgentConnection.isAgentConnection(connectUrl);
@@ -122,6 +135,26 @@ public class Target extends PanacheEntity {
         return this.connectUrl.toString();
     }
 
+    /**
+     * A new, unpersisted Target with the same identity and metadata as this one, but none of its
+     * recordings or discovery tree placement. Discovery tree writes may be run more than once if
+     * their batch is rolled back, so a write persists its own copy of a Target which was built
+     * outside of it, rather than an instance which a failed attempt has already assigned an ID.
+     */
+    public Target copy() {
+        Target copy = new Target();
+        copy.connectUrl = connectUrl;
+        copy.alias = alias;
+        copy.jvmId = jvmId;
+        copy.labels = new HashMap<>(labels);
+        copy.annotations =
+                new Annotations(
+                        new HashMap<>(annotations.platform()),
+                        new HashMap<>(annotations.cryostat()));
+        copy.activeRecordings = new ArrayList<>();
+        return copy;
+    }
+
     public static Target getTargetById(long targetId) {
         return Target.find("id", targetId).singleResult();
     }
@@ -295,6 +328,8 @@ public class Target extends PanacheEntity {
         @Inject TargetConnectionManager connectionManager;
         @Inject RecordingHelper recordingHelper;
         @Inject MatchExpressionEvaluator matchExpressionEvaluator;
+        @Inject Event<DiscoveryTreeSnapshot.Changed> treeChanged;
+        @Inject Event<TargetDiscovery> discoveries;
 
         @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
         Duration timeout;
@@ -324,7 +359,10 @@ public class Target extends PanacheEntity {
         @Transactional
         @Blocking
         void updateCredential(Credential credential) {
+            var candidates =
+                    matchExpressionEvaluator.getCandidateTargetIds(credential.matchExpression);
             Target.<Target>stream("#Target.unconnected")
+                    .filter(t -> candidates.map(ids -> ids.contains(t.id)).orElse(true))
                     .forEach(
                             t -> {
                                 try {
@@ -394,13 +432,19 @@ public class Target extends PanacheEntity {
         }
 
         private void notify(EventKind eventKind, Target target) {
+            // targets are serialized as part of their discovery nodes
+            treeChanged.fire(DiscoveryTreeSnapshot.Changed.INSTANCE);
+            discoveries.fire(new TargetDiscovery(eventKind, target, target.jvmId));
+        }
+
+        // consumers act on these by reading the target back or connecting to it, so only tell
+        // them once the write is visible, and never about a write which was rolled back or which
+        // will be retried
+        void publish(@Observes(during = TransactionPhase.AFTER_SUCCESS) TargetDiscovery event) {
             bus.publish(
                     MessagingServer.class.getName(),
-                    new Notification(
-                            TARGET_JVM_DISCOVERY,
-                            new TargetDiscoveryEvent(
-                                    new TargetDiscovery(eventKind, target, target.jvmId))));
-            bus.publish(TARGET_JVM_DISCOVERY, new TargetDiscovery(eventKind, target, target.jvmId));
+                    new Notification(TARGET_JVM_DISCOVERY, new TargetDiscoveryEvent(event)));
+            bus.publish(TARGET_JVM_DISCOVERY, event);
         }
 
         public record TargetDiscoveryEvent(TargetDiscovery event) {
@@ -23,10 +23,12 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 
 import javax.management.InstanceNotFoundException;
@@ -37,9 +39,11 @@ import org.openjdk.jmc.flightrecorder.configuration.FlightRecorderException;
 import org.openjdk.jmc.rjmx.common.ConnectionException;
 
 import io.cryostat.ConfigProperties;
+import io.cryostat.Producers;
 import io.cryostat.core.net.JFRConnection;
 import io.cryostat.core.net.JFRConnectionToolkit;
 import io.cryostat.credentials.Credential;
+import io.cryostat.credentials.CredentialMaterialCache;
 import io.cryostat.credentials.CredentialsFinder;
 import io.cryostat.expressions.MatchExpressionEvaluator;
 import io.cryostat.recordings.RecordingHelper.SnapshotCreationException;
@@ -52,13 +56,13 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.Scheduler;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.vertx.ConsumeEvent;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.unchecked.Unchecked;
 import io.vertx.ext.web.handler.HttpException;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jdk.jfr.Category;
 import jdk.jfr.Event;
 import jdk.jfr.FlightRecorder;
@@ -75,6 +79,7 @@ public class TargetConnectionManager {
     private final JFRConnectionToolkit jfrConnectionToolkit;
     private final MatchExpressionEvaluator matchExpressionEvaluator;
     private final CredentialsFinder credentialsFinder;
+    private final CredentialMaterialCache credentialMaterialCache;
     private final AgentConnection.Factory agentConnectionFactory;
     private final Logger logger;
 
@@ -95,6 +100,7 @@ public class TargetConnectionManager {
             JFRConnectionToolkit jfrConnectionToolkit,
             MatchExpressionEvaluator matchExpressionEvaluator,
             CredentialsFinder credentialsFinder,
+            CredentialMaterialCache credentialMaterialCache,
             AgentConnection.Factory agentConnectionFactory,
             @ConfigProperty(name = ConfigProperties.CONNECTIONS_MAX_OPEN) int maxOpen,
             @ConfigProperty(name = ConfigProperties.CONNECTIONS_TTL) Duration ttl,
@@ -102,13 +108,14 @@ public class TargetConnectionManager {
                     Duration failedBackoff,
             @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
                     Duration failedTimeout,
-            Executor executor,
+            @Named(Producers.CONNECTION_EXECUTOR) ExecutorService executor,
             Logger logger) {
         FlightRecorder.register(TargetConnectionOpened.class);
         FlightRecorder.register(TargetConnectionClosed.class);
         this.jfrConnectionToolkit = jfrConnectionToolkit;
         this.matchExpressionEvaluator = matchExpressionEvaluator;
         this.credentialsFinder = credentialsFinder;
+        this.credentialMaterialCache = credentialMaterialCache;
         this.agentConnectionFactory = agentConnectionFactory;
         this.failedBackoff = failedBackoff;
         this.failedTimeout = failedTimeout;
@@ -171,15 +178,15 @@ public class TargetConnectionManager {
     }
 
     void handleCredentialChange(Credential credential) {
-        for (var entry : connections.asMap().entrySet()) {
-            URI key = entry.getKey();
-            var target = Target.find("connectUrl", key).<Target>firstResultOptional();
-            if (target.isEmpty()) {
-                continue;
-            }
+        Set<URI> urls = Set.copyOf(connections.asMap().keySet());
+        if (urls.isEmpty()) {
+            return;
+        }
+        // load every connected target at once rather than querying for each connection
+        for (Target target : Target.<Target>list("connectUrl in ?1", urls)) {
             try {
-                if (matchExpressionEvaluator.applies(credential.matchExpression, target.get())) {
-                    connections.synchronous().invalidate(key);
+                if (matchExpressionEvaluator.applies(credential.matchExpression, target)) {
+                    connections.synchronous().invalidate(target.connectUrl);
                 }
             } catch (ScriptException se) {
                 logger.warn(se);
@@ -299,13 +306,8 @@ public class TargetConnectionManager {
     }
 
     JFRConnection connect(URI connectUrl) throws Exception {
-        return QuarkusTransaction.joiningExisting()
-                .call(
-                        () -> {
-                            var credentials =
-                                    credentialsFinder.getCredentialsForConnectUrl(connectUrl);
-                            return connect(connectUrl, credentials);
-                        });
+        // the credentials finder and material cache only open a transaction on a cache miss
+        return connect(connectUrl, credentialsFinder.getCredentialsForConnectUrl(connectUrl));
     }
 
     JFRConnection connect(URI connectUrl, Optional<Credential> credentials) throws Exception {
@@ -324,10 +326,17 @@ public class TargetConnectionManager {
             return jfrConnectionToolkit.connect(
                     new JMXServiceURL(connectUrl.toString()),
                     credentials
+                            .flatMap(credentialMaterialCache::get)
                             .map(
-                                    c ->
-                                            new io.cryostat.libcryostat.net.Credentials(
-                                                    c.username, c.password))
+                                    m -> {
+                                        try {
+                                            return new io.cryostat.libcryostat.net.Credentials(
+                                                    new String(m.username()),
+                                                    new String(m.password()));
+                                        } finally {
+                                            m.clear();
+                                        }
+                                    })
                             .orElse(null),
                     Collections.singletonList(
                             () -> connections.synchronous().invalidate(connectUrl)));
@@ -22,13 +22,16 @@ import java.util.Optional;
 
 import io.cryostat.resources.GrafanaResource;
 import io.cryostat.resources.JFRDatasourceResource;
+import io.cryostat.rules.RuleActivationEngine;
 
+import io.quarkus.test.InjectMock;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.common.http.TestHTTPEndpoint;
 import io.quarkus.test.junit.QuarkusTest;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
 @QuarkusTest
 @QuarkusTestResource(GrafanaResource.class)
@@ -54,6 +57,8 @@ public class HealthTest {
     @ConfigProperty(name = ConfigProperties.GRAFANA_DATASOURCE_URL)
     Optional<String> datasourceURL;
 
+    @InjectMock RuleActivationEngine ruleActivationEngine;
+
     @Test
     public void testHealth() {
         when().get("/health")
@@ -74,6 +79,18 @@ public class HealthTest {
         when().get("/health/liveness").then().statusCode(204);
     }
 
+    @Test
+    public void testHealthReadiness() {
+        Mockito.when(ruleActivationEngine.isReady()).thenReturn(true);
+        when().get("/health/readiness").then().statusCode(204);
+    }
+
+    @Test
+    public void testHealthReadinessWhileRulesActivate() {
+        Mockito.when(ruleActivationEngine.isReady()).thenReturn(false);
+        when().get("/health/readiness").then().statusCode(503);
+    }
+
     @Test
     public void testGrafanaDashboardUrl() {
         when().get("/api/v1/grafana_dashboard_url")
@@ -0,0 +1,125 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import io.smallrye.mutiny.Uni;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class ObjectStorageTest {
+
+    S3AsyncClient client;
+    ObjectStorage storage;
+
+    @BeforeEach
+    void setup() {
+        client = mock(S3AsyncClient.class);
+        storage = new ObjectStorage();
+        storage.storage = client;
+        storage.maxConcurrency = 2;
+        storage.requestTimeout = Duration.ofSeconds(5);
+        storage.transferTimeout = Duration.ofSeconds(5);
+    }
+
+    @Test
+    void testListObjectsFollowsContinuationTokens() {
+        when(client.listObjectsV2(any(ListObjectsV2Request.class)))
+                .thenReturn(
+                        CompletableFuture.completedFuture(page(true, "next", "a", "b")),
+                        CompletableFuture.completedFuture(page(false, null, "c")));
+
+        List<String> keys =
+                storage.await(storage.listObjects("bucket").map(S3Object::key).collect().asList());
+
+        MatcherAssert.assertThat(keys, Matchers.contains("a", "b", "c"));
+        ArgumentCaptor<ListObjectsV2Request> captor =
+                ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(client, times(2)).listObjectsV2(captor.capture());
+        MatcherAssert.assertThat(
+                captor.getAllValues().get(0).continuationToken(), Matchers.nullValue());
+        MatcherAssert.assertThat(
+                captor.getAllValues().get(1).continuationToken(), Matchers.equalTo("next"));
+    }
+
+    @Test
+    void testMapConcurrentlyCapsInFlightOperations() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        var result =
+                storage.mapConcurrently(
+                                IntStream.range(0, 6).boxed().toList(),
+                                i ->
+                                        Uni.createFrom()
+                                                .completionStage(
+                                                        () ->
+                                                                start(
+                                                                        inFlight,
+                                                                        maxInFlight,
+                                                                        futures)))
+                        .subscribeAsCompletionStage();
+
+        // complete operations one at a time, in the order they were started
+        for (int i = 0; i < 6; i++) {
+            MatcherAssert.assertThat(futures.size(), Matchers.greaterThan(i));
+            futures.get(i).complete(i * 10);
+        }
+
+        MatcherAssert.assertThat(maxInFlight.get(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(
+                result.toCompletableFuture().join(), Matchers.contains(0, 10, 20, 30, 40, 50));
+    }
+
+    private static CompletableFuture<Integer> start(
+            AtomicInteger inFlight,
+            AtomicInteger maxInFlight,
+            List<CompletableFuture<Integer>> futures) {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        var f = new CompletableFuture<Integer>();
+        futures.add(f);
+        return f.whenComplete((v, t) -> inFlight.decrementAndGet());
+    }
+
+    private static ListObjectsV2Response page(boolean truncated, String token, String... keys) {
+        return ListObjectsV2Response.builder()
+                .isTruncated(truncated)
+                .nextContinuationToken(token)
+                .contents(
+                        List.of(keys).stream().map(k -> S3Object.builder().key(k).build()).toList())
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.credentials;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.expressions.MatchExpression;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.core.eventbus.EventBus;
+import io.vertx.mutiny.core.eventbus.MessageConsumer;
+import jakarta.inject.Inject;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class CredentialListenerTest {
+
+    static final long TIMEOUT_MS = 5_000;
+
+    @Inject EventBus bus;
+
+    // the usernames of the credentials announced as stored
+    Set<String> stored;
+    MessageConsumer<Credential> consumer;
+
+    @BeforeEach
+    void setup() {
+        stored = ConcurrentHashMap.newKeySet();
+        consumer =
+                bus.<Credential>consumer(Credential.CREDENTIALS_STORED)
+                        .handler(msg -> stored.add(msg.body().username));
+    }
+
+    @AfterEach
+    void teardown() {
+        consumer.unregisterAndAwait();
+    }
+
+    @Test
+    public void testCommittedCredentialIsAnnounced() throws Exception {
+        String username = UUID.randomUUID().toString();
+        long id = QuarkusTransaction.requiringNew().call(() -> persist(username).id);
+        try {
+            awaitStored(username);
+            MatcherAssert.assertThat(stored, Matchers.hasItem(username));
+        } finally {
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () ->
+                                    Credential.<Credential>findByIdOptional(id)
+                                            .ifPresent(c -> c.delete()));
+        }
+    }
+
+    @Test
+    public void testRolledBackCredentialIsNotAnnounced() throws Exception {
+        String username = UUID.randomUUID().toString();
+        QuarkusTransaction.requiringNew()
+                .run(
+                        () -> {
+                            persist(username);
+                            QuarkusTransaction.setRollbackOnly();
+                        });
+
+        // a committed credential persisted afterwards is announced, so by then the rolled back
+        // one would have been too
+        String committed = UUID.randomUUID().toString();
+        long id = QuarkusTransaction.requiringNew().call(() -> persist(committed).id);
+        try {
+            awaitStored(committed);
+            MatcherAssert.assertThat(stored, Matchers.not(Matchers.hasItem(username)));
+        } finally {
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () ->
+                                    Credential.<Credential>findByIdOptional(id)
+                                            .ifPresent(c -> c.delete()));
+        }
+    }
+
+    private static Credential persist(String username) {
+        Credential credential = new Credential();
+        credential.matchExpression = new MatchExpression("false");
+        credential.username = username;
+        credential.password = "pass";
+        credential.persist();
+        // flush so that the lifecycle callbacks run within this transaction
+        Credential.flush();
+        return credential;
+    }
+
+    private void awaitStored(String username) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+        while (!stored.contains(username) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
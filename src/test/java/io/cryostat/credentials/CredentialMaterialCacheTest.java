@@ -0,0 +1,96 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.credentials;
+
+import java.time.Duration;
+
+import io.cryostat.credentials.CredentialMaterialCache.Material;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CredentialMaterialCacheTest {
+
+    CredentialMaterialCache cache;
+
+    @BeforeEach
+    void setup() {
+        cache =
+                new CredentialMaterialCache(
+                        Duration.ofMinutes(5),
+                        true,
+                        Logger.getLogger(CredentialMaterialCache.class));
+    }
+
+    @Test
+    void testEachCallerGetsItsOwnCopy() {
+        Credential credential = credential(1);
+
+        Material first = cache.get(credential).orElseThrow();
+        Material second = cache.get(credential).orElseThrow();
+
+        MatcherAssert.assertThat(
+                second.username(), Matchers.not(Matchers.sameInstance(first.username())));
+        MatcherAssert.assertThat(
+                second.password(), Matchers.not(Matchers.sameInstance(first.password())));
+    }
+
+    @Test
+    void testClearingCopyDoesNotAffectCache() {
+        Credential credential = credential(1);
+
+        cache.get(credential).orElseThrow().clear();
+
+        Material material = cache.get(credential).orElseThrow();
+        MatcherAssert.assertThat(new String(material.username()), Matchers.equalTo("user"));
+        MatcherAssert.assertThat(new String(material.password()), Matchers.equalTo("pass"));
+    }
+
+    @Test
+    void testEvictionDoesNotOverwriteMaterialHandedOut() {
+        Credential credential = credential(1);
+        Material material = cache.get(credential).orElseThrow();
+
+        cache.onCredentialsDeleted(credential);
+
+        MatcherAssert.assertThat(new String(material.username()), Matchers.equalTo("user"));
+        MatcherAssert.assertThat(new String(material.password()), Matchers.equalTo("pass"));
+    }
+
+    @Test
+    void testUpdatedCredentialIsLoadedAgain() {
+        Credential credential = credential(1);
+        cache.get(credential).orElseThrow();
+
+        credential.password = "changed";
+        cache.onCredentialsUpdated(credential);
+
+        MatcherAssert.assertThat(
+                new String(cache.get(credential).orElseThrow().password()),
+                Matchers.equalTo("changed"));
+    }
+
+    private static Credential credential(long id) {
+        Credential credential = new Credential();
+        credential.id = id;
+        credential.username = "user";
+        credential.password = "pass";
+        return credential;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.credentials;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import io.cryostat.expressions.MatchExpression;
+import io.cryostat.expressions.MatchExpressionEvaluator;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.Target.TargetDiscovery;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CredentialsFinderTest {
+
+    CredentialsFinder finder;
+    MatchExpressionEvaluator evaluator;
+    // the IDs of the targets each expression matches, by expression script
+    Map<String, Set<Long>> rules;
+    List<Target> targets;
+
+    @BeforeEach
+    void setup() throws Exception {
+        rules = new HashMap<>();
+        targets = List.of(target(10), target(11), target(12));
+        evaluator = mock(MatchExpressionEvaluator.class);
+        when(evaluator.applies(any(), any()))
+                .thenAnswer(i -> matches(i.getArgument(0), i.getArgument(1)));
+
+        CredentialsFinder instance = new CredentialsFinder();
+        instance.expressionEvaluator = evaluator;
+        instance.logger = Logger.getLogger(CredentialsFinder.class);
+        finder = spy(instance);
+        doReturn(Map.of()).when(finder).loadAll();
+        // the bulk pass over the targets a changed credential matches reads them from the
+        // database
+        doAnswer(
+                        i -> {
+                            MatchExpression expression = i.getArgument(0);
+                            Consumer<Long> action = i.getArgument(1);
+                            targets.stream()
+                                    .filter(t -> matches(expression, t))
+                                    .forEach(t -> action.accept(t.id));
+                            return null;
+                        })
+                .when(finder)
+                .forEachMatchingTarget(any(), any());
+    }
+
+    @Test
+    void testLowestIdWins() {
+        finder.onCredentialsStored(credential(2, 10, 11));
+        finder.onCredentialsStored(credential(1, 10));
+
+        MatcherAssert.assertThat(resolve(10), Matchers.equalTo(Optional.of(1L)));
+        MatcherAssert.assertThat(resolve(11), Matchers.equalTo(Optional.of(2L)));
+        MatcherAssert.assertThat(resolve(12), Matchers.equalTo(Optional.empty()));
+    }
+
+    @Test
+    void testLowerIdStoredLaterReplacesResolvedAssignment() throws Exception {
+        finder.onCredentialsStored(credential(2, 10));
+        MatcherAssert.assertThat(resolve(10), Matchers.equalTo(Optional.of(2L)));
+        clearInvocations(evaluator);
+
+        finder.onCredentialsStored(credential(1, 10));
+
+        MatcherAssert.assertThat(resolve(10), Matchers.equalTo(Optional.of(1L)));
+        verify(evaluator, never()).applies(any(), any());
+    }
+
+    @Test
+    void testDeletionOnlyResolvesAffectedTargetsAgain() throws Exception {
+        finder.onCredentialsStored(credential(1, 10));
+        finder.onCredentialsStored(credential(2, 10, 11));
+        resolve(10);
+        resolve(11);
+        clearInvocations(evaluator);
+
+        finder.onCredentialsDeleted(credential(1, 10));
+
+        MatcherAssert.assertThat(resolve(10), Matchers.equalTo(Optional.of(2L)));
+        MatcherAssert.assertThat(resolve(11), Matchers.equalTo(Optional.of(2L)));
+        verify(evaluator, times(1)).applies(any(), argThat(t -> t.id == 10L));
+        verify(evaluator, never()).applies(any(), argThat(t -> t.id == 11L));
+    }
+
+    @Test
+    void testModifiedTargetIsResolvedAgain() throws Exception {
+        finder.onCredentialsStored(credential(1, 10, 11));
+        resolve(10);
+        resolve(11);
+        clearInvocations(evaluator);
+
+        rules.put(script(1), Set.of(11L));
+        finder.onMessage(new TargetDiscovery(EventKind.MODIFIED, target(10), null));
+
+        MatcherAssert.assertThat(resolve(10), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(resolve(11), Matchers.equalTo(Optional.of(1L)));
+        verify(evaluator, never()).applies(any(), argThat(t -> t.id == 11L));
+    }
+
+    @Test
+    void testResolutionRacingAChangeIsNotRecorded() throws Exception {
+        Credential credential = credential(1, 10);
+        finder.onCredentialsStored(credential);
+        AtomicBoolean raced = new AtomicBoolean();
+        when(evaluator.applies(any(), any()))
+                .thenAnswer(
+                        i -> {
+                            boolean result = matches(i.getArgument(0), i.getArgument(1));
+                            // the credential is deleted while the target is being resolved
+                            if (raced.compareAndSet(false, true)) {
+                                finder.onCredentialsDeleted(credential);
+                            }
+                            return result;
+                        });
+
+        MatcherAssert.assertThat(resolve(10), Matchers.equalTo(Optional.of(1L)));
+        MatcherAssert.assertThat(resolve(10), Matchers.equalTo(Optional.empty()));
+    }
+
+    @Test
+    void testResolvedCredentialCarriesNoMaterial() {
+        finder.onCredentialsStored(credential(1, 10));
+
+        Credential resolved = finder.getCredentialsForTarget(target(10)).orElseThrow();
+
+        MatcherAssert.assertThat(resolved.id, Matchers.equalTo(1L));
+        MatcherAssert.assertThat(resolved.username, Matchers.nullValue());
+        MatcherAssert.assertThat(resolved.password, Matchers.nullValue());
+    }
+
+    private Optional<Long> resolve(long targetId) {
+        return finder.getCredentialsForTarget(target(targetId)).map(c -> c.id);
+    }
+
+    private boolean matches(MatchExpression expression, Target target) {
+        return rules.getOrDefault(expression.script, Set.of()).contains(target.id);
+    }
+
+    private Credential credential(long id, long... targetIds) {
+        rules.put(script(id), LongStream.of(targetIds).boxed().collect(Collectors.toSet()));
+        MatchExpression expression = new MatchExpression(script(id));
+        expression.id = id;
+        Credential credential = new Credential();
+        credential.id = id;
+        credential.matchExpression = expression;
+        credential.username = "user";
+        credential.password = "pass";
+        return credential;
+    }
+
+    private static String script(long credentialId) {
+        return String.format("credential%d", credentialId);
+    }
+
+    private static Target target(long id) {
+        Target target = new Target();
+        target.id = id;
+        target.connectUrl =
+                URI.create(String.format("service:jmx:rmi:///jndi/rmi://target%d:9091/jmxrmi", id));
+        target.alias = "target" + id;
+        return target;
+    }
+}
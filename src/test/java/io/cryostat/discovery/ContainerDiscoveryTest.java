@@ -0,0 +1,229 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.core.http.HttpClientResponse;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ContainerDiscoveryTest {
+
+    static final Duration POLL_PERIOD = Duration.ofSeconds(10);
+    static final Duration RECONCILE_PERIOD = Duration.ofMinutes(5);
+
+    ContainerDiscovery discovery;
+    Vertx vertx;
+
+    @BeforeEach
+    void setup() {
+        vertx = mock(Vertx.class);
+        DockerDiscovery instance = new DockerDiscovery();
+        instance.logger = Logger.getLogger(ContainerDiscovery.class);
+        instance.vertx = vertx;
+        // as configured by Quarkus
+        instance.mapper =
+                new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        instance.pollPeriod = POLL_PERIOD;
+        instance.reconcilePeriod = RECONCILE_PERIOD;
+        discovery = spy(instance);
+
+        // the listing and the stream connection talk to the container engine socket
+        doNothing().when(discovery).queryContainers();
+        doNothing().when(discovery).watchEvents();
+    }
+
+    @Test
+    void testEventBurstIsCoalescedIntoOneListing() {
+        Consumer<Buffer> stream = connect();
+
+        stream.accept(Buffer.buffer(event("stop") + event("die")));
+        stream.accept(Buffer.buffer(event("start")));
+
+        // the catch-up listing on connect absorbs the whole burst
+        List<Consumer<Long>> timers = timers(1);
+        verify(discovery, never()).queryContainers();
+
+        timers.get(0).accept(1L);
+        verify(discovery, times(1)).queryContainers();
+
+        // events after the coalesced listing has run schedule another one
+        stream.accept(Buffer.buffer(event("start")));
+        timers(2).get(1).accept(2L);
+        verify(discovery, times(2)).queryContainers();
+    }
+
+    @Test
+    void testEventSplitAcrossChunksIsParsed() {
+        Consumer<Buffer> stream = connect();
+        timers(1).get(0).accept(1L);
+
+        String evt = event("start");
+        stream.accept(Buffer.buffer(evt.substring(0, 10)));
+        timers(1);
+        stream.accept(Buffer.buffer(evt.substring(10)));
+        timers(2).get(1).accept(2L);
+
+        verify(discovery, times(2)).queryContainers();
+    }
+
+    @Test
+    void testLegacyStatusFieldIsRecognized() {
+        discovery.onContainerEvent(
+                Buffer.buffer("{\"Type\":\"container\",\"status\":\"die\",\"id\":\"abc\"}"));
+
+        timers(1);
+    }
+
+    @Test
+    void testIrrelevantAndMalformedEventsAreIgnored() {
+        discovery.onContainerEvent(Buffer.buffer(""));
+        discovery.onContainerEvent(Buffer.buffer("{\"Type\":\"container\",\"Action\":\"pause\"}"));
+        discovery.onContainerEvent(Buffer.buffer("{\"Type\":\"image\",\"Action\":\"start\"}"));
+        discovery.onContainerEvent(Buffer.buffer("{not json"));
+
+        verify(vertx, never()).setTimer(anyLong(), any());
+    }
+
+    @Test
+    void testPollingOnlyReconcilesWhileConnected() {
+        discovery.eventsConnected = true;
+        discovery.lastQuery = Instant.now();
+        discovery.onPollTimer();
+        verify(discovery, never()).queryContainers();
+
+        discovery.lastQuery = Instant.now().minus(RECONCILE_PERIOD);
+        discovery.onPollTimer();
+        verify(discovery, times(1)).queryContainers();
+    }
+
+    @Test
+    void testPollingEveryPeriodWhileDisconnected() {
+        discovery.eventsConnected = false;
+        discovery.lastQuery = Instant.now();
+        discovery.onPollTimer();
+        discovery.onPollTimer();
+
+        verify(discovery, times(2)).queryContainers();
+    }
+
+    @Test
+    void testStreamEndFallsBackToPollingAndReconnects() {
+        HttpClientResponse response = response(200);
+        discovery.onEventStreamResponse(response);
+        MatcherAssert.assertThat(discovery.eventsConnected, Matchers.is(true));
+
+        ArgumentCaptor<Runnable> end = ArgumentCaptor.forClass(Runnable.class);
+        verify(response).endHandler(end.capture());
+        end.getValue().run();
+
+        MatcherAssert.assertThat(discovery.eventsConnected, Matchers.is(false));
+        ArgumentCaptor<Consumer<Long>> reconnect = timerCaptor();
+        verify(vertx).setTimer(eq(POLL_PERIOD.toMillis()), reconnect.capture());
+        reconnect.getValue().accept(1L);
+        verify(discovery, times(1)).watchEvents();
+    }
+
+    @Test
+    void testStreamFailureFallsBackToPollingAndReconnects() {
+        HttpClientResponse response = response(200);
+        discovery.onEventStreamResponse(response);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<Throwable>> failure = ArgumentCaptor.forClass(Consumer.class);
+        verify(response).exceptionHandler(failure.capture());
+        failure.getValue().accept(new RuntimeException("connection reset"));
+
+        MatcherAssert.assertThat(discovery.eventsConnected, Matchers.is(false));
+        verify(vertx).setTimer(eq(POLL_PERIOD.toMillis()), any());
+    }
+
+    @Test
+    void testErrorResponseIsNotTreatedAsConnected() {
+        HttpClientResponse response = response(500);
+        discovery.onEventStreamResponse(response);
+
+        MatcherAssert.assertThat(discovery.eventsConnected, Matchers.is(false));
+        verify(response, never()).handler(any());
+        verify(vertx, times(1)).setTimer(eq(POLL_PERIOD.toMillis()), any());
+    }
+
+    @Test
+    void testNoReconnectAfterShutdown() {
+        discovery.eventsConnected = true;
+        discovery.stopped = true;
+        discovery.onEventStreamClosed(null);
+
+        MatcherAssert.assertThat(discovery.eventsConnected, Matchers.is(false));
+        verify(vertx, never()).setTimer(anyLong(), any());
+    }
+
+    // connect to the event stream and return the handler which the response body is fed to
+    private Consumer<Buffer> connect() {
+        HttpClientResponse response = response(200);
+        discovery.onEventStreamResponse(response);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<Buffer>> handler = ArgumentCaptor.forClass(Consumer.class);
+        verify(response).handler(handler.capture());
+        return handler.getValue();
+    }
+
+    private List<Consumer<Long>> timers(int expected) {
+        ArgumentCaptor<Consumer<Long>> captor = timerCaptor();
+        verify(vertx, times(expected)).setTimer(anyLong(), captor.capture());
+        return captor.getAllValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Consumer<Long>> timerCaptor() {
+        return ArgumentCaptor.forClass(Consumer.class);
+    }
+
+    private static HttpClientResponse response(int status) {
+        HttpClientResponse response = mock(HttpClientResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        return response;
+    }
+
+    private static String event(String action) {
+        return String.format(
+                "{\"Type\":\"container\",\"Action\":\"%s\",\"Actor\":{\"ID\":\"abc\"}}\n",
+                action);
+    }
+}
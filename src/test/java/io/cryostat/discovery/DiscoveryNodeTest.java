@@ -0,0 +1,155 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.net.URI;
+import java.util.List;
+
+import io.cryostat.targets.Target;
+import io.cryostat.targets.TargetConnectionManager;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.persistence.EntityManager;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class DiscoveryNodeTest {
+
+    @InjectMock TargetConnectionManager connectionManager;
+
+    @Test
+    @TestTransaction
+    public void testOwnerChainBuiltBottomUpIsFoundUnderNamespace() {
+        EntityManager em = DiscoveryNode.getEntityManager();
+        DiscoveryNode universe = DiscoveryNode.getUniverse();
+        DiscoveryNode realm = DiscoveryNode.environment("DiscoveryNodeTest", BaseNodeType.REALM);
+        adopt(universe, realm);
+        DiscoveryNode ns =
+                DiscoveryNode.environment("discoverynodetest", KubeDiscoveryNodeType.NAMESPACE);
+        adopt(realm, ns);
+        em.flush();
+
+        // the same sequence as the Kubernetes owner chain: the target is attached to its pod and
+        // written before the pod's owners are known, and each owner is only found afterwards
+        Target target = new Target();
+        target.connectUrl =
+                URI.create("service:jmx:rmi:///jndi/rmi://discoverynodetest:9091/jmxrmi");
+        target.alias = "discoverynodetest";
+        DiscoveryNode targetNode = DiscoveryNode.target(target, KubeDiscoveryNodeType.ENDPOINT);
+        target.discoveryNode = targetNode;
+        target.persist();
+
+        DiscoveryNode pod = DiscoveryNode.environment("pod", KubeDiscoveryNodeType.POD);
+        adopt(pod, targetNode);
+        em.flush();
+
+        DiscoveryNode rs = DiscoveryNode.environment("rs", KubeDiscoveryNodeType.REPLICASET);
+        adopt(rs, pod);
+        em.flush();
+
+        DiscoveryNode deployment =
+                DiscoveryNode.environment("deployment", KubeDiscoveryNodeType.DEPLOYMENT);
+        adopt(deployment, rs);
+        em.flush();
+
+        adopt(ns, deployment);
+        em.flush();
+        em.clear();
+
+        DiscoveryNode stored = DiscoveryNode.findById(targetNode.id);
+        MatcherAssert.assertThat(
+                stored.path,
+                Matchers.equalTo(
+                        String.format(
+                                "/%d/%d/%d/%d/%d/%d/",
+                                universe.id, realm.id, ns.id, deployment.id, rs.id, pod.id)));
+
+        for (DiscoveryNode root : List.of(realm, ns, deployment, rs, pod)) {
+            DiscoveryNode fresh = DiscoveryNode.findById(root.id);
+            MatcherAssert.assertThat(
+                    DiscoveryNode.findTargetsUnder(List.of(fresh)).stream()
+                            .map(n -> n.id)
+                            .toList(),
+                    Matchers.contains(targetNode.id));
+        }
+    }
+
+    @Test
+    @TestTransaction
+    public void testMovedSubtreeLeavesOldAncestor() {
+        EntityManager em = DiscoveryNode.getEntityManager();
+        DiscoveryNode universe = DiscoveryNode.getUniverse();
+        DiscoveryNode first = DiscoveryNode.environment("first", BaseNodeType.REALM);
+        adopt(universe, first);
+        DiscoveryNode second = DiscoveryNode.environment("second", BaseNodeType.REALM);
+        adopt(universe, second);
+        DiscoveryNode middle = DiscoveryNode.environment("middle", BaseNodeType.REALM);
+        adopt(first, middle);
+        DiscoveryNode leaf = DiscoveryNode.environment("leaf", BaseNodeType.REALM);
+        adopt(middle, leaf);
+        em.flush();
+
+        first.children.remove(middle);
+        adopt(second, middle);
+        em.flush();
+        em.clear();
+
+        DiscoveryNode stored = DiscoveryNode.findById(leaf.id);
+        MatcherAssert.assertThat(
+                stored.path,
+                Matchers.equalTo(String.format("/%d/%d/%d/", universe.id, second.id, middle.id)));
+    }
+
+    @Test
+    @TestTransaction
+    public void testNodePersistedBeforeItsParentGetsCompletePath() {
+        EntityManager em = DiscoveryNode.getEntityManager();
+        DiscoveryNode universe = DiscoveryNode.getUniverse();
+        DiscoveryNode realm = DiscoveryNode.environment("DiscoveryNodeTest", BaseNodeType.REALM);
+        adopt(universe, realm);
+        em.flush();
+
+        DiscoveryNode parent = DiscoveryNode.environment("parent", BaseNodeType.REALM);
+        DiscoveryNode child = DiscoveryNode.environment("child", BaseNodeType.REALM);
+        child.parent = parent;
+        parent.children.add(child);
+        // the child is persisted while its parent has no ID yet
+        child.persist();
+        parent.parent = realm;
+        realm.children.add(parent);
+        parent.persist();
+        em.flush();
+        em.clear();
+
+        DiscoveryNode stored = DiscoveryNode.findById(child.id);
+        MatcherAssert.assertThat(
+                stored.path,
+                Matchers.equalTo(String.format("/%d/%d/%d/", universe.id, realm.id, parent.id)));
+    }
+
+    private static void adopt(DiscoveryNode parent, DiscoveryNode child) {
+        if (!parent.children.contains(child)) {
+            parent.children.add(child);
+        }
+        child.parent = parent;
+        parent.persist();
+        child.persist();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import io.cryostat.targets.TargetConnectionManager;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class DiscoveryTest {
+
+    static final String PATH = "/api/v3/discovery";
+
+    @InjectMock TargetConnectionManager connectionManager;
+
+    @Test
+    public void testUnchangedTreeIsNotModified() {
+        String etag = when().get(PATH).then().statusCode(200).extract().header("ETag");
+        MatcherAssert.assertThat(etag, Matchers.not(Matchers.emptyOrNullString()));
+
+        given().header("If-None-Match", etag).when().get(PATH).then().statusCode(304);
+        given().header("If-None-Match", "\"stale\"")
+                .when()
+                .get(PATH)
+                .then()
+                .statusCode(200)
+                .header("ETag", etag);
+    }
+
+    @Test
+    public void testCommittedChangeReplacesSnapshot() throws Exception {
+        String before = when().get(PATH).then().statusCode(200).extract().header("ETag");
+
+        long id =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    DiscoveryNode universe = DiscoveryNode.getUniverse();
+                                    DiscoveryNode realm =
+                                            DiscoveryNode.environment(
+                                                    "DiscoveryTest", BaseNodeType.REALM);
+                                    realm.parent = universe;
+                                    universe.children.add(realm);
+                                    universe.persist();
+                                    return realm.id;
+                                });
+        try {
+            // the snapshot is rebuilt in the background after the commit
+            String after = awaitNewETag(before);
+            given().header("If-None-Match", before).when().get(PATH).then().statusCode(200);
+            given().header("If-None-Match", after).when().get(PATH).then().statusCode(304);
+            when().get(PATH).then().body("children.name", Matchers.hasItem("DiscoveryTest"));
+        } finally {
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () -> {
+                                DiscoveryNode realm = DiscoveryNode.findById(id);
+                                realm.parent.children.remove(realm);
+                                realm.delete();
+                            });
+        }
+    }
+
+    @Test
+    public void testRolledBackChangeKeepsSnapshot() throws Exception {
+        String before = when().get(PATH).then().statusCode(200).extract().header("ETag");
+
+        QuarkusTransaction.begin();
+        try {
+            DiscoveryNode universe = DiscoveryNode.getUniverse();
+            DiscoveryNode realm =
+                    DiscoveryNode.environment("DiscoveryTestRollback", BaseNodeType.REALM);
+            realm.parent = universe;
+            universe.children.add(realm);
+            universe.persist();
+            DiscoveryNode.getEntityManager().flush();
+        } finally {
+            QuarkusTransaction.rollback();
+        }
+
+        // give a mistakenly scheduled rebuild the chance to run before checking
+        Thread.sleep(500);
+        given().header("If-None-Match", before).when().get(PATH).then().statusCode(304);
+    }
+
+    private static String awaitNewETag(String previous) throws InterruptedException {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        while (true) {
+            String etag = when().get(PATH).then().statusCode(200).extract().header("ETag");
+            if (!previous.equals(etag) || Instant.now().isAfter(deadline)) {
+                MatcherAssert.assertThat(etag, Matchers.not(Matchers.equalTo(previous)));
+                return etag;
+            }
+            Thread.sleep(100);
+        }
+    }
+}
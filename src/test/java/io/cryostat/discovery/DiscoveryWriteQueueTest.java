@@ -0,0 +1,314 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.discovery.ContainerDiscovery.ContainerDiscoveryEvent;
+import io.cryostat.discovery.ContainerDiscovery.ContainerSpec;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.Target.TargetDiscovery;
+import io.cryostat.targets.TargetConnectionManager;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.core.eventbus.EventBus;
+import io.vertx.mutiny.core.eventbus.MessageConsumer;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class DiscoveryWriteQueueTest {
+
+    @Inject DiscoveryWriteQueue writes;
+    @Inject TransactionSynchronizationRegistry registry;
+    @Inject EventBus bus;
+    @Inject DockerDiscovery docker;
+
+    @InjectMock TargetConnectionManager connectionManager;
+
+    final List<String> committed = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testLoneWriteDoesNotLinger() throws Exception {
+        DiscoveryWriteQueue queue = queue(10, Duration.ofSeconds(5));
+        Runnable write = () -> {};
+        queue.submit(write);
+
+        Instant start = Instant.now();
+        List<Runnable> batch = queue.nextBatch();
+
+        MatcherAssert.assertThat(batch, Matchers.contains(write));
+        MatcherAssert.assertThat(
+                Duration.between(start, Instant.now()),
+                Matchers.lessThan(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void testQueuedBurstLingersToFillBatch() throws Exception {
+        DiscoveryWriteQueue queue = queue(10, Duration.ofMillis(500));
+        Runnable a = () -> {};
+        Runnable b = () -> {};
+        Runnable c = () -> {};
+        queue.submit(a);
+        queue.submit(b);
+        Thread late =
+                new Thread(
+                        () -> {
+                            try {
+                                Thread.sleep(50);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            queue.submit(c);
+                        });
+        late.start();
+
+        MatcherAssert.assertThat(queue.nextBatch(), Matchers.contains(a, b, c));
+        late.join();
+    }
+
+    @Test
+    public void testBatchSizeIsCapped() throws Exception {
+        DiscoveryWriteQueue queue = queue(3, Duration.ZERO);
+        for (int i = 0; i < 5; i++) {
+            queue.submit(() -> {});
+        }
+
+        MatcherAssert.assertThat(queue.nextBatch(), Matchers.hasSize(3));
+        MatcherAssert.assertThat(queue.nextBatch(), Matchers.hasSize(2));
+    }
+
+    @Test
+    public void testQueuedWritesShareATransaction() throws Exception {
+        List<Object> transactions = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+
+        writes.submit(blocker(release));
+        for (int i = 0; i < 5; i++) {
+            writes.submit(
+                    () -> {
+                        transactions.add(registry.getTransactionKey());
+                        done.countDown();
+                    });
+        }
+        release.countDown();
+
+        MatcherAssert.assertThat(done.await(10, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(new HashSet<>(transactions), Matchers.hasSize(1));
+    }
+
+    @Test
+    public void testThrowingWriteDoesNotDiscardOthers() throws Exception {
+        long failedBefore = writes.stats().failed();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        writes.submit(blocker(release));
+        writes.submit(tracked("before"));
+        writes.submit(
+                () -> {
+                    throw new IllegalStateException("bad write");
+                });
+        writes.submit(tracked("after"));
+        writes.submit(done::countDown);
+        release.countDown();
+
+        MatcherAssert.assertThat(done.await(10, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(committed, Matchers.containsInAnyOrder("before", "after"));
+        MatcherAssert.assertThat(writes.stats().failed(), Matchers.equalTo(failedBefore + 1));
+    }
+
+    @Test
+    public void testRollbackOnlyWriteDoesNotDiscardOthersOrRepeatEvents() throws Exception {
+        URI first = URI.create("service:jmx:rmi:///jndi/rmi://writequeuetest-1:9091/jmxrmi");
+        URI second = URI.create("service:jmx:rmi:///jndi/rmi://writequeuetest-2:9091/jmxrmi");
+        List<URI> found = Collections.synchronizedList(new ArrayList<>());
+        MessageConsumer<TargetDiscovery> consumer =
+                bus.<TargetDiscovery>consumer(Target.TARGET_JVM_DISCOVERY)
+                        .handler(
+                                m -> {
+                                    if (m.body().kind() == EventKind.FOUND) {
+                                        found.add(m.body().serviceRef().connectUrl);
+                                    }
+                                });
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+
+            writes.submit(blocker(release));
+            writes.submit(() -> persistTarget(first));
+            writes.submit(QuarkusTransaction::setRollbackOnly);
+            writes.submit(() -> persistTarget(second));
+            writes.submit(done::countDown);
+            release.countDown();
+
+            MatcherAssert.assertThat(done.await(10, TimeUnit.SECONDS), Matchers.is(true));
+            // events are delivered asynchronously, so allow for any duplicates to arrive too
+            Thread.sleep(500);
+            MatcherAssert.assertThat(found, Matchers.containsInAnyOrder(first, second));
+        } finally {
+            consumer.unregisterAndAwait();
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () -> {
+                                for (URI url : List.of(first, second)) {
+                                    Target.<Target>find("connectUrl", url)
+                                            .singleResultOptional()
+                                            .ifPresent(t -> t.delete());
+                                }
+                            });
+        }
+    }
+
+    @Test
+    public void testEntityBuiltOutsideWriteIsPersistedOnRetry() throws Exception {
+        URI url = URI.create("service:jmx:rmi:///jndi/rmi://writequeuetest-3:9091/jmxrmi");
+        boolean createdRealm =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    if (DiscoveryNode.getRealm(docker.getRealm()).isPresent()) {
+                                        return false;
+                                    }
+                                    DiscoveryNode universe = DiscoveryNode.getUniverse();
+                                    DiscoveryNode realm =
+                                            DiscoveryNode.environment(
+                                                    docker.getRealm(), BaseNodeType.REALM);
+                                    realm.parent = universe;
+                                    universe.children.add(realm);
+                                    realm.persist();
+                                    return true;
+                                });
+        try {
+            // as discovery builds it, outside of the write which persists it
+            Target target = new Target();
+            target.connectUrl = url;
+            target.alias = "writequeuetest";
+            target.annotations.cryostat().put("REALM", docker.getRealm());
+            ContainerDiscoveryEvent evt =
+                    ContainerDiscoveryEvent.from(
+                            new ContainerSpec(
+                                    "writequeuetest",
+                                    "image",
+                                    Map.of(),
+                                    List.of(),
+                                    0,
+                                    null,
+                                    null,
+                                    List.of(),
+                                    0,
+                                    "running"),
+                            target,
+                            EventKind.FOUND);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+
+            writes.submit(blocker(release));
+            // persists the target, then is rolled back along with the rest of its batch
+            writes.submit(() -> docker.updateDiscoveryTree(evt));
+            writes.submit(QuarkusTransaction::setRollbackOnly);
+            writes.submit(done::countDown);
+            release.countDown();
+
+            MatcherAssert.assertThat(done.await(10, TimeUnit.SECONDS), Matchers.is(true));
+            MatcherAssert.assertThat(
+                    QuarkusTransaction.requiringNew()
+                            .call(() -> Target.find("connectUrl", url).count()),
+                    Matchers.equalTo(1L));
+        } finally {
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () -> {
+                                Target.<Target>find("connectUrl", url)
+                                        .singleResultOptional()
+                                        .ifPresent(
+                                                t -> {
+                                                    t.discoveryNode.parent.children.remove(
+                                                            t.discoveryNode);
+                                                    t.delete();
+                                                });
+                                if (createdRealm) {
+                                    DiscoveryNode.getRealm(docker.getRealm())
+                                            .ifPresent(
+                                                    realm -> {
+                                                        realm.parent.children.remove(realm);
+                                                        realm.delete();
+                                                    });
+                                }
+                            });
+        }
+    }
+
+    private static void persistTarget(URI connectUrl) {
+        Target target = new Target();
+        target.connectUrl = connectUrl;
+        target.alias = "writequeuetest";
+        target.discoveryNode = DiscoveryNode.target(target, BaseNodeType.JVM);
+        target.persist();
+    }
+
+    private Runnable tracked(String name) {
+        return () ->
+                registry.registerInterposedSynchronization(
+                        new Synchronization() {
+                            @Override
+                            public void beforeCompletion() {}
+
+                            @Override
+                            public void afterCompletion(int status) {
+                                if (status == Status.STATUS_COMMITTED) {
+                                    committed.add(name);
+                                }
+                            }
+                        });
+    }
+
+    // occupies the writer until released, so that the writes queued behind it form one batch
+    private static Runnable blocker(CountDownLatch release) {
+        return () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private static DiscoveryWriteQueue queue(int maxBatchSize, Duration linger) {
+        DiscoveryWriteQueue queue = new DiscoveryWriteQueue();
+        queue.maxBatchSize = maxBatchSize;
+        queue.linger = linger;
+        return queue;
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import io.cryostat.discovery.KubeApiDiscovery.EndpointDiscoveryEvent;
+import io.cryostat.discovery.KubeApiDiscovery.KubeConfig;
+import io.cryostat.targets.Target.EventKind;
+
+import io.fabric8.kubernetes.api.model.Endpoints;
+import io.fabric8.kubernetes.api.model.EndpointsBuilder;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.fabric8.kubernetes.client.informers.cache.Indexer;
+import io.fabric8.kubernetes.client.informers.cache.Store;
+import io.vertx.mutiny.core.eventbus.EventBus;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class KubeApiDiscoveryTest {
+
+    static final String NAMESPACE = "ns";
+    static final int JMX_PORT = 9091;
+
+    KubeApiDiscovery discovery;
+    EventBus bus;
+    KubernetesClient client;
+    KubeConfig kubeConfig;
+
+    @BeforeEach
+    void setup() throws Exception {
+        bus = mock(EventBus.class);
+        client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+        kubeConfig = mock(KubeConfig.class);
+        when(kubeConfig.kubeClient()).thenReturn(client);
+        KubeApiDiscovery instance = new KubeApiDiscovery();
+        instance.logger = Logger.getLogger(KubeApiDiscovery.class);
+        instance.bus = bus;
+        instance.kubeConfig = kubeConfig;
+        instance.jmxPortNames = Optional.of(List.of("jfr-jmx"));
+        instance.jmxPortNumbers = Optional.empty();
+        instance.informerResyncPeriod = Duration.ofMinutes(10);
+        instance.labelSelector = Optional.empty();
+        discovery = spy(instance);
+
+        // resolving a target's owner reads the discovery tree and the API server, neither of
+        // which the reconciliation logic depends on
+        Pod pod =
+                new PodBuilder()
+                        .withNewMetadata()
+                        .withName("pod")
+                        .withNamespace(NAMESPACE)
+                        .withLabels(Map.of("app", "web"))
+                        .endMetadata()
+                        .build();
+        doReturn(Pair.<HasMetadata, DiscoveryNode>of(pod, null))
+                .when(discovery)
+                .queryForNode(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testUpdatePublishesOnlyChangedAddresses() {
+        discovery.reconcileEndpoints(
+                NAMESPACE,
+                endpoints("1", "jfr-jmx", "10.0.0.1", "10.0.0.2"),
+                endpoints("2", "jfr-jmx", "10.0.0.2", "10.0.0.3"));
+
+        List<EndpointDiscoveryEvent> events = published();
+        MatcherAssert.assertThat(events, Matchers.hasSize(2));
+        MatcherAssert.assertThat(
+                events.stream().map(e -> e.eventKind() + " " + e.target().connectUrl).toList(),
+                Matchers.containsInAnyOrder(
+                        "FOUND " + connectUrl("10-0-0-3"), "LOST " + connectUrl("10-0-0-1")));
+
+        EndpointDiscoveryEvent found =
+                events.stream().filter(e -> e.eventKind() == EventKind.FOUND).findFirst().get();
+        MatcherAssert.assertThat(found.target().labels, Matchers.equalTo(Map.of("app", "web")));
+        MatcherAssert.assertThat(
+                found.target().annotations.cryostat(),
+                Matchers.hasEntry("NAMESPACE", NAMESPACE));
+        verify(discovery).queryForNode(NAMESPACE, "pod", "Pod");
+    }
+
+    @Test
+    void testAddPublishesEveryAddress() {
+        discovery.reconcileEndpoints(
+                NAMESPACE, null, endpoints("1", "jfr-jmx", "10.0.0.1", "10.0.0.2"));
+
+        MatcherAssert.assertThat(
+                published().stream().map(EndpointDiscoveryEvent::eventKind).toList(),
+                Matchers.contains(EventKind.FOUND, EventKind.FOUND));
+    }
+
+    @Test
+    void testDeletePublishesLostWithoutResolvingOwners() {
+        discovery.reconcileEndpoints(NAMESPACE, endpoints("1", "jfr-jmx", "10.0.0.1"), null);
+
+        List<EndpointDiscoveryEvent> events = published();
+        MatcherAssert.assertThat(events, Matchers.hasSize(1));
+        MatcherAssert.assertThat(events.get(0).eventKind(), Matchers.equalTo(EventKind.LOST));
+        verify(discovery, never()).queryForNode(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testUnchangedAddressesPublishNothing() {
+        discovery.reconcileEndpoints(
+                NAMESPACE,
+                endpoints("1", "jfr-jmx", "10.0.0.1"),
+                endpoints("2", "jfr-jmx", "10.0.0.1"));
+
+        verify(bus, never()).publish(anyString(), any());
+    }
+
+    @Test
+    void testIncompatiblePortsAreIgnored() {
+        discovery.reconcileEndpoints(NAMESPACE, null, endpoints("1", "http", "10.0.0.1"));
+
+        verify(bus, never()).publish(anyString(), any());
+    }
+
+    @Test
+    void testFullSyncDueOnFirstObservationAndAfterResyncPeriod() {
+        MatcherAssert.assertThat(discovery.fullSyncDue(NAMESPACE), Matchers.is(true));
+
+        discovery.lastFullSync.put(NAMESPACE, Instant.now());
+        MatcherAssert.assertThat(discovery.fullSyncDue(NAMESPACE), Matchers.is(false));
+
+        // the other resync notifications in the same burst arrive well within half a period
+        discovery.lastFullSync.put(NAMESPACE, Instant.now().minus(Duration.ofMinutes(6)));
+        MatcherAssert.assertThat(discovery.fullSyncDue(NAMESPACE), Matchers.is(true));
+
+        discovery.informerResyncPeriod = Duration.ZERO;
+        MatcherAssert.assertThat(discovery.fullSyncDue(NAMESPACE), Matchers.is(false));
+    }
+
+    @Test
+    void testOwnerLookupPrefersSyncedInformerStore() {
+        Pod pod = pod("cached");
+        SharedIndexInformer<Pod> informer = podInformer(true, pod);
+
+        HasMetadata result = discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "cached");
+
+        MatcherAssert.assertThat(result, Matchers.sameInstance(pod));
+        verify(informer).start();
+        verify(client, never()).pods();
+    }
+
+    @Test
+    void testOwnerLookupFallsBackWhileInformerSyncs() {
+        Pod pod = pod("direct");
+        podInformer(false, pod);
+        when(client.pods().inNamespace(NAMESPACE).withName("direct").get()).thenReturn(pod);
+
+        HasMetadata result = discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "direct");
+
+        MatcherAssert.assertThat(result, Matchers.sameInstance(pod));
+    }
+
+    @Test
+    void testOwnerLookupFallsBackWhenMissingFromStore() {
+        Pod pod = pod("new");
+        podInformer(true, null);
+        when(client.pods().inNamespace(NAMESPACE).withName("new").get()).thenReturn(pod);
+
+        HasMetadata result = discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "new");
+
+        MatcherAssert.assertThat(result, Matchers.sameInstance(pod));
+    }
+
+    @Test
+    void testOwnerInformerStartedOncePerKindAndNamespace() {
+        SharedIndexInformer<Pod> informer = podInformer(true, pod("cached"));
+
+        discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "cached");
+        discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "cached");
+
+        verify(informer, times(1)).start();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testClusterScopeUsesOneOwnerInformerForEveryNamespace() {
+        when(kubeConfig.watchAllNamespaces()).thenReturn(true);
+        Pod pod = pod("cached");
+        Pod other =
+                new PodBuilder()
+                        .withNewMetadata()
+                        .withName("cached")
+                        .withNamespace("other")
+                        .endMetadata()
+                        .build();
+        SharedIndexInformer<Pod> informer = mock(SharedIndexInformer.class);
+        Store<Pod> store = mock(Store.class);
+        when(informer.hasSynced()).thenReturn(true);
+        when(informer.getStore()).thenReturn(store);
+        when(store.getByKey(NAMESPACE + "/cached")).thenReturn(pod);
+        when(store.getByKey("other/cached")).thenReturn(other);
+        when(client.resources(Pod.class).inAnyNamespace().runnableInformer(0))
+                .thenReturn(informer);
+
+        MatcherAssert.assertThat(
+                discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "cached"),
+                Matchers.sameInstance(pod));
+        MatcherAssert.assertThat(
+                discovery.lookupObject(KubeDiscoveryNodeType.POD, "other", "cached"),
+                Matchers.sameInstance(other));
+
+        verify(informer, times(1)).start();
+        verify(client.resources(Pod.class), never()).inNamespace(anyString());
+    }
+
+    @Test
+    void testOwnerInformersClosedOnceNamespaceHasNoEndpoints() {
+        SharedIndexInformer<Pod> informer = podInformer(true, pod("cached"));
+        discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "cached");
+        doReturn(List.of()).when(discovery).observedEndpoints(NAMESPACE);
+
+        discovery.closeOwnerInformersIfIdle(NAMESPACE);
+        verify(informer).close();
+
+        // started again if targets reappear in the namespace
+        discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "cached");
+        verify(informer, times(2)).start();
+    }
+
+    @Test
+    void testOwnerInformersKeptWhileNamespaceHasEndpoints() {
+        SharedIndexInformer<Pod> informer = podInformer(true, pod("cached"));
+        discovery.lookupObject(KubeDiscoveryNodeType.POD, NAMESPACE, "cached");
+        doReturn(List.of(endpoints("1", "jfr-jmx", "10.0.0.1")))
+                .when(discovery)
+                .observedEndpoints(NAMESPACE);
+
+        discovery.closeOwnerInformersIfIdle(NAMESPACE);
+
+        verify(informer, never()).close();
+    }
+
+    @Test
+    void testUncachedKindIsNotInformed() {
+        HasMetadata result =
+                discovery.lookupObject(KubeDiscoveryNodeType.DEPLOYMENTCONFIG, NAMESPACE, "dc");
+
+        MatcherAssert.assertThat(result, Matchers.nullValue());
+        verify(client, never()).resources(any());
+    }
+
+    @Test
+    void testWildcardNamespaceSelectsClusterScope() {
+        KubeConfig config = new KubeConfig();
+        config.watchNamespaces = Optional.of(List.of("*", "a", "b"));
+
+        MatcherAssert.assertThat(config.watchAllNamespaces(), Matchers.is(true));
+        MatcherAssert.assertThat(
+                config.getWatchNamespaces(), Matchers.containsInAnyOrder("a", "b"));
+
+        config.watchNamespaces = Optional.of(List.of("a"));
+        MatcherAssert.assertThat(config.watchAllNamespaces(), Matchers.is(false));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testClusterScopeUsesOneInformerPartitionedByNamespace() {
+        when(kubeConfig.watchAllNamespaces()).thenReturn(true);
+        discovery.labelSelector = Optional.of("app=jfr");
+        Endpoints endpoints = endpoints("1", "jfr-jmx", "10.0.0.1");
+        SharedIndexInformer<Endpoints> informer = mock(SharedIndexInformer.class);
+        Indexer<Endpoints> indexer = mock(Indexer.class);
+        when(informer.getIndexer()).thenReturn(indexer);
+        when(indexer.byIndex(Cache.NAMESPACE_INDEX, NAMESPACE)).thenReturn(List.of(endpoints));
+        when(client.endpoints()
+                        .inAnyNamespace()
+                        .withLabelSelector("app=jfr")
+                        .inform(any(), anyLong()))
+                .thenReturn(informer);
+
+        MatcherAssert.assertThat(
+                discovery.observedEndpoints(NAMESPACE), Matchers.contains(endpoints));
+        MatcherAssert.assertThat(discovery.observedEndpoints("other"), Matchers.empty());
+        verify(client.endpoints(), never()).inNamespace(anyString());
+        verify(kubeConfig, never()).getWatchNamespaces();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testNamespaceScopeUsesOneInformerPerNamespace() {
+        when(kubeConfig.watchAllNamespaces()).thenReturn(false);
+        when(kubeConfig.getWatchNamespaces()).thenReturn(List.of(NAMESPACE, "other"));
+        Endpoints endpoints = endpoints("1", "jfr-jmx", "10.0.0.1");
+        SharedIndexInformer<Endpoints> informer = mock(SharedIndexInformer.class);
+        Store<Endpoints> store = mock(Store.class);
+        when(informer.getStore()).thenReturn(store);
+        when(store.list()).thenReturn(List.of(endpoints));
+        when(client.endpoints().inNamespace(NAMESPACE).inform(any(), anyLong()))
+                .thenReturn(informer);
+
+        MatcherAssert.assertThat(
+                discovery.observedEndpoints(NAMESPACE), Matchers.contains(endpoints));
+        verify(client.endpoints(), never()).inAnyNamespace();
+        // without a label selector configured, the watch is not filtered
+        verify(client.endpoints().inNamespace(NAMESPACE), never()).withLabelSelector(anyString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private SharedIndexInformer<Pod> podInformer(boolean synced, @Nullable Pod cached) {
+        SharedIndexInformer<Pod> informer = mock(SharedIndexInformer.class);
+        Store<Pod> store = mock(Store.class);
+        when(informer.hasSynced()).thenReturn(synced);
+        when(informer.getStore()).thenReturn(store);
+        if (cached != null) {
+            when(store.getByKey(NAMESPACE + "/" + cached.getMetadata().getName()))
+                    .thenReturn(cached);
+        }
+        when(client.resources(Pod.class).inNamespace(NAMESPACE).runnableInformer(0))
+                .thenReturn(informer);
+        return informer;
+    }
+
+    static Pod pod(String name) {
+        return new PodBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .withNamespace(NAMESPACE)
+                .endMetadata()
+                .build();
+    }
+
+    private List<EndpointDiscoveryEvent> published() {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(bus, atLeast(0))
+                .publish(eq(KubeApiDiscovery.class.getName()), captor.capture());
+        return captor.getAllValues().stream().map(EndpointDiscoveryEvent.class::cast).toList();
+    }
+
+    static String connectUrl(String host) {
+        return String.format(
+                "service:jmx:rmi:///jndi/rmi://%s.%s.pod:%d/jmxrmi", host, NAMESPACE, JMX_PORT);
+    }
+
+    static Endpoints endpoints(String resourceVersion, String portName, String... ips) {
+        var subset = new EndpointsBuilder().addNewSubset();
+        for (String ip : ips) {
+            subset =
+                    subset.addNewAddress()
+                            .withIp(ip)
+                            .withNewTargetRef()
+                            .withKind("Pod")
+                            .withName("pod")
+                            .withNamespace(NAMESPACE)
+                            .endTargetRef()
+                            .endAddress();
+        }
+        return subset.addNewPort()
+                .withName(portName)
+                .withPort(JMX_PORT)
+                .endPort()
+                .endSubset()
+                .editOrNewMetadata()
+                .withName("svc")
+                .withNamespace(NAMESPACE)
+                .withResourceVersion(resourceVersion)
+                .endMetadata()
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import io.smallrye.mutiny.Uni;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PluginPingerTest {
+
+    static final Duration PERIOD = Duration.ofMinutes(1);
+
+    PluginPinger pinger;
+    List<CompletableFuture<Void>> cycles;
+
+    @BeforeEach
+    void setup() {
+        ExecutorService executor = mock(ExecutorService.class);
+        doAnswer(
+                        i -> {
+                            i.<Runnable>getArgument(0).run();
+                            return null;
+                        })
+                .when(executor)
+                .execute(any());
+        PluginPinger instance = new PluginPinger();
+        instance.logger = Logger.getLogger(PluginPinger.class);
+        instance.executor = executor;
+        pinger = spy(instance);
+
+        // each cycle stays in flight until the test completes it
+        cycles = new ArrayList<>();
+        doAnswer(
+                        i -> {
+                            CompletableFuture<Void> cycle = new CompletableFuture<>();
+                            cycles.add(cycle);
+                            return Uni.createFrom().completionStage(cycle);
+                        })
+                .when(pinger)
+                .pingAll(any());
+    }
+
+    @Test
+    void testCycleDueWhileInFlightIsDeferred() {
+        pinger.cycle(PERIOD);
+        pinger.cycle(PERIOD);
+        verify(pinger, times(1)).pingAll(any());
+
+        cycles.get(0).complete(null);
+        verify(pinger, times(2)).pingAll(any());
+
+        cycles.get(1).complete(null);
+        verify(pinger, times(2)).pingAll(any());
+    }
+
+    @Test
+    void testAtMostOneCycleIsDeferred() {
+        pinger.cycle(PERIOD);
+        pinger.cycle(PERIOD);
+        pinger.cycle(PERIOD);
+        pinger.cycle(PERIOD);
+
+        cycles.get(0).complete(null);
+        cycles.get(1).complete(null);
+
+        verify(pinger, times(2)).pingAll(any());
+    }
+
+    @Test
+    void testFailedCycleDoesNotBlockLaterCycles() {
+        pinger.cycle(PERIOD);
+        cycles.get(0).completeExceptionally(new RuntimeException("failed"));
+
+        pinger.cycle(PERIOD);
+        verify(pinger, times(2)).pingAll(any());
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import io.cryostat.discovery.RealmReconciler.Result;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.TargetConnectionManager;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class RealmReconcilerTest {
+
+    static final String REALM = "RealmReconcilerTest";
+
+    @InjectMock TargetConnectionManager connectionManager;
+
+    @Test
+    @TestTransaction
+    public void testRepublishingSameTreeChangesNothing() {
+        DiscoveryNode realm = realm();
+        Result first =
+                RealmReconciler.publish(realm, List.of(pod("a", jvm(1, "web"), jvm(2, "web"))));
+        DiscoveryNode.flush();
+        MatcherAssert.assertThat(first, Matchers.equalTo(new Result(3, 0, 0)));
+        long id1 = target(1).orElseThrow().id;
+        long id2 = target(2).orElseThrow().id;
+
+        Result second =
+                RealmReconciler.publish(realm, List.of(pod("a", jvm(1, "web"), jvm(2, "web"))));
+        DiscoveryNode.flush();
+
+        MatcherAssert.assertThat(second, Matchers.equalTo(new Result(0, 0, 0)));
+        MatcherAssert.assertThat(target(1).orElseThrow().id, Matchers.equalTo(id1));
+        MatcherAssert.assertThat(target(2).orElseThrow().id, Matchers.equalTo(id2));
+    }
+
+    @Test
+    @TestTransaction
+    public void testPublishAppliesOnlyTheDifference() {
+        DiscoveryNode realm = realm();
+        RealmReconciler.publish(realm, List.of(pod("a", jvm(1, "web"), jvm(2, "web"))));
+        DiscoveryNode.flush();
+        long id1 = target(1).orElseThrow().id;
+
+        Result result =
+                RealmReconciler.publish(realm, List.of(pod("a", jvm(1, "db"), jvm(3, "web"))));
+        DiscoveryNode.flush();
+
+        MatcherAssert.assertThat(result, Matchers.equalTo(new Result(1, 1, 1)));
+        Target updated = target(1).orElseThrow();
+        MatcherAssert.assertThat(updated.id, Matchers.equalTo(id1));
+        MatcherAssert.assertThat(updated.labels, Matchers.equalTo(Map.of("app", "db")));
+        MatcherAssert.assertThat(target(2).isPresent(), Matchers.is(false));
+        MatcherAssert.assertThat(target(3).isPresent(), Matchers.is(true));
+    }
+
+    @Test
+    @TestTransaction
+    public void testPublishMovesTargetBetweenEnvironments() {
+        DiscoveryNode realm = realm();
+        RealmReconciler.publish(realm, List.of(pod("a", jvm(1, "web")), pod("b")));
+        DiscoveryNode.flush();
+
+        // the target is removed from its old parent before it is inserted under the new one, so
+        // its connection URL is never briefly present twice
+        Result result =
+                RealmReconciler.publish(realm, List.of(pod("a"), pod("b", jvm(1, "web"))));
+        DiscoveryNode.flush();
+
+        MatcherAssert.assertThat(result, Matchers.equalTo(new Result(1, 1, 0)));
+        MatcherAssert.assertThat(
+                target(1).orElseThrow().discoveryNode.parent.name, Matchers.equalTo("b"));
+    }
+
+    @Test
+    @TestTransaction
+    public void testPatchRemovesNestedTargetAndKeepsItsEnvironment() {
+        DiscoveryNode realm = realm();
+        RealmReconciler.publish(realm, List.of(pod("a", jvm(1, "web"), jvm(2, "web"))));
+        DiscoveryNode.flush();
+
+        Result result = RealmReconciler.patch(realm, List.of(url(1), url(9)), List.of(), List.of());
+        DiscoveryNode.flush();
+
+        MatcherAssert.assertThat(result, Matchers.equalTo(new Result(0, 1, 0)));
+        MatcherAssert.assertThat(target(1).isPresent(), Matchers.is(false));
+        MatcherAssert.assertThat(
+                target(2).orElseThrow().discoveryNode.parent.name, Matchers.equalTo("a"));
+    }
+
+    @Test
+    @TestTransaction
+    public void testPatchAddMergesIntoExistingEnvironment() {
+        DiscoveryNode realm = realm();
+        RealmReconciler.publish(realm, List.of(pod("a", jvm(1, "web"), jvm(2, "web"))));
+        DiscoveryNode.flush();
+
+        Result result =
+                RealmReconciler.patch(
+                        realm, List.of(), List.of(pod("a", jvm(3, "web"))), List.of());
+        DiscoveryNode.flush();
+
+        MatcherAssert.assertThat(result, Matchers.equalTo(new Result(1, 0, 0)));
+        MatcherAssert.assertThat(target(1).isPresent(), Matchers.is(true));
+        MatcherAssert.assertThat(target(2).isPresent(), Matchers.is(true));
+        MatcherAssert.assertThat(target(3).isPresent(), Matchers.is(true));
+    }
+
+    @Test
+    @TestTransaction
+    public void testPatchReplacePrunesExistingEnvironment() {
+        DiscoveryNode realm = realm();
+        RealmReconciler.publish(
+                realm, List.of(pod("a", jvm(1, "web"), jvm(2, "web")), pod("b", jvm(4, "web"))));
+        DiscoveryNode.flush();
+        long id1 = target(1).orElseThrow().id;
+
+        Result result =
+                RealmReconciler.patch(
+                        realm,
+                        List.of(),
+                        List.of(),
+                        List.of(pod("a", jvm(1, "web"), jvm(3, "web"))));
+        DiscoveryNode.flush();
+
+        MatcherAssert.assertThat(result, Matchers.equalTo(new Result(1, 1, 0)));
+        MatcherAssert.assertThat(target(1).orElseThrow().id, Matchers.equalTo(id1));
+        MatcherAssert.assertThat(target(2).isPresent(), Matchers.is(false));
+        MatcherAssert.assertThat(target(3).isPresent(), Matchers.is(true));
+        // siblings of the replaced node are untouched
+        MatcherAssert.assertThat(target(4).isPresent(), Matchers.is(true));
+    }
+
+    private static DiscoveryNode realm() {
+        DiscoveryNode universe = DiscoveryNode.getUniverse();
+        DiscoveryNode realm = DiscoveryNode.environment(REALM, BaseNodeType.REALM);
+        realm.parent = universe;
+        universe.children.add(realm);
+        realm.persist();
+        return realm;
+    }
+
+    // nodes as a plugin would publish them, deserialized and not yet persisted
+    private static DiscoveryNode pod(String name, DiscoveryNode... children) {
+        DiscoveryNode node = new DiscoveryNode();
+        node.name = name;
+        node.nodeType = "Pod";
+        node.labels = new HashMap<>();
+        node.children = new ArrayList<>(List.of(children));
+        return node;
+    }
+
+    private static DiscoveryNode jvm(int port, String app) {
+        Target target = new Target();
+        target.connectUrl = url(port);
+        target.alias = "reconciler-" + port;
+        target.jvmId = "reconciler-" + port;
+        target.labels = Map.of("app", app);
+        target.annotations = new Target.Annotations(Map.of(), Map.of("REALM", REALM));
+
+        DiscoveryNode node = new DiscoveryNode();
+        node.name = target.connectUrl.toString();
+        node.nodeType = BaseNodeType.JVM.getKind();
+        node.labels = new HashMap<>(target.labels);
+        node.children = null;
+        node.target = target;
+        return node;
+    }
+
+    private static Optional<Target> target(int port) {
+        return Target.find("connectUrl", url(port)).singleResultOptional();
+    }
+
+    private static URI url(int port) {
+        return URI.create(
+                String.format("service:jmx:rmi:///jndi/rmi://realmreconcilertest:%d/jmxrmi", port));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.expressions;
+
+import java.net.URI;
+import java.util.Map;
+
+import io.cryostat.targets.Target;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class FastPathPredicateTest {
+
+    Target target;
+
+    @BeforeEach
+    void setup() {
+        target = new Target();
+        target.connectUrl = URI.create("service:jmx:rmi:///jndi/rmi://localhost:9091/jmxrmi");
+        target.alias = "myapp";
+        target.jvmId = "abcd1234";
+        target.labels = Map.of("app", "foo", "env", "prod");
+        target.annotations =
+                new Target.Annotations(
+                        Map.of("namespace", "demo"), Map.of("REALM", "KubernetesApi"));
+    }
+
+    @ParameterizedTest
+    @CsvSource(
+            delimiter = '|',
+            value = {
+                "true | true",
+                "false | false",
+                "target.alias == 'myapp' | true",
+                "'myapp' == target.alias | true",
+                "target.alias != 'myapp' | false",
+                "target.jvmId == 'abcd1234' | true",
+                "target.connectUrl == 'service:jmx:rmi:///jndi/rmi://localhost:9091/jmxrmi' |"
+                        + " true",
+                "target.labels['app'] == 'foo' | true",
+                "target.labels.app == 'bar' | false",
+                "target.labels['app'] == 'foo' && target.annotations.cryostat['REALM'] =="
+                        + " 'KubernetesApi' | true",
+                "target.labels['app'] == 'bar' || target.annotations.platform['namespace'] =="
+                        + " 'demo' | true",
+                "!(target.labels['env'] == 'prod') | false",
+                "target.labels['env'] in ['dev', 'prod'] | true",
+                "target.alias in ['other'] | false",
+                "'app' in target.labels | true",
+                "'missing' in target.labels | false",
+                "has(target.labels.app) | true",
+                "has(target.annotations.cryostat.missing) | false",
+                // errors on the right are absorbed when the left decides the result
+                "target.alias == 'other' && target.labels['missing'] == 'x' | false",
+                "target.alias == 'myapp' || target.labels['missing'] == 'x' | true",
+            })
+    void testEvaluates(String expr, boolean expected) {
+        FastPathPredicate predicate = FastPathPredicate.compile(expr).orElseThrow();
+        MatcherAssert.assertThat(expr, predicate.test(target), Matchers.is(expected));
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "target.labels['missing'] == 'x'",
+                "target.alias == 'myapp' && target.labels['missing'] == 'x'",
+                "!(target.annotations.cryostat['missing'] == 'x')",
+            })
+    void testDefersErrorsToCel(String expr) {
+        FastPathPredicate predicate = FastPathPredicate.compile(expr).orElseThrow();
+        MatcherAssert.assertThat(expr, predicate.test(target), Matchers.nullValue());
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "target.alias.startsWith('my')",
+                "target.labels.exists(k, k == 'app')",
+                "size(target.labels) > 1",
+                "target.labels['app'] == target.alias",
+                "this is not a valid expression",
+            })
+    void testDoesNotCompileUnrecognizedShapes(String expr) {
+        MatcherAssert.assertThat(
+                expr, FastPathPredicate.compile(expr).isPresent(), Matchers.is(false));
+    }
+
+    @ParameterizedTest
+    @CsvSource(
+            delimiter = '|',
+            value = {
+                "target.labels['app'] == 'foo' | 1",
+                "target.labels['app'] == 'foo' && target.annotations.cryostat['REALM'] =="
+                        + " 'KubernetesApi' | 2",
+                "target.labels['app'] == 'foo' || target.labels['app'] == 'bar' | 0",
+                "target.labels['app'] != 'foo' | 0",
+                "target.alias == 'myapp' | 0",
+            })
+    void testRequiredTerms(String expr, int count) {
+        FastPathPredicate predicate = FastPathPredicate.compile(expr).orElseThrow();
+        MatcherAssert.assertThat(expr, predicate.requiredTerms(), Matchers.hasSize(count));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.expressions;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.cryostat.expressions.MatchExpression.ExpressionEvent;
+import io.cryostat.expressions.MatchExpression.ExpressionEventCategory;
+import io.cryostat.expressions.MatchExpressionEvaluator.CompiledExpression;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.Target.TargetDiscovery;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.projectnessie.cel.tools.ScriptCreateException;
+
+@QuarkusTest
+public class MatchExpressionEvaluatorTest {
+
+    // not of a shape the fast path recognizes, so evaluation always goes through the script
+    static final String SCRIPT_ONLY = "target.alias.startsWith('app-')";
+
+    @Inject MatchExpressionEvaluator evaluator;
+
+    @Test
+    public void testCompiledScriptIsReused() throws Exception {
+        String expression = unique(SCRIPT_ONLY);
+        CompiledExpression first = evaluator.compile(expression);
+        CompiledExpression second = evaluator.compile(expression);
+
+        MatcherAssert.assertThat(second, Matchers.sameInstance(first));
+        MatcherAssert.assertThat(first.fastPath().isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    public void testScriptsAreCachedByExpressionText() throws Exception {
+        CompiledExpression a = evaluator.compile(unique("target.alias == 'a'"));
+        CompiledExpression b = evaluator.compile(unique("target.alias == 'b'"));
+
+        MatcherAssert.assertThat(b, Matchers.not(Matchers.sameInstance(a)));
+    }
+
+    @Test
+    public void testSharedScriptEvaluatesEachTargetSeparately() throws Exception {
+        String expression = unique(SCRIPT_ONLY);
+
+        MatcherAssert.assertThat(evaluator.load(expression, target("app-1")), Matchers.is(true));
+        MatcherAssert.assertThat(evaluator.load(expression, target("db-1")), Matchers.is(false));
+        MatcherAssert.assertThat(evaluator.load(expression, target("app-2")), Matchers.is(true));
+    }
+
+    @Test
+    public void testInvalidatedScriptIsRecompiled() throws Exception {
+        String expression = unique(SCRIPT_ONLY);
+        CompiledExpression first = evaluator.compile(expression);
+
+        evaluator.invalidateScript(expression);
+
+        MatcherAssert.assertThat(
+                evaluator.compile(expression), Matchers.not(Matchers.sameInstance(first)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(
+            value = ExpressionEventCategory.class,
+            names = {"UPDATED", "DELETED"})
+    public void testExpressionEventsInvalidateScript(ExpressionEventCategory category)
+            throws Exception {
+        String expression = unique(SCRIPT_ONLY);
+        CompiledExpression first = evaluator.compile(expression);
+
+        evaluator.onMessage(new ExpressionEvent(category, new MatchExpression(expression)));
+
+        MatcherAssert.assertThat(
+                evaluator.compile(expression), Matchers.not(Matchers.sameInstance(first)));
+    }
+
+    @Test
+    public void testExpressionCreationKeepsScript() throws Exception {
+        String expression = unique(SCRIPT_ONLY);
+        CompiledExpression first = evaluator.compile(expression);
+
+        evaluator.onMessage(
+                new ExpressionEvent(
+                        ExpressionEventCategory.CREATED, new MatchExpression(expression)));
+
+        MatcherAssert.assertThat(evaluator.compile(expression), Matchers.sameInstance(first));
+    }
+
+    @Test
+    public void testInvalidExpressionIsNotCached() {
+        String expression = unique("target.alias ==");
+
+        assertThrows(ScriptCreateException.class, () -> evaluator.compile(expression));
+        assertThrows(ScriptCreateException.class, () -> evaluator.compile(expression));
+    }
+
+    @Test
+    public void testResultIsReusedForSameTargetVersion() throws Exception {
+        MatchExpression expression = persisted(unique("target.labels['app'] == 'web'"));
+        Target target = target("app-1");
+        target.id = id();
+        target.labels = new HashMap<>(Map.of("app", "web"));
+
+        MatcherAssert.assertThat(evaluator.load(expression, target), Matchers.is(true));
+
+        // not yet written, so the cached result for this version still stands
+        target.labels.put("app", "db");
+        MatcherAssert.assertThat(evaluator.load(expression, target), Matchers.is(true));
+    }
+
+    @Test
+    public void testResultIsNotReusedForChangedTarget() throws Exception {
+        MatchExpression expression = persisted(unique("target.labels['app'] == 'web'"));
+        Target target = target("app-1");
+        target.id = id();
+        target.labels = new HashMap<>(Map.of("app", "web"));
+
+        MatcherAssert.assertThat(evaluator.load(expression, target), Matchers.is(true));
+
+        // updated, and without any change event having been delivered yet
+        target.labels.put("app", "db");
+        target.version++;
+        MatcherAssert.assertThat(evaluator.load(expression, target), Matchers.is(false));
+    }
+
+    @Test
+    public void testStaleEvaluationAfterChangeEventDoesNotPoisonResults() throws Exception {
+        MatchExpression expression = persisted(unique("target.labels['app'] == 'web'"));
+        long id = id();
+        Target before = target("app-1");
+        before.id = id;
+        before.labels = Map.of("app", "web");
+        Target after = target("app-1");
+        after.id = id;
+        after.labels = Map.of("app", "db");
+        after.version = before.version + 1;
+
+        // the change event is delivered before an evaluation which began with the old contents
+        // of the target finishes
+        evaluator.onMessage(new TargetDiscovery(EventKind.MODIFIED, after, null));
+        MatcherAssert.assertThat(evaluator.load(expression, before), Matchers.is(true));
+
+        MatcherAssert.assertThat(evaluator.load(expression, after), Matchers.is(false));
+    }
+
+    // the script cache is shared by the whole application, so each test uses its own expressions
+    private static String unique(String expression) {
+        return String.format("(%s) && '%d' != ''", expression, System.nanoTime());
+    }
+
+    private static MatchExpression persisted(String script) {
+        MatchExpression expression = new MatchExpression(script);
+        expression.id = id();
+        return expression;
+    }
+
+    // IDs which no persisted entity has, so that results cached by other tests are not reused
+    private static long id() {
+        return -System.nanoTime();
+    }
+
+    private static Target target(String alias) {
+        Target target = new Target();
+        target.connectUrl =
+                URI.create(
+                        String.format("service:jmx:rmi:///jndi/rmi://%s:9091/jmxrmi", alias));
+        target.alias = alias;
+        target.labels = Map.of();
+        return target;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.expressions;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import io.cryostat.expressions.FastPathPredicate.Source;
+import io.cryostat.expressions.FastPathPredicate.Term;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.Target.TargetDiscovery;
+import io.cryostat.targets.TargetConnectionManager;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class TargetLabelIndexTest {
+
+    @Inject TargetLabelIndex labelIndex;
+
+    @InjectMock TargetConnectionManager connectionManager;
+
+    @Test
+    public void testCommittedTargetIsIndexedWhenCommitReturns() {
+        String app = UUID.randomUUID().toString();
+        // build the index before the target exists, so it can only be found through its event
+        labelIndex.lookup(List.of(app(app)));
+
+        long id =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    Target target = target(app);
+                                    target.persist();
+                                    return target.id;
+                                });
+        try {
+            MatcherAssert.assertThat(
+                    labelIndex.lookup(List.of(app(app))),
+                    Matchers.equalTo(Optional.of(Set.of(id))));
+        } finally {
+            QuarkusTransaction.requiringNew()
+                    .run(() -> Target.<Target>findByIdOptional(id).ifPresent(t -> t.delete()));
+        }
+        MatcherAssert.assertThat(
+                labelIndex.lookup(List.of(app(app))), Matchers.equalTo(Optional.of(Set.of())));
+    }
+
+    @Test
+    public void testRolledBackTargetIsNotIndexed() {
+        String app = UUID.randomUUID().toString();
+        labelIndex.lookup(List.of(app(app)));
+
+        QuarkusTransaction.requiringNew()
+                .run(
+                        () -> {
+                            target(app).persist();
+                            Target.flush();
+                            QuarkusTransaction.setRollbackOnly();
+                        });
+
+        MatcherAssert.assertThat(
+                labelIndex.lookup(List.of(app(app))), Matchers.equalTo(Optional.of(Set.of())));
+    }
+
+    @Test
+    public void testChangesCommittedWhileBuildingAreNotOverwritten() {
+        TargetLabelIndex index = new TargetLabelIndex();
+        index.logger = Logger.getLogger(TargetLabelIndex.class);
+        index = spy(index);
+        TargetLabelIndex building = index;
+
+        Target modified = target("new");
+        modified.id = 1L;
+        Target lost = target("old");
+        lost.id = 2L;
+
+        // the listing was read before these changes committed, so it is out of date by the time
+        // the index is assembled from it
+        doAnswer(
+                        i -> {
+                            building.onCommit(
+                                    new TargetDiscovery(EventKind.MODIFIED, modified, null));
+                            building.onCommit(new TargetDiscovery(EventKind.LOST, lost, null));
+                            return Map.of(
+                                    1L, List.of(app("old")),
+                                    2L, List.of(app("old")),
+                                    3L, List.of(app("old")));
+                        })
+                .when(index)
+                .loadCommitted();
+
+        MatcherAssert.assertThat(
+                index.lookup(List.of(app("old"))), Matchers.equalTo(Optional.of(Set.of(3L))));
+        MatcherAssert.assertThat(
+                index.lookup(List.of(app("new"))), Matchers.equalTo(Optional.of(Set.of(1L))));
+    }
+
+    @Test
+    public void testFailedBuildIsRetried() {
+        TargetLabelIndex index = new TargetLabelIndex();
+        index.logger = Logger.getLogger(TargetLabelIndex.class);
+        index = spy(index);
+        doAnswer(
+                        i -> {
+                            throw new IllegalStateException("database unavailable");
+                        })
+                .doAnswer(i -> Map.of(1L, List.of(app("web"))))
+                .when(index)
+                .loadCommitted();
+
+        MatcherAssert.assertThat(
+                index.lookup(List.of(app("web"))), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(
+                index.lookup(List.of(app("web"))), Matchers.equalTo(Optional.of(Set.of(1L))));
+    }
+
+    private static Term app(String value) {
+        return new Term(Source.LABELS, "app", value);
+    }
+
+    private static Target target(String app) {
+        Target target = new Target();
+        target.connectUrl =
+                URI.create(
+                        String.format(
+                                "service:jmx:rmi:///jndi/rmi://labelindextest-%s:9091/jmxrmi",
+                                UUID.randomUUID()));
+        target.alias = "labelindextest-" + app;
+        target.jvmId = "labelindextest-" + app;
+        target.labels = Map.of("app", app);
+        return target;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import io.cryostat.ObjectStorage;
+import io.cryostat.graphql.ArchivedRecordings.ArchivedRecordingsFilter;
+import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.Recordings.ArchivedRecording;
+import io.cryostat.recordings.Recordings.Metadata;
+
+import graphql.GraphQLContext;
+import graphql.schema.DataFetchingEnvironment;
+import io.smallrye.graphql.api.Context;
+import io.smallrye.mutiny.Uni;
+import org.hamcrest.MatcherAssert;
+import org.dataloader.DataLoaderRegistry;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class ArchivedRecordingsLoaderTest {
+
+    static final S3Object A1 = object("jvm-a/one.jfr");
+    static final S3Object A2 = object("jvm-a/two.jfr");
+    static final S3Object B1 = object("jvm-b/one.jfr");
+
+    RecordingHelper helper;
+    ArchivedRecordingsLoader loader;
+    Context context;
+    DataLoaderRegistry registry;
+
+    @BeforeEach
+    void setup() {
+        helper = mock(RecordingHelper.class);
+        ObjectStorage storage = mock(ObjectStorage.class);
+        when(storage.mapConcurrently(anyList(), any()))
+                .thenAnswer(i -> joinAll(i.getArgument(0), i.getArgument(1)));
+        loader = new ArchivedRecordingsLoader();
+        loader.recordingHelper = helper;
+        loader.storage = storage;
+
+        DataFetchingEnvironment dfe = mock(DataFetchingEnvironment.class);
+        when(dfe.getGraphQlContext()).thenReturn(GraphQLContext.newContext().build());
+        registry = new DataLoaderRegistry();
+        when(dfe.getDataLoaderRegistry()).thenReturn(registry);
+        context = mock(Context.class);
+        when(context.unwrap(DataFetchingEnvironment.class)).thenReturn(dfe);
+
+        when(helper.listArchivedRecordingObjectsWithoutMetadata(isNull()))
+                .thenReturn(Uni.createFrom().item(List.of(A1, A2, B1)));
+        when(helper.listArchivedRecordingObjectsWithoutMetadata("jvm-a"))
+                .thenReturn(Uni.createFrom().item(List.of(A1, A2)));
+        when(helper.toArchivedRecording(any(), any()))
+                .thenAnswer(i -> recording(i.getArgument(0), i.getArgument(1)));
+        when(helper.resolveArchivedRecording(any()))
+                .thenAnswer(
+                        i ->
+                                Uni.createFrom()
+                                        .item(
+                                                Optional.of(
+                                                        recording(
+                                                                i.getArgument(0),
+                                                                Metadata.empty()))));
+    }
+
+    @Test
+    void testSingleTargetLoadListsOnlyItsPrefix() {
+        var result = await(dispatch(loader.load(context, "jvm-a")));
+
+        MatcherAssert.assertThat(
+                result.stream().map(ArchivedRecording::name).toList(),
+                Matchers.contains("one.jfr", "two.jfr"));
+        verify(helper).listArchivedRecordingObjectsWithoutMetadata("jvm-a");
+        verify(helper, never()).listArchivedRecordingObjectsWithoutMetadata(isNull());
+    }
+
+    @Test
+    void testMultipleTargetLoadsShareOneWholeBucketListing() {
+        var a = loader.load(context, "jvm-a");
+        var b = loader.load(context, "jvm-b");
+        var c = loader.load(context, "jvm-c");
+        registry.dispatchAll();
+
+        MatcherAssert.assertThat(
+                await(a).stream().map(ArchivedRecording::name).toList(),
+                Matchers.contains("one.jfr", "two.jfr"));
+        MatcherAssert.assertThat(
+                await(b).stream().map(ArchivedRecording::jvmId).toList(),
+                Matchers.contains("jvm-b"));
+        MatcherAssert.assertThat(await(c), Matchers.empty());
+        verify(helper, times(1)).listArchivedRecordingObjectsWithoutMetadata(isNull());
+        verify(helper, never()).listArchivedRecordingObjectsWithoutMetadata(anyString());
+    }
+
+    @Test
+    void testTargetLoadReusesWholeBucketListing() {
+        await(loader.loadAll(context, null));
+        var result = await(dispatch(loader.load(context, "jvm-b")));
+
+        MatcherAssert.assertThat(
+                result.stream().map(ArchivedRecording::jvmId).toList(),
+                Matchers.contains("jvm-b"));
+        verify(helper, times(1)).listArchivedRecordingObjectsWithoutMetadata(isNull());
+        verify(helper, never()).listArchivedRecordingObjectsWithoutMetadata(anyString());
+    }
+
+    @Test
+    void testMetadataResolvedOncePerObject() {
+        await(dispatch(loader.load(context, "jvm-a")));
+        await(dispatch(loader.load(context, "jvm-a")));
+        await(loader.loadAll(context, null));
+
+        verify(helper, times(1)).resolveArchivedRecording(A1);
+        verify(helper, times(1)).resolveArchivedRecording(A2);
+        verify(helper, times(1)).resolveArchivedRecording(B1);
+    }
+
+    @Test
+    void testFilterAppliedBeforeResolvingMetadata() {
+        ArchivedRecordingsFilter filter = new ArchivedRecordingsFilter();
+        filter.name = "two.jfr";
+
+        var result = await(loader.loadAll(context, filter));
+
+        MatcherAssert.assertThat(
+                result.stream().map(ArchivedRecording::name).toList(),
+                Matchers.contains("two.jfr"));
+        verify(helper).resolveArchivedRecording(A2);
+        verify(helper, never()).resolveArchivedRecording(A1);
+        verify(helper, never()).resolveArchivedRecording(B1);
+    }
+
+    @Test
+    void testSizeAndTimeBoundsAreInclusiveLowerAndUpper() {
+        ArchivedRecording small = archived("small", 1_000, 100);
+        ArchivedRecording large = archived("large", 5_000, 500);
+
+        ArchivedRecordingsFilter atLeast = new ArchivedRecordingsFilter();
+        atLeast.sizeBytesGreaterThanEqual = 5_000L;
+        MatcherAssert.assertThat(atLeast.testWithoutMetadata(large), Matchers.is(true));
+        MatcherAssert.assertThat(atLeast.testWithoutMetadata(small), Matchers.is(false));
+
+        ArchivedRecordingsFilter atMost = new ArchivedRecordingsFilter();
+        atMost.sizeBytesLessThanEqual = 1_000L;
+        MatcherAssert.assertThat(atMost.testWithoutMetadata(small), Matchers.is(true));
+        MatcherAssert.assertThat(atMost.testWithoutMetadata(large), Matchers.is(false));
+
+        ArchivedRecordingsFilter after = new ArchivedRecordingsFilter();
+        after.archivedTimeAfterEqual = 500L;
+        MatcherAssert.assertThat(after.testWithoutMetadata(large), Matchers.is(true));
+        MatcherAssert.assertThat(after.testWithoutMetadata(small), Matchers.is(false));
+
+        ArchivedRecordingsFilter before = new ArchivedRecordingsFilter();
+        before.archivedTimeBeforeEqual = 100L;
+        MatcherAssert.assertThat(before.testWithoutMetadata(small), Matchers.is(true));
+        MatcherAssert.assertThat(before.testWithoutMetadata(large), Matchers.is(false));
+    }
+
+    private static <T, R> Uni<List<R>> joinAll(List<T> items, Function<T, Uni<R>> fn) {
+        if (items.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        return Uni.join().all(items.stream().map(fn).toList()).andFailFast();
+    }
+
+    // stands in for the query execution dispatching its DataLoaders once the field is fetched
+    private <T> Uni<T> dispatch(Uni<T> uni) {
+        registry.dispatchAll();
+        return uni;
+    }
+
+    private static <T> T await(Uni<T> uni) {
+        return uni.await().atMost(Duration.ofSeconds(5));
+    }
+
+    private static S3Object object(String key) {
+        return S3Object.builder().key(key).size(1024L).lastModified(Instant.EPOCH).build();
+    }
+
+    private static ArchivedRecording archived(String name, long size, long archivedTime) {
+        return new ArchivedRecording(
+                "jvm-a", name, "/download", "/report", Metadata.empty(), size, archivedTime);
+    }
+
+    private static ArchivedRecording recording(S3Object object, Metadata metadata) {
+        String[] parts = object.key().split("/");
+        return new ArchivedRecording(
+                parts[0],
+                parts[1],
+                "/download",
+                "/report",
+                metadata,
+                object.size(),
+                object.lastModified().getEpochSecond());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Optional;
+
+import io.cryostat.graphql.Pagination.PageInfo;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+class PaginationTest {
+
+    @Test
+    void testLimitIsCappedByMaxPageSize() {
+        MatcherAssert.assertThat(Pagination.limit(null, 50), Matchers.equalTo(50));
+        MatcherAssert.assertThat(Pagination.limit(10, 50), Matchers.equalTo(10));
+        MatcherAssert.assertThat(Pagination.limit(100, 50), Matchers.equalTo(50));
+        assertThrows(IllegalArgumentException.class, () -> Pagination.limit(-1, 50));
+    }
+
+    @Test
+    void testCursorRoundTrip() {
+        String cursor = Pagination.encode("Kind", 42L);
+        MatcherAssert.assertThat(
+                Pagination.decodeId("Kind", cursor), Matchers.equalTo(Optional.of(42L)));
+        MatcherAssert.assertThat(
+                Pagination.decodeId("Kind", null), Matchers.equalTo(Optional.empty()));
+    }
+
+    @Test
+    void testCursorOfAnotherKindIsRejected() {
+        String cursor = Pagination.encode("Other", 42L);
+        assertThrows(IllegalArgumentException.class, () -> Pagination.decodeId("Kind", cursor));
+        assertThrows(IllegalArgumentException.class, () -> Pagination.decode("Kind", "%%%"));
+        String notAnId = Pagination.encode("Kind", "abc");
+        assertThrows(IllegalArgumentException.class, () -> Pagination.decodeId("Kind", notAnId));
+    }
+
+    @Test
+    void testPageInfoOfFullPage() {
+        PageInfo info = Pagination.pageInfo(List.of(1, 2, 3), 2, false, String::valueOf);
+
+        MatcherAssert.assertThat(info.hasNextPage, Matchers.is(true));
+        MatcherAssert.assertThat(info.hasPreviousPage, Matchers.is(false));
+        MatcherAssert.assertThat(info.startCursor, Matchers.equalTo("1"));
+        MatcherAssert.assertThat(info.endCursor, Matchers.equalTo("2"));
+    }
+
+    @Test
+    void testPageInfoOfLastPage() {
+        PageInfo info = Pagination.pageInfo(List.of(3), 2, true, String::valueOf);
+
+        MatcherAssert.assertThat(info.hasNextPage, Matchers.is(false));
+        MatcherAssert.assertThat(info.hasPreviousPage, Matchers.is(true));
+        MatcherAssert.assertThat(info.startCursor, Matchers.equalTo("3"));
+        MatcherAssert.assertThat(info.endCursor, Matchers.equalTo("3"));
+    }
+
+    @Test
+    void testPageInfoOfEmptyPage() {
+        PageInfo info = Pagination.pageInfo(List.<Integer>of(), 2, true, String::valueOf);
+
+        MatcherAssert.assertThat(info.hasNextPage, Matchers.is(false));
+        MatcherAssert.assertThat(info.startCursor, Matchers.nullValue());
+        MatcherAssert.assertThat(info.endCursor, Matchers.nullValue());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.cryostat.graphql.ResolverExecutor.DeadlineExceededException;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResolverExecutorTest {
+
+    ResolverExecutor resolverExecutor;
+
+    @BeforeEach
+    void setup() {
+        resolverExecutor = new ResolverExecutor();
+        resolverExecutor.concurrency = 1;
+        resolverExecutor.timeout = Duration.ofSeconds(10);
+        resolverExecutor.executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void teardown() {
+        resolverExecutor.executor.shutdownNow();
+    }
+
+    @Test
+    void testCompletesBeforeDeadline() {
+        String result =
+                resolverExecutor
+                        .submit(Instant.now().plusSeconds(5), "fast", () -> "done")
+                        .await()
+                        .atMost(Duration.ofSeconds(5));
+        MatcherAssert.assertThat(result, Matchers.equalTo("done"));
+    }
+
+    @Test
+    void testDeadlineInterruptsRunningTask() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        var uni =
+                resolverExecutor.submit(
+                        Instant.now().plusMillis(200),
+                        "hung",
+                        () -> {
+                            try {
+                                never.await();
+                            } catch (InterruptedException e) {
+                                interrupted.countDown();
+                            }
+                            return "unreachable";
+                        });
+
+        assertThrows(
+                DeadlineExceededException.class,
+                () -> uni.await().atMost(Duration.ofSeconds(5)));
+        MatcherAssert.assertThat(interrupted.await(5, TimeUnit.SECONDS), Matchers.is(true));
+
+        // the interrupted task gave up its turn, so later work is not stuck behind it
+        String result =
+                resolverExecutor
+                        .submit(Instant.now().plusSeconds(5), "next", () -> "done")
+                        .await()
+                        .atMost(Duration.ofSeconds(5));
+        MatcherAssert.assertThat(result, Matchers.equalTo("done"));
+    }
+
+    @Test
+    void testDeadlineDropsQueuedTask() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean queuedRan = new AtomicBoolean();
+
+        // occupy the only turn until released
+        var blocker =
+                resolverExecutor
+                        .submit(
+                                Instant.now().plusSeconds(10),
+                                "blocker",
+                                () -> {
+                                    try {
+                                        release.await();
+                                    } catch (InterruptedException e) {
+                                        Thread.currentThread().interrupt();
+                                    }
+                                    return "released";
+                                })
+                        .subscribeAsCompletionStage();
+
+        var queued =
+                resolverExecutor.submit(
+                        Instant.now().plusMillis(200),
+                        "queued",
+                        () -> {
+                            queuedRan.set(true);
+                            return "ran";
+                        });
+        assertThrows(
+                DeadlineExceededException.class,
+                () -> queued.await().atMost(Duration.ofSeconds(5)));
+
+        release.countDown();
+        MatcherAssert.assertThat(
+                blocker.toCompletableFuture().get(5, TimeUnit.SECONDS),
+                Matchers.equalTo("released"));
+        MatcherAssert.assertThat(queuedRan.get(), Matchers.is(false));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.discovery.NodeType;
+import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.TargetConnectionManager;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that the SQL rendering of discovery node filters selects exactly the nodes which the
+ * in-memory {@link DiscoveryNodeFilter#test} accepts.
+ */
+@QuarkusTest
+public class RootNodeTest {
+
+    @InjectMock TargetConnectionManager connectionManager;
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "app=web",
+                "app==web",
+                "app!=web",
+                "app in (web, db)",
+                "app notin (web)",
+                "tier",
+                "!tier",
+            })
+    @TestTransaction
+    public void testLabelSqlMatchesInMemory(String selector) {
+        DiscoveryNode realm = setupTree();
+        DiscoveryNodeFilter filter = new DiscoveryNodeFilter();
+        filter.labels = List.of(selector);
+        assertSqlMatchesInMemory(realm, filter);
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "REALM=Test",
+                "namespace=prod",
+                "namespace in (prod, dev)",
+                // platform annotations take precedence over cryostat annotations
+                "shadowed=platform",
+                "shadowed=cryostat",
+                "shadowed in (cryostat, other)",
+                "shadowed!=cryostat",
+                "namespace notin (prod)",
+                "namespace",
+                "!namespace",
+            })
+    @TestTransaction
+    public void testAnnotationSqlMatchesInMemory(String selector) {
+        DiscoveryNode realm = setupTree();
+        DiscoveryNodeFilter filter = new DiscoveryNodeFilter();
+        filter.annotations = List.of(selector);
+        assertSqlMatchesInMemory(realm, filter);
+    }
+
+    private void assertSqlMatchesInMemory(DiscoveryNode realm, DiscoveryNodeFilter filter) {
+        DiscoveryNode.getEntityManager().flush();
+
+        Set<Long> sql =
+                RootNode.findTargetNodes(Optional.of(realm), filter).stream()
+                        .map(n -> n.id)
+                        .collect(Collectors.toSet());
+        Set<Long> memory =
+                realm.children.stream()
+                        .filter(filter)
+                        .map(n -> n.id)
+                        .collect(Collectors.toSet());
+
+        MatcherAssert.assertThat(sql, Matchers.equalTo(memory));
+    }
+
+    private DiscoveryNode setupTree() {
+        DiscoveryNode universe = DiscoveryNode.getUniverse();
+        DiscoveryNode realm = DiscoveryNode.environment("RootNodeTest", TestNodeType.REALM);
+        realm.parent = universe;
+        universe.children.add(realm);
+        realm.persist();
+
+        child(
+                realm,
+                1,
+                Map.of("app", "web", "tier", "front"),
+                Map.of("namespace", "prod"),
+                Map.of());
+        child(realm, 2, Map.of("app", "db"), Map.of("namespace", "dev"), Map.of());
+        child(realm, 3, Map.of(), Map.of(), Map.of());
+        child(
+                realm,
+                4,
+                Map.of("app", "other"),
+                Map.of("shadowed", "platform"),
+                Map.of("shadowed", "cryostat"));
+        child(realm, 5, Map.of("tier", "back"), Map.of(), Map.of("shadowed", "cryostat"));
+        return realm;
+    }
+
+    private static void child(
+            DiscoveryNode realm,
+            int port,
+            Map<String, String> labels,
+            Map<String, String> platform,
+            Map<String, String> cryostat) {
+        Map<String, String> cryostatAnnotations = new HashMap<>(cryostat);
+        cryostatAnnotations.put("REALM", "Test");
+
+        Target target = new Target();
+        target.connectUrl =
+                URI.create(
+                        String.format(
+                                "service:jmx:rmi:///jndi/rmi://rootnodetest:%d/jmxrmi", port));
+        target.alias = "rootnodetest-" + port;
+        target.jvmId = "rootnodetest-" + port;
+        target.labels = labels;
+        target.annotations = new Target.Annotations(platform, cryostatAnnotations);
+
+        DiscoveryNode node = DiscoveryNode.target(target, TestNodeType.JVM);
+        target.discoveryNode = node;
+        node.parent = realm;
+        realm.children.add(node);
+        target.persist();
+    }
+
+    enum TestNodeType implements NodeType {
+        REALM("Realm"),
+        JVM("JVM"),
+        ;
+
+        private final String kind;
+
+        TestNodeType(String kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public String getKind() {
+            return kind;
+        }
+    }
+}
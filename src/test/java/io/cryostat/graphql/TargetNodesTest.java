@@ -0,0 +1,188 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.graphql.ActiveRecordings.ActiveRecordingsFilter;
+import io.cryostat.graphql.RootNodeTest.TestNodeType;
+import io.cryostat.recordings.ActiveRecording;
+import io.cryostat.recordings.Recordings.Metadata;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.TargetConnectionManager;
+
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jdk.jfr.RecordingState;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks the database paging of a Target's active recordings, and that the SQL rendering of
+ * recording filters selects exactly the recordings which the in-memory {@link
+ * ActiveRecordingsFilter#test} accepts.
+ */
+@QuarkusTest
+public class TargetNodesTest {
+
+    @InjectMock TargetConnectionManager connectionManager;
+
+    @Test
+    @TestTransaction
+    public void testPagesFollowIdOrder() {
+        Target target = setupTarget();
+
+        List<String> names = new ArrayList<>();
+        Optional<Long> after = Optional.empty();
+        int pages = 0;
+        while (true) {
+            List<ActiveRecording> rows =
+                    TargetNodes.findActiveRecordings(target.id, null, after, 3);
+            List<ActiveRecording> page = Pagination.trim(rows, 2);
+            page.forEach(r -> names.add(r.name));
+            pages++;
+            if (rows.size() <= 2) {
+                break;
+            }
+            after = Optional.of(page.get(page.size() - 1).id);
+        }
+
+        MatcherAssert.assertThat(pages, Matchers.equalTo(3));
+        MatcherAssert.assertThat(names, Matchers.contains("a", "b", "c", "d", "e"));
+        MatcherAssert.assertThat(
+                TargetNodes.countActiveRecordings(target.id, null), Matchers.equalTo(5L));
+    }
+
+    static Stream<ActiveRecordingsFilter> filters() {
+        return Stream.of(
+                filter(f -> f.name = "b"),
+                filter(f -> f.names = List.of("a", "c")),
+                filter(f -> f.names = List.of()),
+                filter(f -> f.labels = List.of("app=web")),
+                filter(f -> f.labels = List.of("app in (web, db)")),
+                filter(f -> f.state = RecordingState.STOPPED),
+                filter(f -> f.continuous = true),
+                filter(f -> f.toDisk = false),
+                filter(f -> f.durationMsGreaterThanEqual = 3_000L),
+                filter(f -> f.durationMsLessThanEqual = 3_000L),
+                filter(f -> f.startTimeMsAfterEqual = 300L),
+                filter(f -> f.startTimeMsBeforeEqual = 300L),
+                filter(
+                        f -> {
+                            f.durationMsGreaterThanEqual = 2_000L;
+                            f.durationMsLessThanEqual = 4_000L;
+                        }));
+    }
+
+    @ParameterizedTest
+    @MethodSource("filters")
+    @TestTransaction
+    public void testFilterSqlMatchesInMemory(ActiveRecordingsFilter filter) {
+        Target target = setupTarget();
+
+        List<String> sql =
+                TargetNodes.findActiveRecordings(target.id, filter, Optional.empty(), 100).stream()
+                        .map(r -> r.name)
+                        .toList();
+        List<String> memory =
+                target.activeRecordings.stream().filter(filter).map(r -> r.name).toList();
+
+        MatcherAssert.assertThat(sql, Matchers.equalTo(memory));
+        MatcherAssert.assertThat(
+                TargetNodes.countActiveRecordings(target.id, filter),
+                Matchers.equalTo((long) memory.size()));
+    }
+
+    @Test
+    public void testDurationBoundsAreInclusiveLowerAndUpper() {
+        ActiveRecording shortRecording = recording(null, "short", 1, 1_000, 0, Map.of());
+        ActiveRecording longRecording = recording(null, "long", 2, 5_000, 0, Map.of());
+
+        ActiveRecordingsFilter atLeast = filter(f -> f.durationMsGreaterThanEqual = 5_000L);
+        MatcherAssert.assertThat(atLeast.test(longRecording), Matchers.is(true));
+        MatcherAssert.assertThat(atLeast.test(shortRecording), Matchers.is(false));
+
+        ActiveRecordingsFilter atMost = filter(f -> f.durationMsLessThanEqual = 1_000L);
+        MatcherAssert.assertThat(atMost.test(shortRecording), Matchers.is(true));
+        MatcherAssert.assertThat(atMost.test(longRecording), Matchers.is(false));
+    }
+
+    private Target setupTarget() {
+        DiscoveryNode universe = DiscoveryNode.getUniverse();
+        DiscoveryNode realm = DiscoveryNode.environment("TargetNodesTest", TestNodeType.REALM);
+        realm.parent = universe;
+        universe.children.add(realm);
+        realm.persist();
+
+        Target target = new Target();
+        target.connectUrl = URI.create("service:jmx:rmi:///jndi/rmi://targetnodestest:9091/jmxrmi");
+        target.alias = "targetnodestest";
+        target.jvmId = "targetnodestest";
+        DiscoveryNode node = DiscoveryNode.target(target, TestNodeType.JVM);
+        target.discoveryNode = node;
+        node.parent = realm;
+        realm.children.add(node);
+
+        target.activeRecordings.add(recording(target, "a", 1, 1_000, 100, Map.of("app", "web")));
+        target.activeRecordings.add(recording(target, "b", 2, 2_000, 200, Map.of("app", "db")));
+        target.activeRecordings.add(recording(target, "c", 3, 3_000, 300, Map.of()));
+        target.activeRecordings.add(recording(target, "d", 4, 4_000, 400, Map.of("app", "web")));
+        target.activeRecordings.add(recording(target, "e", 5, 5_000, 500, Map.of("tier", "x")));
+        target.activeRecordings.get(1).state = RecordingState.STOPPED;
+        target.activeRecordings.get(2).continuous = true;
+        target.activeRecordings.get(3).toDisk = true;
+        target.persist();
+        Target.getEntityManager().flush();
+        return target;
+    }
+
+    private static ActiveRecording recording(
+            Target target,
+            String name,
+            long remoteId,
+            long duration,
+            long startTime,
+            Map<String, String> labels) {
+        ActiveRecording recording = new ActiveRecording();
+        recording.target = target;
+        recording.name = name;
+        recording.remoteId = remoteId;
+        recording.state = RecordingState.RUNNING;
+        recording.duration = duration;
+        recording.startTime = startTime;
+        recording.metadata = new Metadata(labels);
+        // external recordings do not emit notifications
+        recording.external = true;
+        return recording;
+    }
+
+    private static ActiveRecordingsFilter filter(Consumer<ActiveRecordingsFilter> fn) {
+        ActiveRecordingsFilter filter = new ActiveRecordingsFilter();
+        fn.accept(filter);
+        return filter;
+    }
+}
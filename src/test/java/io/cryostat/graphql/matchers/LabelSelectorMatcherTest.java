@@ -15,7 +15,10 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
@@ -124,4 +127,30 @@ class LabelSelectorMatcherTest {
         LabelSelectorMatcher matcher = LabelSelectorMatcher.parse(expr);
         MatcherAssert.assertThat(expr, matcher.test(TEST_LABELS), Matchers.is(pass));
     }
+
+    @ParameterizedTest
+    @CsvSource(
+            value = {
+                "foo=bar | (labels[:p0] = :p1)",
+                "foo==bar | (labels[:p0] = :p1)",
+                "foo!=bar | (labels[:p0] IS DISTINCT FROM :p1)",
+                "foo in (bar, baz) | ((labels[:p0] = :p1) OR (labels[:p0] = :p2))",
+                "foo notin (bar, baz) | (labels[:p0] IS NULL OR labels[:p0] NOT IN (:p1))",
+                "foo | (labels[:p0] IS NOT NULL)",
+                "!foo | (labels[:p0] IS NULL)",
+            },
+            delimiter = '|')
+    void testToSql(String expr, String sql) {
+        LabelSelectorMatcher matcher = LabelSelectorMatcher.parse(expr);
+        List<Object> params = new ArrayList<>();
+        Function<Object, String> binder =
+                v -> {
+                    params.add(v);
+                    return ":p" + (params.size() - 1);
+                };
+        SqlLabels labels = key -> String.format("labels[%s]", key);
+        MatcherAssert.assertThat(
+                expr, matcher.toSql(labels, binder), Matchers.equalTo("(" + sql + ")"));
+        MatcherAssert.assertThat(params.get(0), Matchers.equalTo("foo"));
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import io.cryostat.ObjectStorage;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RecordingHelperTest {
+
+    RecordingHelper helper;
+    ObjectStorage storage;
+
+    @BeforeEach
+    void setup() {
+        storage = mock(ObjectStorage.class);
+        when(storage.listObjects(any(), any())).thenReturn(Multi.createFrom().empty());
+        when(storage.mapConcurrently(anyList(), any()))
+                .thenReturn(Uni.createFrom().item(List.of()));
+        helper = new RecordingHelper();
+        helper.objectStorage = storage;
+        helper.archiveBucket = "archives";
+    }
+
+    @Test
+    void testListingWithMetadataIsLimitedToTheJvmsDirectory() {
+        helper.listArchivedRecordingsUni("abc").await().atMost(Duration.ofSeconds(5));
+
+        // without the separator, the listing would also include the recordings of JVM "abcd"
+        verify(storage).listObjects(eq("archives"), eq(Optional.of("abc/")));
+    }
+
+    @Test
+    void testListingWithoutMetadataIsLimitedToTheJvmsDirectory() {
+        helper.listArchivedRecordingObjectsWithoutMetadata("abc")
+                .await()
+                .atMost(Duration.ofSeconds(5));
+
+        verify(storage).listObjects(eq("archives"), eq(Optional.of("abc/")));
+    }
+
+    @Test
+    void testListingWithoutJvmIdCoversWholeBucket() {
+        helper.listArchivedRecordingsUni(null).await().atMost(Duration.ofSeconds(5));
+
+        verify(storage).listObjects(eq("archives"), eq(Optional.empty()));
+    }
+}
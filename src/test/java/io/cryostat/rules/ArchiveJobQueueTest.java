@@ -0,0 +1,192 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ArchiveJobQueueTest {
+
+    static final long TIMEOUT_SECONDS = 5;
+
+    ArchiveJobQueue queue;
+    // archives block until released, so that the queue fills up behind them
+    CountDownLatch release;
+    AtomicInteger concurrent;
+    AtomicInteger maxConcurrent;
+
+    @BeforeEach
+    void setup() {
+        release = new CountDownLatch(1);
+        concurrent = new AtomicInteger();
+        maxConcurrent = new AtomicInteger();
+
+        ArchiveJobQueue instance = new ArchiveJobQueue();
+        instance.logger = Logger.getLogger(ArchiveJobQueue.class);
+        instance.maxConcurrency = 2;
+        queue = spy(instance);
+        // the archive runs without a transaction, which would need the running application
+        doAnswer(
+                        i -> {
+                            i.<Runnable>getArgument(0).run();
+                            return null;
+                        })
+                .when(queue)
+                .execute(any());
+        queue.onStart(null);
+    }
+
+    @AfterEach
+    void teardown() {
+        release.countDown();
+        queue.onStop(null);
+    }
+
+    @Test
+    void testConcurrencyIsCapped() throws Exception {
+        CountDownLatch finished = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            queue.submit("job" + i, Instant.now(), blocking(finished));
+        }
+
+        awaitRunning(2);
+        MatcherAssert.assertThat(queue.stats().queued(), Matchers.equalTo(3));
+
+        release.countDown();
+        MatcherAssert.assertThat(
+                finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), Matchers.is(true));
+        MatcherAssert.assertThat(maxConcurrent.get(), Matchers.equalTo(2));
+        awaitCompleted(5);
+    }
+
+    @Test
+    void testJobStillQueuedIsNotQueuedAgain() throws Exception {
+        CountDownLatch finished = new CountDownLatch(3);
+        queue.submit("job0", Instant.now(), blocking(finished));
+        queue.submit("job1", Instant.now(), blocking(finished));
+        awaitRunning(2);
+
+        queue.submit("job2", Instant.now(), blocking(finished));
+        queue.submit("job2", Instant.now(), blocking(finished));
+        MatcherAssert.assertThat(queue.stats().queued(), Matchers.equalTo(1));
+
+        release.countDown();
+        awaitCompleted(3);
+    }
+
+    @Test
+    void testRunningJobIsNotQueuedAgain() throws Exception {
+        CountDownLatch finished = new CountDownLatch(1);
+        queue.submit("job0", Instant.now(), blocking(finished));
+        awaitRunning(1);
+
+        // a slow run must not overlap the next run of the same job
+        queue.submit("job0", Instant.now(), blocking(finished));
+        MatcherAssert.assertThat(queue.stats().queued(), Matchers.equalTo(0));
+
+        release.countDown();
+        await(() -> queue.stats().completed() >= 1 && queue.stats().running() == 0);
+        MatcherAssert.assertThat(maxConcurrent.get(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(queue.stats().completed(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    void testFinishedJobMayBeQueuedAgain() throws Exception {
+        release.countDown();
+        CountDownLatch finished = new CountDownLatch(2);
+        queue.submit("job0", Instant.now(), blocking(finished));
+        await(() -> queue.stats().completed() >= 1 && queue.stats().running() == 0);
+
+        queue.submit("job0", Instant.now(), blocking(finished));
+
+        MatcherAssert.assertThat(
+                finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), Matchers.is(true));
+        awaitCompleted(2);
+    }
+
+    @Test
+    void testFailedArchiveIsCounted() throws Exception {
+        queue.submit(
+                "job0",
+                Instant.now(),
+                () -> {
+                    throw new IllegalStateException("failed");
+                });
+
+        await(() -> queue.stats().failed() == 1 && queue.stats().running() == 0);
+        MatcherAssert.assertThat(queue.stats().failed(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(queue.stats().running(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void testQueueTimeIsMeasuredFromScheduledFireTime() throws Exception {
+        CountDownLatch finished = new CountDownLatch(1);
+        release.countDown();
+        queue.submit("job0", Instant.now().minusSeconds(30), blocking(finished));
+
+        await(() -> queue.stats().lastLagMs() > 0);
+        MatcherAssert.assertThat(
+                queue.stats().lastQueueTimeMs(), Matchers.greaterThanOrEqualTo(30_000L));
+        MatcherAssert.assertThat(
+                queue.stats().lastLagMs(),
+                Matchers.greaterThanOrEqualTo(queue.stats().lastQueueTimeMs()));
+    }
+
+    private Runnable blocking(CountDownLatch finished) {
+        return () -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+                finished.countDown();
+            }
+        };
+    }
+
+    private void awaitRunning(int count) throws InterruptedException {
+        await(() -> concurrent.get() >= count);
+        MatcherAssert.assertThat(concurrent.get(), Matchers.equalTo(count));
+    }
+
+    private void awaitCompleted(long count) throws InterruptedException {
+        await(() -> queue.stats().completed() >= count);
+        MatcherAssert.assertThat(queue.stats().completed(), Matchers.equalTo(count));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import io.cryostat.ObjectStorage;
+import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.Recordings.ArchivedRecording;
+import io.cryostat.recordings.Recordings.Metadata;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.Target.TargetDiscovery;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class ArchiveRetentionTest {
+
+    static final String JVM_ID = "abcd1234";
+
+    ArchiveRetention retention;
+    RecordingHelper recordingHelper;
+    ObjectStorage storage;
+    Rule rule;
+    Target target;
+
+    @BeforeEach
+    void setup() {
+        recordingHelper = mock(RecordingHelper.class);
+        when(recordingHelper.deleteArchivedRecordings(anyString(), anyCollection()))
+                .thenReturn(Set.of());
+        storage = mock(ObjectStorage.class);
+        when(storage.await(any()))
+                .thenAnswer(i -> i.<Uni<?>>getArgument(0).await().indefinitely());
+        listing(archive(1), archive(2), archive(3), "other_auto_other_20240101T000004Z.jfr");
+
+        retention = new ArchiveRetention();
+        retention.recordingHelper = recordingHelper;
+        retention.storage = storage;
+        retention.logger = Logger.getLogger(ArchiveRetention.class);
+        retention.archiveBucket = "archives";
+
+        rule = new Rule();
+        rule.id = 1L;
+        rule.name = "rule";
+        rule.preservedArchives = 3;
+        target = new Target();
+        target.jvmId = JVM_ID;
+    }
+
+    @Test
+    void testPruneDeletesOldestOfRulesArchives() {
+        retention.prune(rule, target);
+
+        MatcherAssert.assertThat(deleted(), Matchers.equalTo(List.of(List.of(archive(1)))));
+    }
+
+    @Test
+    void testRingIsSeededOnce() {
+        retention.prune(rule, target);
+        retention.added(rule, target, archive(4));
+        retention.prune(rule, target);
+
+        verify(storage, times(1)).listObjects(any(), any());
+        MatcherAssert.assertThat(
+                deleted(), Matchers.equalTo(List.of(List.of(archive(1)), List.of(archive(2)))));
+    }
+
+    @Test
+    void testArchiveDeletedElsewhereIsForgotten() {
+        retention.added(rule, target, archive(4));
+
+        retention.onArchiveDeleted(deletion(JVM_ID, archive(1)));
+        retention.onArchiveDeleted(deletion(JVM_ID, archive(2)));
+        retention.prune(rule, target);
+
+        // only archives 3 and 4 remain, so there is room for another without pruning
+        MatcherAssert.assertThat(deleted(), Matchers.empty());
+    }
+
+    @Test
+    void testArchiveOfOtherJvmDeletedIsIgnored() {
+        retention.added(rule, target, archive(4));
+
+        retention.onArchiveDeleted(deletion("other", archive(1)));
+        retention.prune(rule, target);
+
+        MatcherAssert.assertThat(
+                deleted(), Matchers.equalTo(List.of(List.of(archive(1), archive(2)))));
+    }
+
+    @Test
+    void testFailedDeletionIsRetried() {
+        when(recordingHelper.deleteArchivedRecordings(anyString(), anyCollection()))
+                .thenReturn(Set.of(archive(1)))
+                .thenReturn(Set.of());
+
+        retention.prune(rule, target);
+        retention.prune(rule, target);
+
+        MatcherAssert.assertThat(
+                deleted(), Matchers.equalTo(List.of(List.of(archive(1)), List.of(archive(1)))));
+    }
+
+    @Test
+    void testDeletionErrorRestoresRing() {
+        when(recordingHelper.deleteArchivedRecordings(anyString(), anyCollection()))
+                .thenThrow(new IllegalStateException("storage unavailable"))
+                .thenReturn(Set.of());
+        retention.added(rule, target, archive(4));
+
+        assertThrows(IllegalStateException.class, () -> retention.prune(rule, target));
+        retention.prune(rule, target);
+
+        MatcherAssert.assertThat(
+                deleted(),
+                Matchers.equalTo(
+                        List.of(
+                                List.of(archive(1), archive(2)),
+                                List.of(archive(1), archive(2)))));
+    }
+
+    @Test
+    void testRuleEventReseedsRing() {
+        retention.prune(rule, target);
+
+        retention.onRuleEvent(new Rule.RuleEvent(Rule.RuleEventCategory.UPDATED, rule));
+        retention.prune(rule, target);
+
+        verify(storage, times(2)).listObjects(any(), any());
+    }
+
+    @Test
+    void testLostTargetRingIsDropped() {
+        retention.prune(rule, target);
+
+        retention.onTargetDiscovery(new TargetDiscovery(EventKind.LOST, target, JVM_ID));
+        retention.prune(rule, target);
+
+        verify(storage, times(2)).listObjects(any(), any());
+    }
+
+    @Test
+    void testModifiedTargetRingIsKept() {
+        retention.prune(rule, target);
+
+        retention.onTargetDiscovery(new TargetDiscovery(EventKind.MODIFIED, target, JVM_ID));
+        retention.prune(rule, target);
+
+        verify(storage, times(1)).listObjects(any(), any());
+    }
+
+    private void listing(String... filenames) {
+        List<S3Object> objects = new ArrayList<>();
+        for (int i = 0; i < filenames.length; i++) {
+            objects.add(
+                    S3Object.builder()
+                            .key(JVM_ID + "/" + filenames[i])
+                            .lastModified(Instant.ofEpochSecond(i))
+                            .build());
+        }
+        when(storage.listObjects(any(), eq(Optional.of(JVM_ID + "/"))))
+                .thenAnswer(i -> Multi.createFrom().iterable(objects));
+    }
+
+    // the filenames passed to each batched deletion, in order
+    @SuppressWarnings("unchecked")
+    private List<List<String>> deleted() {
+        ArgumentCaptor<Collection<String>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(recordingHelper, atLeast(0))
+                .deleteArchivedRecordings(eq(JVM_ID), captor.capture());
+        return captor.getAllValues().stream()
+                .filter(c -> !c.isEmpty())
+                .map(List::copyOf)
+                .toList();
+    }
+
+    private static ArchivedRecording deletion(String jvmId, String filename) {
+        return new ArchivedRecording(jvmId, filename, "", "", Metadata.empty(), 0, 0);
+    }
+
+    private static String archive(int n) {
+        return String.format("target_auto_rule_2024010%dT000000Z.jfr", n);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import io.cryostat.targets.Target;
+
+import io.vertx.mutiny.core.eventbus.EventBus;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RuleActivationEngineTest {
+
+    RuleActivationEngine engine;
+    RuleService ruleService;
+    // activations which have been dispatched but not yet run
+    Deque<Runnable> tasks;
+
+    @BeforeEach
+    void setup() {
+        tasks = new ArrayDeque<>();
+        ExecutorService executor = mock(ExecutorService.class);
+        doAnswer(i -> tasks.add(i.getArgument(0))).when(executor).execute(any());
+        ruleService = mock(RuleService.class);
+        when(ruleService.activate(anyList(), any()))
+                .thenAnswer(i -> i.<List<?>>getArgument(0).size());
+
+        engine = new RuleActivationEngine();
+        engine.logger = Logger.getLogger(RuleActivationEngine.class);
+        engine.bus = mock(EventBus.class);
+        engine.ruleService = ruleService;
+        engine.executor = executor;
+        engine.concurrency = 2;
+    }
+
+    @Test
+    void testRulesForOneTargetAreActivatedTogether() {
+        Target target = target(1);
+        engine.submit(rule(1), target);
+        // queued behind the activation already in flight, and each only once
+        engine.submit(rule(2), target);
+        engine.submit(rule(3), target);
+        engine.submit(rule(2), target);
+
+        runAll();
+
+        verify(ruleService, times(2)).activate(anyList(), any());
+        verify(ruleService)
+                .activate(argThat(rules -> ids(rules).equals(List.of(1L))), eq(target));
+        verify(ruleService)
+                .activate(argThat(rules -> ids(rules).equals(List.of(2L, 3L))), eq(target));
+    }
+
+    @Test
+    void testRulesSubmittedWhileTargetIsActivatingWaitForIt() {
+        Target target = target(1);
+        engine.submit(rule(1), target);
+        engine.submit(rule(2), target);
+
+        // the target is already activating, so the later rule is not dispatched alongside it
+        MatcherAssert.assertThat(tasks.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(engine.progress().pendingTargets(), Matchers.equalTo(1));
+
+        tasks.poll().run();
+
+        MatcherAssert.assertThat(tasks.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(engine.progress().pendingTargets(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void testConcurrencyIsCapped() {
+        engine.submit(rule(1), target(1));
+        engine.submit(rule(1), target(2));
+        engine.submit(rule(1), target(3));
+
+        MatcherAssert.assertThat(tasks.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(engine.progress().activeTargets(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(engine.progress().pendingTargets(), Matchers.equalTo(1));
+
+        tasks.poll().run();
+
+        MatcherAssert.assertThat(tasks.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(engine.progress().activeTargets(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(engine.progress().pendingTargets(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void testReadyOnlyOnceStartupActivationsFinish() {
+        engine.submit(rule(1), target(1));
+        MatcherAssert.assertThat(engine.isReady(), Matchers.is(false));
+
+        engine.startupSubmitted();
+        MatcherAssert.assertThat(engine.isReady(), Matchers.is(false));
+
+        runAll();
+        MatcherAssert.assertThat(engine.isReady(), Matchers.is(true));
+        MatcherAssert.assertThat(engine.progress().completedTargets(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    void testNotReadyBeforeStartupActivationsAreSubmitted() {
+        MatcherAssert.assertThat(engine.isReady(), Matchers.is(false));
+
+        engine.startupSubmitted();
+
+        MatcherAssert.assertThat(engine.isReady(), Matchers.is(true));
+        verify(ruleService, never()).activate(anyList(), any());
+    }
+
+    @Test
+    void testFailedActivationStillCountsTowardsReadiness() {
+        when(ruleService.activate(anyList(), any()))
+                .thenThrow(new IllegalStateException("failed"));
+        engine.submit(rule(1), target(1));
+        engine.startupSubmitted();
+
+        runAll();
+
+        MatcherAssert.assertThat(engine.isReady(), Matchers.is(true));
+        MatcherAssert.assertThat(engine.progress().failedTargets(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(engine.progress().activations(), Matchers.equalTo(0L));
+    }
+
+    private void runAll() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static List<Long> ids(List<Rule> rules) {
+        return rules.stream().map(r -> r.id).toList();
+    }
+
+    private static Rule rule(long id) {
+        Rule rule = new Rule();
+        rule.id = id;
+        rule.name = "rule" + id;
+        return rule;
+    }
+
+    private static Target target(long id) {
+        Target target = new Target();
+        target.id = id;
+        return target;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.rules;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class RuleServiceTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 60, 3600})
+    void testArchivalOffsetFallsWithinPeriod(int periodSeconds) {
+        for (int i = 0; i < 100; i++) {
+            long offset = RuleService.archivalOffsetMs("rule", jvmId(i), periodSeconds);
+            MatcherAssert.assertThat(offset, Matchers.greaterThanOrEqualTo(0L));
+            MatcherAssert.assertThat(offset, Matchers.lessThan(periodSeconds * 1000L));
+        }
+    }
+
+    @Test
+    void testArchivalOffsetIsStable() {
+        MatcherAssert.assertThat(
+                RuleService.archivalOffsetMs("rule", jvmId(1), 60),
+                Matchers.equalTo(RuleService.archivalOffsetMs("rule", jvmId(1), 60)));
+    }
+
+    @Test
+    void testArchivalOffsetsAreSpreadAcrossPeriod() {
+        // with one second buckets, 100 evenly hashed targets would be expected to land in about
+        // 48 of the 60
+        Set<Long> seconds = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            seconds.add(RuleService.archivalOffsetMs("rule", jvmId(i), 60) / 1000);
+        }
+        MatcherAssert.assertThat(seconds.size(), Matchers.greaterThan(30));
+    }
+
+    @Test
+    void testArchivalOffsetDiffersBetweenRules() {
+        Set<Long> offsets = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            offsets.add(RuleService.archivalOffsetMs("rule" + i, jvmId(1), 3600));
+        }
+        MatcherAssert.assertThat(offsets.size(), Matchers.greaterThan(1));
+    }
+
+    // JVM IDs are hashes, so stand in for them with name-based UUIDs which are stable between runs
+    private static String jvmId(int i) {
+        return UUID.nameUUIDFromBytes(("target" + i).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}